@@ -0,0 +1,74 @@
+package com.sakari.firstgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ball movement in nanoseconds per ball: the original per-ball BallPool.update(), the
+ * scalar BallIntegrator kernel and the Vector API kernel. Every invocation moves
+ * BALLS_PER_INVOCATION balls, looping over the pool as many times as that takes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BallIntegratorBenchmark {
+    private static final int BALLS_PER_INVOCATION = 100000;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int ballCount;
+
+    private BallPool balls;
+    private int rounds; // passes over the pool per invocation
+
+    // Collectible balls keep growing, so start every iteration from fresh balls
+    @Setup(Level.Iteration)
+    public void setUp() {
+        balls = BenchmarkWorlds.create(ballCount).getBalls();
+        rounds = BALLS_PER_INVOCATION / ballCount;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BALLS_PER_INVOCATION)
+    public float perBallUpdate() {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0, count = balls.size(); i < count; i++) {
+                balls.update(i, BenchmarkWorlds.WIDTH, BenchmarkWorlds.HEIGHT);
+            }
+        }
+        return balls.x[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BALLS_PER_INVOCATION)
+    public float scalarKernel() {
+        for (int round = 0; round < rounds; round++) {
+            BallIntegrator.integrate(balls, BenchmarkWorlds.WIDTH, BenchmarkWorlds.HEIGHT);
+        }
+        return balls.x[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BALLS_PER_INVOCATION)
+    public float vectorKernel() {
+        for (int round = 0; round < rounds; round++) {
+            VectorBallIntegrator.integrate(balls, BenchmarkWorlds.WIDTH, BenchmarkWorlds.HEIGHT);
+        }
+        return balls.x[0];
+    }
+}
@@ -0,0 +1,57 @@
+package com.sakari.firstgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ball movement for all balls, once straight on the pool arrays and once through a
+ * BallThing handle as the old per-object BallThing.update() did.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BallUpdateBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    public int ballCount;
+
+    private BallPool balls;
+    private BallThing handle;
+
+    // Collectible balls keep growing, so start every iteration from fresh balls
+    @Setup(Level.Iteration)
+    public void setUp() {
+        balls = BenchmarkWorlds.create(ballCount).getBalls();
+        handle = new BallThing(balls, 0);
+    }
+
+    @Benchmark
+    public float poolUpdate() {
+        for (int i = 0, count = balls.size(); i < count; i++) {
+            balls.update(i, BenchmarkWorlds.WIDTH, BenchmarkWorlds.HEIGHT);
+        }
+        return balls.x[0];
+    }
+
+    @Benchmark
+    public float handleUpdate() {
+        for (int i = 0, count = balls.size(); i < count; i++) {
+            handle.at(i).update(BenchmarkWorlds.WIDTH, BenchmarkWorlds.HEIGHT);
+        }
+        return balls.x[0];
+    }
+}
@@ -0,0 +1,135 @@
+package com.sakari.firstgame;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of a batch of headless games, one slot per game. Every game writes only its
+ * own slots, so games running in parallel never contend.
+ */
+public class BatchResult {
+    public final long[] seeds; // world seed of each game
+    public final double[] points; // final score of each game
+    public final long[] survivalTicks; // ticks simulated until game over or the tick limit
+    public final int[] peakBalls; // largest live ball count seen in each game
+    public final long[] collects; // prize balls eaten in each game
+    public final long[] hits; // ticks of contact with dull balls in each game
+    public final boolean[] timedOut; // whether the game was still going at the tick limit
+    private long wallNanos; // time the whole batch took
+
+    public BatchResult(int games) {
+        seeds = new long[games];
+        points = new double[games];
+        survivalTicks = new long[games];
+        peakBalls = new int[games];
+        collects = new long[games];
+        hits = new long[games];
+        timedOut = new boolean[games];
+    }
+
+    public int size() {
+        return seeds.length;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    void setWallNanos(long nanos) {
+        wallNanos = nanos;
+    }
+
+    public int countTimedOut() {
+        int count = 0;
+        for (boolean t : timedOut) {
+            if (t) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Appends the batch summary as a JSON object.
+     */
+    public StringBuilder appendJson(StringBuilder out) {
+        double seconds = wallNanos / 1e9;
+        out.append("{\"games\":").append(size());
+        out.append(",\"timedOut\":").append(countTimedOut());
+        out.append(",\"wallSeconds\":").append(seconds);
+        out.append(",\"gamesPerSecond\":").append(seconds > 0 ? size() / seconds : 0);
+        out.append(",\"points\":");
+        Distribution.of(points).appendJson(out);
+        double[] values = new double[size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = survivalTicks[i];
+        }
+        out.append(",\"survivalTicks\":");
+        Distribution.of(values).appendJson(out);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = peakBalls[i];
+        }
+        out.append(",\"peakBalls\":");
+        Distribution.of(values).appendJson(out);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = collects[i];
+        }
+        out.append(",\"collects\":");
+        Distribution.of(values).appendJson(out);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = hits[i];
+        }
+        out.append(",\"hits\":");
+        Distribution.of(values).appendJson(out);
+        return out.append('}');
+    }
+
+    /**
+     * Summary statistics of one measured value over all games.
+     */
+    public static class Distribution {
+        public double mean;
+        public double min;
+        public double p10;
+        public double p50;
+        public double p90;
+        public double p99;
+        public double max;
+
+        public static Distribution of(double[] values) {
+            Distribution d = new Distribution();
+            if (values.length == 0) {
+                return d;
+            }
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            double sum = 0;
+            for (double v : sorted) {
+                sum += v;
+            }
+            d.mean = sum / sorted.length;
+            d.min = sorted[0];
+            d.p10 = percentile(sorted, 0.10);
+            d.p50 = percentile(sorted, 0.50);
+            d.p90 = percentile(sorted, 0.90);
+            d.p99 = percentile(sorted, 0.99);
+            d.max = sorted[sorted.length - 1];
+            return d;
+        }
+
+        // Nearest-rank percentile of sorted values
+        private static double percentile(double[] sorted, double fraction) {
+            int rank = (int) Math.ceil(fraction * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        public StringBuilder appendJson(StringBuilder out) {
+            return out.append("{\"mean\":").append(mean)
+                    .append(",\"min\":").append(min)
+                    .append(",\"p10\":").append(p10)
+                    .append(",\"p50\":").append(p50)
+                    .append(",\"p90\":").append(p90)
+                    .append(",\"p99\":").append(p99)
+                    .append(",\"max\":").append(max).append('}');
+        }
+    }
+}
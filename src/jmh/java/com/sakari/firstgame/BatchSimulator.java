@@ -0,0 +1,249 @@
+package com.sakari.firstgame;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plays large numbers of independent headless games in parallel for balancing and load
+ * testing. Each game gets its own seed, world and controller; games share nothing but
+ * the read-only rules, so throughput grows with the number of cores.
+ *
+ * Run from the command line with key=value arguments, for example
+ * games=10000 ticks=30000 prizeChance=0.005,0.01 minimumBallCounter=5,10
+ * Comma separated values are swept: every combination is simulated and printed as one
+ * JSON line on stdout. rules=file starts every combination from a rules profile instead
+ * of the defaults, so for example a device tier can be balanced with its own profile.
+ */
+public class BatchSimulator {
+    private static final int GAMES_PER_TASK = 4; // smallest batch a fork/join task splits to
+    private static final long CONTROLLER_SEED_MIX = 0x5deece66dL; // keeps controller and world sequences apart
+
+    /**
+     * Creates the controller for one game.
+     */
+    public interface ControllerFactory {
+        Controller create(long seed);
+    }
+
+    private final int width; // world width
+    private final int height; // world height
+    private final float catWidth; // cat width
+    private final float catHeight; // cat height
+    private final GameRules rules; // rules of every game
+    private final ControllerFactory controllers; // steers the cats
+    private final long maxTicks; // games still going after this many ticks are stopped
+
+    public BatchSimulator(int width, int height, float catWidth, float catHeight,
+                          GameRules rules, ControllerFactory controllers, long maxTicks) {
+        this.width = width;
+        this.height = height;
+        this.catWidth = catWidth;
+        this.catHeight = catHeight;
+        this.rules = rules.copy();
+        this.controllers = controllers;
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Plays the given number of games with consecutive seeds.
+     * @param pool Pool whose threads play the games
+     * @param firstSeed Seed of the first game
+     * @param games Number of games
+     */
+    public BatchResult run(ForkJoinPool pool, long firstSeed, int games) {
+        BatchResult result = new BatchResult(games);
+        long start = System.nanoTime();
+        pool.invoke(new Games(result, firstSeed, 0, games));
+        result.setWallNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Plays one game to its end or to the tick limit and stores the outcome.
+     */
+    void playGame(BatchResult result, int index, long seed) {
+        GameWorld world = new GameWorld(width, height, catWidth, catHeight, seed, rules);
+        Controller controller = controllers.create(seed ^ CONTROLLER_SEED_MIX);
+        int peakBalls = 0;
+        while (!world.isGameOver() && world.getTick() < maxTicks) {
+            controller.control(world);
+            world.step();
+            int balls = world.getBalls().size();
+            if (balls > peakBalls) {
+                peakBalls = balls;
+            }
+        }
+        result.seeds[index] = seed;
+        result.points[index] = world.getPoints();
+        result.survivalTicks[index] = world.getTick();
+        result.peakBalls[index] = peakBalls;
+        result.collects[index] = world.getScore().getCollects();
+        result.hits[index] = world.getScore().getHits();
+        result.timedOut[index] = !world.isGameOver();
+    }
+
+    // Splits a range of games in halves until the pieces are small enough to play
+    private class Games extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BatchResult result;
+        private final long firstSeed;
+        private final int from;
+        private final int to;
+
+        Games(BatchResult result, long firstSeed, int from, int to) {
+            this.result = result;
+            this.firstSeed = firstSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    playGame(result, i, firstSeed + i);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Games(result, firstSeed, from, middle),
+                        new Games(result, firstSeed, middle, to));
+            }
+        }
+    }
+
+    /**
+     * Returns the factory for a controller name given on the command line.
+     */
+    static ControllerFactory controllerFactory(String name) {
+        if ("wander".equals(name)) {
+            return new ControllerFactory() {
+                @Override
+                public Controller create(long seed) {
+                    return new WanderController(seed);
+                }
+            };
+        }
+        if ("autopilot".equals(name)) {
+            return new ControllerFactory() {
+                @Override
+                public Controller create(long seed) {
+                    return new AutopilotController();
+                }
+            };
+        }
+        if ("idle".equals(name)) {
+            return new ControllerFactory() {
+                @Override
+                public Controller create(long seed) {
+                    return new Controller() {
+                        @Override
+                        public void control(GameWorld world) {
+                        }
+                    };
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unknown controller: " + name);
+    }
+
+    /**
+     * Applies one tunable rules value given on the command line.
+     * @return false if the name is not a rules value
+     */
+    static boolean applyRule(GameRules rules, String name, String value) {
+        return rules.set(name, value);
+    }
+
+    /**
+     * Loads the rules profile given on the command line, or the defaults for an empty name.
+     */
+    static GameRules loadRules(String file) throws IOException {
+        if (file.isEmpty()) {
+            return new GameRules();
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return GameRules.load(in);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("games", "1000");
+        options.put("ticks", "30000");
+        options.put("seed", "1");
+        options.put("threads", Integer.toString(Runtime.getRuntime().availableProcessors()));
+        options.put("controller", "wander");
+        options.put("width", "1080");
+        options.put("height", "1920");
+        options.put("catWidth", "124");
+        options.put("catHeight", "117");
+        options.put("rules", "");
+        Map<String, String[]> sweep = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            String key = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            if (options.containsKey(key)) {
+                options.put(key, value);
+            } else if (applyRule(new GameRules(), key, value.split(",")[0])) {
+                sweep.put(key, value.split(","));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+
+        GameRules profile = loadRules(options.get("rules"));
+        ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(options.get("threads")));
+        List<String> names = new ArrayList<>(sweep.keySet());
+        int[] choice = new int[names.size()];
+        do {
+            GameRules rules = profile.copy();
+            StringBuilder line = new StringBuilder("{\"params\":{");
+            for (int i = 0; i < names.size(); i++) {
+                String value = sweep.get(names.get(i))[choice[i]];
+                applyRule(rules, names.get(i), value);
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append('"').append(names.get(i)).append("\":").append(value);
+            }
+            rules.validate();
+            line.append("},\"controller\":\"").append(options.get("controller"))
+                    .append("\",\"threads\":").append(pool.getParallelism())
+                    .append(",\"maxTicks\":").append(options.get("ticks"))
+                    .append(",\"result\":");
+            BatchSimulator simulator = new BatchSimulator(
+                    Integer.parseInt(options.get("width")), Integer.parseInt(options.get("height")),
+                    Float.parseFloat(options.get("catWidth")), Float.parseFloat(options.get("catHeight")),
+                    rules, controllerFactory(options.get("controller")),
+                    Long.parseLong(options.get("ticks")));
+            BatchResult result = simulator.run(pool, Long.parseLong(options.get("seed")),
+                    Integer.parseInt(options.get("games")));
+            result.appendJson(line).append('}');
+            System.out.println(line);
+        } while (nextCombination(choice, names, sweep));
+        pool.shutdown();
+    }
+
+    // Advances the sweep like an odometer; false once every combination is done
+    private static boolean nextCombination(int[] choice, List<String> names, Map<String, String[]> sweep) {
+        for (int i = choice.length - 1; i >= 0; i--) {
+            if (++choice[i] < sweep.get(names.get(i)).length) {
+                return true;
+            }
+            choice[i] = 0;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+package com.sakari.firstgame;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all game benchmarks with the GC profiler and writes the results as JSON, so
+ * runs can be compared against each other.
+ *
+ * Usage: BenchmarkMain [result file] [benchmark regexp]
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException {
+        String resultFile = args.length > 0 ? args[0] : "build/reports/jmh/results.json";
+        String include = args.length > 1 ? args[1] : "com\\.sakari\\.firstgame\\..*Benchmark";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        new Runner(options).run();
+    }
+}
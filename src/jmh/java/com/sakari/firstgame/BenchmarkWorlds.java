@@ -0,0 +1,43 @@
+package com.sakari.firstgame;
+
+/**
+ * Shared setup for the benchmarks: headless worlds of a typical phone screen size
+ * filled with a given number of balls.
+ */
+final class BenchmarkWorlds {
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 1920;
+    static final int CAT_WIDTH = 124;
+    static final int CAT_HEIGHT = 117;
+    static final long SEED = 42; // fixed so every run benchmarks the same scene
+
+    private BenchmarkWorlds() {
+    }
+
+    /**
+     * Creates a world holding the given number of balls, one in ten of them collectible,
+     * with the cat placed in the middle of the screen.
+     */
+    static GameWorld create(int ballCount) {
+        return create(ballCount, 1);
+    }
+
+    /**
+     * Creates a world holding the given number of balls and cats, the cats spread evenly
+     * across the middle row of the screen.
+     */
+    static GameWorld create(int ballCount, int cats) {
+        // Far more balls than a game allows, so the pool limit is lifted
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, CAT_WIDTH, CAT_HEIGHT, SEED,
+                new GameRules().setMaxBalls(Integer.MAX_VALUE).setCats(cats));
+        world.getBalls().ensureCapacity(ballCount + ballCount / 2 + 16);
+        for (int i = 0; i < ballCount; i++) {
+            world.addBall(i % 10 == 0);
+        }
+        for (int c = 0; c < cats; c++) {
+            world.getCat(c).setPosition((WIDTH - CAT_WIDTH) * (2 * c + 1) / (2 * cats),
+                    (HEIGHT - CAT_HEIGHT) / 2);
+        }
+        return world;
+    }
+}
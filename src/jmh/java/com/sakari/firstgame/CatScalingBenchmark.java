@@ -0,0 +1,90 @@
+package com.sakari.firstgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the cost of a tick grows with the number of cats. Every cat steers towards its own
+ * corner of the screen. catContactsGrid asks the shared grid about each cat the way the
+ * world does, and catContactsAll tests every cat against every ball for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatScalingBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int cats;
+
+    @Param({"1000", "10000"})
+    public int ballCount;
+
+    private GameWorld world;
+    private BallPool balls;
+    private SpatialGrid grid;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        world = BenchmarkWorlds.create(ballCount, cats);
+        for (int c = 0; c < cats; c++) {
+            world.setTouch(c, (c & 1) == 0 ? 0 : BenchmarkWorlds.WIDTH,
+                    (c & 2) == 0 ? 0 : BenchmarkWorlds.HEIGHT, 1);
+        }
+        balls = world.getBalls();
+        grid = world.getGrid();
+        grid.rebuild(balls);
+    }
+
+    @Benchmark
+    public long step() {
+        world.setCatHits(1e9);
+        world.step();
+        return world.getTick();
+    }
+
+    @Benchmark
+    public int catContactsGrid() {
+        int hits = 0;
+        for (int c = 0; c < cats; c++) {
+            CharacterSprite cat = world.getCat(c);
+            int found = grid.query(cat.getX(), cat.getY(),
+                    cat.getX() + cat.getWidth(), cat.getY() + cat.getHeight());
+            int[] candidates = grid.getResults();
+            for (int k = 0; k < found; k++) {
+                int i = candidates[k];
+                if (cat.ballTouching((int) balls.x[i], (int) balls.y[i], (int) balls.radius[i])) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int catContactsAll() {
+        int hits = 0;
+        for (int c = 0; c < cats; c++) {
+            CharacterSprite cat = world.getCat(c);
+            for (int i = 0, count = balls.size(); i < count; i++) {
+                if (cat.ballTouching((int) balls.x[i], (int) balls.y[i], (int) balls.radius[i])) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+}
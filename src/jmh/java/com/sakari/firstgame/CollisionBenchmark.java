@@ -0,0 +1,75 @@
+package com.sakari.firstgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cat-vs-ball collision cost: testing every ball with CharacterSprite.ballTouching
+ * compared with the grid broadphase, plus the per-tick grid rebuild.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    public int ballCount;
+
+    private BallPool balls;
+    private CharacterSprite cat;
+    private SpatialGrid grid;
+
+    @Setup
+    public void setUp() {
+        GameWorld world = BenchmarkWorlds.create(ballCount);
+        balls = world.getBalls();
+        cat = world.getCharacterSprite();
+        grid = world.getGrid();
+        grid.rebuild(balls);
+    }
+
+    @Benchmark
+    public int ballTouchingAll() {
+        int hits = 0;
+        for (int i = 0, count = balls.size(); i < count; i++) {
+            if (cat.ballTouching((int) balls.x[i], (int) balls.y[i], (int) balls.radius[i])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int ballTouchingGrid() {
+        int found = grid.query(cat.getX(), cat.getY(),
+                cat.getX() + cat.getWidth(), cat.getY() + cat.getHeight());
+        int[] candidates = grid.getResults();
+        int hits = 0;
+        for (int k = 0; k < found; k++) {
+            int i = candidates[k];
+            if (cat.ballTouching((int) balls.x[i], (int) balls.y[i], (int) balls.radius[i])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int gridRebuild() {
+        grid.rebuild(balls);
+        return grid.cellEnd(grid.getCellCount() - 1);
+    }
+}
@@ -0,0 +1,165 @@
+package com.sakari.firstgame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes game events to a binary log for offline analysis. Events are gathered into a
+ * batch in a reused buffer and written with one channel write per batch, so logging a
+ * busy game costs a write every few thousand events and allocates nothing.
+ *
+ * Format, all numbers little-endian:
+ * header: magic "CBEV", version int
+ * batches: event count int, then for each event the type byte, cat byte, tick long,
+ *          value int, points int and energy int
+ */
+public class GameEventLog implements GameEventListener, Closeable {
+    public static final int MAGIC = 0x43424556; // "CBEV"
+    public static final int VERSION = 1; // bumped whenever the format changes
+
+    static final int HEADER_BYTES = 8;
+    static final int BYTES_PER_EVENT = 1 + 1 + 8 + 4 + 4 + 4;
+
+    private final WritableByteChannel channel; // where the batches go
+    private final ByteBuffer batch; // batch being filled, its event count first
+    private int count; // events in the batch
+    private long written; // events written to the channel so far
+
+    /**
+     * Writes the header and starts the first batch.
+     * @param batchEvents Events gathered before a batch is written
+     */
+    public GameEventLog(WritableByteChannel channel, int batchEvents) throws IOException {
+        this.channel = channel;
+        batch = ByteBuffer.allocateDirect(4 + Math.max(1, batchEvents) * BYTES_PER_EVENT)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        batch.putInt(MAGIC);
+        batch.putInt(VERSION);
+        batch.flip();
+        writeFully();
+        startBatch();
+    }
+
+    /**
+     * Adds an event to the batch, writing the batch out first if it is full.
+     * @throws UncheckedIOException if writing fails
+     */
+    @Override
+    public void onEvent(byte type, long tick, int cat, int value, int points, int energy) {
+        if (batch.remaining() < BYTES_PER_EVENT) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        batch.put(type);
+        batch.put((byte) cat);
+        batch.putLong(tick);
+        batch.putInt(value);
+        batch.putInt(points);
+        batch.putInt(energy);
+        count++;
+    }
+
+    /**
+     * Writes the events gathered so far as one batch.
+     */
+    public void flush() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        batch.putInt(0, count);
+        batch.flip();
+        writeFully();
+        written += count;
+        startBatch();
+    }
+
+    /**
+     * Writes the last batch and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * @return events written to the channel, not counting the batch being filled
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    private void startBatch() {
+        batch.clear();
+        batch.putInt(0); // count, filled in when the batch is written
+        count = 0;
+    }
+
+    private void writeFully() throws IOException {
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+    }
+
+    /**
+     * Reads a log written by GameEventLog, passing every event to the listener in order.
+     * @return number of events read
+     * @throws IllegalArgumentException if the data is not a supported event log
+     */
+    public static long read(ReadableByteChannel in, GameEventListener listener) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(in, buffer) || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not an event log");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported event log version " + version);
+        }
+        long events = 0;
+        ByteBuffer countBuffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        while (readFully(in, countBuffer)) {
+            int count = countBuffer.getInt();
+            if (count < 0 || count > Integer.MAX_VALUE / BYTES_PER_EVENT) {
+                throw new IllegalArgumentException("Corrupt event log");
+            }
+            if (buffer.capacity() < count * BYTES_PER_EVENT) {
+                buffer = ByteBuffer.allocate(count * BYTES_PER_EVENT).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            buffer.clear().limit(count * BYTES_PER_EVENT);
+            if (!readFully(in, buffer)) {
+                throw new IllegalArgumentException("Truncated event log");
+            }
+            for (int i = 0; i < count; i++) {
+                byte type = buffer.get();
+                int cat = buffer.get();
+                long tick = buffer.getLong();
+                listener.onEvent(type, tick, cat, buffer.getInt(), buffer.getInt(), buffer.getInt());
+            }
+            events += count;
+            countBuffer.clear();
+        }
+        return events;
+    }
+
+    // Fills the buffer from the channel and flips it; false at the end of the data
+    private static boolean readFully(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return false;
+                }
+                throw new IllegalArgumentException("Truncated event log");
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+}
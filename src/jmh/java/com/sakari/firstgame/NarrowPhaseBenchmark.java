@@ -0,0 +1,133 @@
+package com.sakari.firstgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * Narrow phase cost per candidate ball: the old CharacterSprite.ballTouching check at the
+ * end of the tick, the same box test with floats, the swept box test GameWorld uses, and
+ * the swept pixel mask test. The candidates are what the grid hands over near a cat, so
+ * about a third of them touch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NarrowPhaseBenchmark {
+    private static final int CANDIDATES = 1024;
+    private static final int CAT_WIDTH = 124;
+    private static final int CAT_HEIGHT = 117;
+    private static final int CAT_X = 400;
+    private static final int CAT_Y = 600;
+
+    private final float[] x = new float[CANDIDATES];
+    private final float[] y = new float[CANDIDATES];
+    private final float[] dx = new float[CANDIDATES];
+    private final float[] dy = new float[CANDIDATES];
+    private final float[] radius = new float[CANDIDATES];
+    private CharacterSprite cat;
+    private CollisionMask mask;
+
+    @Setup
+    public void setUp() throws IOException {
+        GameWorld world = new GameWorld(1080, 1920, CAT_WIDTH, CAT_HEIGHT, 1);
+        cat = world.getCharacterSprite();
+        cat.setPosition(CAT_X, CAT_Y);
+        mask = catMask();
+        GameRandom random = new GameRandom(3);
+        for (int i = 0; i < CANDIDATES; i++) {
+            radius[i] = 1 + random.nextInt(65);
+            // Ends within reach of the cat, after moving up to 45 pixels relative to it
+            x[i] = CAT_X - 65 + random.nextInt(CAT_WIDTH + 130);
+            y[i] = CAT_Y - 65 + random.nextInt(CAT_HEIGHT + 130);
+            dx[i] = random.nextInt(91) - 45;
+            dy[i] = random.nextInt(91) - 45;
+        }
+    }
+
+    // The real cat image when run from the project directory, else an oval of its size
+    private static CollisionMask catMask() throws IOException {
+        int[] argb = new int[CAT_WIDTH * CAT_HEIGHT];
+        File image = new File("src/main/res/drawable/catface_small.png");
+        if (image.exists()) {
+            BufferedImage cat = ImageIO.read(image);
+            cat.getRGB(0, 0, CAT_WIDTH, CAT_HEIGHT, argb, 0, CAT_WIDTH);
+        } else {
+            for (int py = 0; py < CAT_HEIGHT; py++) {
+                for (int px = 0; px < CAT_WIDTH; px++) {
+                    float ox = (px + 0.5f) / CAT_WIDTH * 2 - 1;
+                    float oy = (py + 0.5f) / CAT_HEIGHT * 2 - 1;
+                    argb[py * CAT_WIDTH + px] = ox * ox + oy * oy < 1 ? 0xff000000 : 0;
+                }
+            }
+        }
+        return new CollisionMask(CAT_WIDTH, CAT_HEIGHT, argb,
+                CollisionMask.DEFAULT_ALPHA_THRESHOLD);
+    }
+
+    @Benchmark
+    public int ballTouching() {
+        int hits = 0;
+        for (int i = 0; i < CANDIDATES; i++) {
+            if (cat.ballTouching((int) x[i], (int) y[i], (int) radius[i])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int circleTouchesBox() {
+        float right = CAT_X + CAT_WIDTH * CharacterSprite.HITBOX_SCALE;
+        float bottom = CAT_Y + CAT_HEIGHT * CharacterSprite.HITBOX_SCALE;
+        int hits = 0;
+        for (int i = 0; i < CANDIDATES; i++) {
+            if (NarrowPhase.circleTouchesBox(x[i], y[i], radius[i], CAT_X, CAT_Y, right, bottom)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int sweepCircleBox() {
+        float right = CAT_X + CAT_WIDTH * CharacterSprite.HITBOX_SCALE;
+        float bottom = CAT_Y + CAT_HEIGHT * CharacterSprite.HITBOX_SCALE;
+        int hits = 0;
+        for (int i = 0; i < CANDIDATES; i++) {
+            if (NarrowPhase.sweepCircleBox(x[i] - dx[i], y[i] - dy[i], dx[i], dy[i], radius[i],
+                    CAT_X, CAT_Y, right, bottom) >= 0) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int sweepMask() {
+        int hits = 0;
+        for (int i = 0; i < CANDIDATES; i++) {
+            if (mask.sweepCircle(x[i] - dx[i] - CAT_X, y[i] - dy[i] - CAT_Y, dx[i], dy[i],
+                    radius[i]) >= 0) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
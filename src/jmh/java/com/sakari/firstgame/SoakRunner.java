@@ -0,0 +1,217 @@
+package com.sakari.firstgame;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Plays headless games back to back for a long time, to catch slow leaks and gradual
+ * slowdowns that a single game or a benchmark never runs long enough to show. A new game
+ * is started in place whenever one ends, like the app does, so the same world, pool and
+ * grid live through the whole session.
+ *
+ * Every report period prints one JSON line with the step time percentiles of the period
+ * and the live heap, as of the latest garbage collection. The last line adds the trends
+ * over the whole session, fitted by least squares: how much the 99th percentile step time
+ * and the heap grew per hour. A healthy session has both near zero.
+ *
+ * Run from the command line with key=value arguments, for example
+ * duration=3600 report=60 controller=autopilot cats=2
+ * Adding events=file writes every game event of the session to a GameEventLog, and
+ * rules=file plays with a rules profile, to which rules values given after it apply.
+ */
+public class SoakRunner {
+    private final GameWorld world; // the one world of the session
+    private final Controller controller; // steers the cats
+    private final FrameHistogram stepTimes = new FrameHistogram(); // nanoseconds per step
+    private final FrameHistogram.Stats stats = new FrameHistogram.Stats(); // latest period
+    private GameEvents.Reader eventReader; // follows the events for the log, if any
+    private GameEventLog eventLog; // where the events go, if anywhere
+    private long nextSeed; // seed of the next game
+    private int games; // games started so far
+
+    public SoakRunner(GameWorld world, Controller controller) {
+        this.world = world;
+        this.controller = controller;
+        nextSeed = world.getSeed() + 1;
+        games = 1;
+    }
+
+    /**
+     * Writes every event from now on to the log. The log is flushed, not closed, at the
+     * end of run().
+     */
+    public void setEventLog(GameEventLog log) {
+        eventLog = log;
+        eventReader = log != null ? world.getEvents().newReader() : null;
+    }
+
+    /**
+     * Plays until the duration has passed, printing a report line every period and a
+     * summary line at the end.
+     * @return the summary line
+     */
+    public String run(long durationNanos, long reportNanos, PrintStream out) throws IOException {
+        int reports = (int) Math.max(1, durationNanos / Math.max(1, reportNanos));
+        double[] hours = new double[reports];
+        double[] p99 = new double[reports];
+        double[] heap = new double[reports];
+        long start = System.nanoTime();
+        long ticks = 0;
+        int done = 0;
+        while (done < reports) {
+            long reportEnd = start + (done + 1) * reportNanos;
+            long now = System.nanoTime();
+            while (now < reportEnd) {
+                if (world.isGameOver()) {
+                    world.reset(nextSeed++);
+                    games++;
+                }
+                controller.control(world);
+                world.step();
+                if (eventReader != null) {
+                    eventReader.drainTo(eventLog);
+                }
+                long after = System.nanoTime();
+                stepTimes.record(after - now);
+                now = after;
+                ticks++;
+            }
+            stats.update(stepTimes);
+            hours[done] = (now - start) / 3.6e12;
+            p99[done] = stats.p99;
+            heap[done] = heapAfterGc();
+            StringBuilder line = new StringBuilder("{\"seconds\":").append(hours[done] * 3600);
+            line.append(",\"ticks\":").append(ticks);
+            line.append(",\"games\":").append(games);
+            line.append(",\"balls\":").append(world.getBalls().size());
+            line.append(",\"stepNanos\":{\"count\":").append(stats.count)
+                    .append(",\"p50\":").append(stats.p50)
+                    .append(",\"p95\":").append(stats.p95)
+                    .append(",\"p99\":").append(stats.p99)
+                    .append(",\"max\":").append(stats.max).append('}');
+            line.append(",\"heapAfterGc\":").append((long) heap[done]);
+            out.println(line.append('}'));
+            done++;
+        }
+
+        double seconds = hours[reports - 1] * 3600;
+        StringBuilder summary = new StringBuilder("{\"summary\":true,\"seconds\":").append(seconds);
+        summary.append(",\"ticks\":").append(ticks);
+        summary.append(",\"games\":").append(games);
+        summary.append(",\"ticksPerSecond\":").append(seconds > 0 ? ticks / seconds : 0);
+        summary.append(",\"p99TrendNanosPerHour\":").append(slope(hours, p99, reports));
+        summary.append(",\"heapTrendBytesPerHour\":").append(slope(hours, heap, reports));
+        if (eventLog != null) {
+            eventLog.flush();
+            summary.append(",\"events\":").append(eventLog.getWritten());
+            summary.append(",\"lostEvents\":").append(eventReader.getLost());
+        }
+        String result = summary.append('}').toString();
+        out.println(result);
+        return result;
+    }
+
+    /**
+     * Heap in use right after the latest collection of each heap pool. Unlike the heap in
+     * use at any moment it does not swing with the garbage produced since, so it only
+     * grows when live data does. Until the first collection, which a session producing
+     * no garbage may never see, this is the heap in use now.
+     */
+    static long heapAfterGc() {
+        long used = 0;
+        boolean collected = false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null && usage.getCommitted() > 0) {
+                used += usage.getUsed();
+                collected = true;
+            }
+        }
+        return collected ? used : ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Least squares slope of y over x for the first count points, 0 for fewer than two.
+     */
+    static double slope(double[] x, double[] y, int count) {
+        if (count < 2) {
+            return 0;
+        }
+        double meanX = 0, meanY = 0;
+        for (int i = 0; i < count; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= count;
+        meanY /= count;
+        double covariance = 0, variance = 0;
+        for (int i = 0; i < count; i++) {
+            covariance += (x[i] - meanX) * (y[i] - meanY);
+            variance += (x[i] - meanX) * (x[i] - meanX);
+        }
+        return variance > 0 ? covariance / variance : 0;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("duration", "3600");
+        options.put("report", "60");
+        options.put("seed", "1");
+        options.put("controller", "autopilot");
+        options.put("width", "1080");
+        options.put("height", "1920");
+        options.put("catWidth", "124");
+        options.put("catHeight", "117");
+        options.put("events", "");
+        GameRules rules = new GameRules();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            String key = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            if (key.equals("rules")) {
+                rules = BatchSimulator.loadRules(value);
+            } else if (options.containsKey(key)) {
+                options.put(key, value);
+            } else if (!BatchSimulator.applyRule(rules, key, value)) {
+                throw new IllegalArgumentException("Unknown option: " + key);
+            }
+        }
+
+        rules.validate();
+        long seed = Long.parseLong(options.get("seed"));
+        GameWorld world = new GameWorld(
+                Integer.parseInt(options.get("width")), Integer.parseInt(options.get("height")),
+                Float.parseFloat(options.get("catWidth")), Float.parseFloat(options.get("catHeight")),
+                seed, rules);
+        Controller controller =
+                BatchSimulator.controllerFactory(options.get("controller")).create(seed);
+        SoakRunner soak = new SoakRunner(world, controller);
+        GameEventLog log = null;
+        if (!options.get("events").isEmpty()) {
+            log = new GameEventLog(new FileOutputStream(options.get("events")).getChannel(), 4096);
+            soak.setEventLog(log);
+        }
+        try {
+            soak.run((long) (Double.parseDouble(options.get("duration")) * 1e9),
+                    (long) (Double.parseDouble(options.get("report")) * 1e9), System.out);
+        } finally {
+            if (log != null) {
+                log.close();
+            }
+        }
+    }
+}
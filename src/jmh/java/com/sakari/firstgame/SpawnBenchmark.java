@@ -0,0 +1,48 @@
+package com.sakari.firstgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spawning and removing balls at a steady pool size: one spawn followed by the removal
+ * of a ball from the middle of the pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    public int ballCount;
+
+    private GameWorld world;
+    private BallPool balls;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        world = BenchmarkWorlds.create(ballCount);
+        balls = world.getBalls();
+    }
+
+    @Benchmark
+    public int spawnAndRemove() {
+        world.addBall(false);
+        cursor = (cursor + 7919) % balls.size();
+        balls.remove(cursor);
+        return balls.size();
+    }
+}
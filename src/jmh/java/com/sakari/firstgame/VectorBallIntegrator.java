@@ -0,0 +1,55 @@
+package com.sakari.firstgame;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BallIntegrator written with the incubating Vector API, for desktop JVMs only. Does the
+ * same work in the widest vectors the CPU has, with masked blends in place of the selects,
+ * and falls back to the scalar kernel for the last few balls. Needs
+ * --add-modules jdk.incubator.vector both to compile and to run.
+ */
+public final class VectorBallIntegrator {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private VectorBallIntegrator() {
+    }
+
+    public static void integrate(BallPool balls, float width, float height) {
+        int count = balls.size();
+        int done = integrateAxis(balls.x, balls.vx, balls.radius, count, width);
+        integrateAxis(balls.y, balls.vy, balls.radius, count, height);
+        float[] radius = balls.radius;
+        float[] growth = balls.growth;
+        for (int i = 0; i < done; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, radius, i)
+                    .add(FloatVector.fromArray(SPECIES, growth, i))
+                    .intoArray(radius, i);
+        }
+        // The scalar kernel finishes the balls that do not fill a whole vector
+        BallIntegrator.integrate(balls.x, balls.y, balls.vx, balls.vy, radius, growth,
+                done, count, width, height);
+    }
+
+    // Moves and bounces whole vectors of balls along one axis, returns how many were done
+    private static int integrateAxis(float[] p, float[] v, float[] radius, int count, float size) {
+        int bound = SPECIES.loopBound(count);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            FloatVector r = FloatVector.fromArray(SPECIES, radius, i);
+            FloatVector vel = FloatVector.fromArray(SPECIES, v, i);
+            FloatVector next = FloatVector.fromArray(SPECIES, p, i).add(vel);
+            FloatVector far = r.neg().add(size);
+            FloatVector low = r.sub(next).max(0f);
+            FloatVector high = next.sub(far).max(0f);
+            FloatVector depth = low.sub(high);
+            next.add(depth.mul(2f)).max(r).min(far).intoArray(p, i);
+            VectorMask<Float> pastLow = depth.compare(VectorOperators.GT, 0f);
+            VectorMask<Float> pastHigh = depth.compare(VectorOperators.LT, 0f);
+            FloatVector speed = vel.abs();
+            vel.blend(speed, pastLow).blend(speed.neg(), pastHigh).intoArray(v, i);
+        }
+        return bound;
+    }
+}
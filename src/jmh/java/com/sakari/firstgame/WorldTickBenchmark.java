@@ -0,0 +1,50 @@
+package com.sakari.firstgame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one full simulation tick, the headless equivalent of the old GameView.update().
+ * Energy is refilled before every tick so the world never reaches game over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldTickBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    public int ballCount;
+
+    @Param({"false", "true"})
+    public boolean ballCollisions;
+
+    private GameWorld world;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        world = BenchmarkWorlds.create(ballCount);
+        world.setBallCollisions(ballCollisions);
+        world.setTouch(BenchmarkWorlds.WIDTH / 3, BenchmarkWorlds.HEIGHT / 3);
+    }
+
+    @Benchmark
+    public long step() {
+        world.setCatHits(1e9);
+        world.step();
+        return world.getTick();
+    }
+}
@@ -0,0 +1,59 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writing game events to the binary event log and reading them back.
+ */
+public class GameEventLogTest {
+
+    @Test
+    public void log_roundTripsInBatches() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameEventLog log = new GameEventLog(Channels.newChannel(bytes), 7);
+        for (int i = 0; i < 100; i++) {
+            log.onEvent(GameEvents.COLLECT, 1000L + i, i % 3, i, i * 2, -1);
+        }
+        assertEquals(98, log.getWritten());
+        log.close();
+        assertEquals(GameEventLog.HEADER_BYTES + 15 * 4 + 100 * GameEventLog.BYTES_PER_EVENT,
+                bytes.size());
+
+        Sum sum = new Sum();
+        long read = GameEventLog.read(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), sum);
+        assertEquals(100, read);
+        assertEquals(100, sum.collects);
+        assertEquals(9900, sum.points, 0);
+        assertEquals(1099, sum.lastTick);
+
+        try {
+            GameEventLog.read(Channels.newChannel(new ByteArrayInputStream(new byte[12])), sum);
+            fail("read a log without a header");
+        } catch (IllegalArgumentException expected) {
+            // not an event log
+        }
+    }
+
+    // Adds up the events read back from a log
+    private static class Sum implements GameEventListener {
+        double points;
+        long collects;
+        long lastTick;
+
+        @Override
+        public void onEvent(byte type, long tick, int cat, int value, int points, int energy) {
+            this.points += points;
+            if (type == GameEvents.COLLECT) {
+                collects++;
+            }
+            lastTick = tick;
+        }
+    }
+}
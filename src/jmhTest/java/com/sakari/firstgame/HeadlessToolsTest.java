@@ -0,0 +1,66 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Headless play without a player: a batch of autopilot games against the scripted
+ * baseline, and a short soak session.
+ */
+public class HeadlessToolsTest {
+
+    @Test
+    public void autopilot_outplaysWandering() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            BatchResult autopilot = batch("autopilot").run(pool, 100, 40);
+            BatchResult wander = batch("wander").run(pool, 100, 40);
+            assertTrue(mean(autopilot.points) > mean(wander.points) * 1.5);
+            assertTrue(mean(autopilot.survivalTicks) > mean(wander.survivalTicks));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void soak_reportsEveryPeriodAndTrends() throws Exception {
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 3,
+                new GameRules().setStartEnergy(50));
+        SoakRunner soak = new SoakRunner(world, new AutopilotController());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        String summary = soak.run(400000000L, 100000000L, new PrintStream(bytes, true));
+
+        String[] lines = bytes.toString().trim().split("\n");
+        assertEquals(5, lines.length);
+        assertEquals(summary, lines[4]);
+        assertTrue(summary.contains("\"heapTrendBytesPerHour\":"));
+        assertTrue(soak.getGames() > 1);
+        assertEquals(2, SoakRunner.slope(new double[] {0, 1, 2}, new double[] {1, 3, 5}, 3), 1e-9);
+    }
+
+    private static BatchSimulator batch(String controller) {
+        return new BatchSimulator(1080, 1920, 124, 117, new GameRules(),
+                BatchSimulator.controllerFactory(controller), 30000);
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    private static double mean(long[] values) {
+        double sum = 0;
+        for (long v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+}
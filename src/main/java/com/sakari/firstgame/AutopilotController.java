@@ -0,0 +1,107 @@
+package com.sakari.firstgame;
+
+/**
+ * Controller that plays the game: each cat heads for the nearest flashy ball around it
+ * and swerves away from dull balls that are about to reach it. Only the balls within
+ * reach of a cat are looked at, through GameWorld.queryBalls(), so a decision costs the
+ * same however many balls are elsewhere on the screen. Keeps no per-game state and
+ * allocates nothing, so thousands of games can be played with it in parallel.
+ *
+ * Steering goes through setTouch() like a finger would, so the cat still reacts through
+ * CharacterSprite.relateVelocity() with its usual sluggishness.
+ */
+public class AutopilotController implements Controller {
+    private static final int LOOKAHEAD_TICKS = 8; // how far ahead ball movement is predicted
+    private static final float STEER_DISTANCE = 600; // touch distance from the cat at full steer
+    private static final float AVOID_WEIGHT = 2.5f; // strength of swerving relative to chasing
+
+    private final float reach; // distance around a cat within which balls are seen
+
+    public AutopilotController() {
+        this(320);
+    }
+
+    /**
+     * @param reach Distance from the middle of a cat within which it sees balls
+     */
+    public AutopilotController(float reach) {
+        this.reach = reach;
+    }
+
+    @Override
+    public void control(GameWorld world) {
+        for (int cat = 0; cat < world.getCatCount(); cat++) {
+            steer(world, cat);
+        }
+    }
+
+    private void steer(GameWorld world, int c) {
+        CharacterSprite cat = world.getCat(c);
+        float cx = cat.getX() + cat.getWidth() / 2;
+        float cy = cat.getY() + cat.getHeight() / 2;
+        float catRadius = Math.max(cat.getWidth(), cat.getHeight()) / 2;
+        BallPool balls = world.getBalls();
+        int found = world.queryBalls(cx - reach, cy - reach, cx + reach, cy + reach);
+        int[] candidates = world.getGrid().getResults();
+
+        float targetX = 0, targetY = 0; // offset to the nearest prize
+        float targetDistance = Float.MAX_VALUE;
+        float awayX = 0, awayY = 0; // sum of pushes away from threatening balls
+        for (int k = 0; k < found; k++) {
+            int i = candidates[k];
+            if (!balls.isAlive(i)) {
+                continue;
+            }
+            if (balls.isCollectible(i)) {
+                float dx = balls.x[i] - cx;
+                float dy = balls.y[i] - cy;
+                float distance = (float) Math.sqrt(dx * dx + dy * dy);
+                if (distance < targetDistance) {
+                    targetDistance = distance;
+                    targetX = dx;
+                    targetY = dy;
+                }
+            } else {
+                // Where the ball will be, relative to where the cat will be
+                float dx = balls.x[i] + balls.vx[i] * LOOKAHEAD_TICKS
+                        - (cx + cat.getXVelocity() * LOOKAHEAD_TICKS);
+                float dy = balls.y[i] + balls.vy[i] * LOOKAHEAD_TICKS
+                        - (cy + cat.getYVelocity() * LOOKAHEAD_TICKS);
+                float distance = (float) Math.sqrt(dx * dx + dy * dy);
+                float gap = distance - balls.radius[i] - catRadius;
+                if (gap < reach && distance > 0) {
+                    // Pushes grow as the gap closes, from nothing at the edge of reach
+                    float push = (reach - Math.max(0, gap)) / reach;
+                    push *= push;
+                    awayX -= dx / distance * push;
+                    awayY -= dy / distance * push;
+                }
+            }
+        }
+
+        float steerX = awayX * AVOID_WEIGHT;
+        float steerY = awayY * AVOID_WEIGHT;
+        if (targetDistance < Float.MAX_VALUE && targetDistance > 0) {
+            steerX += targetX / targetDistance;
+            steerY += targetY / targetDistance;
+        } else {
+            // Nothing worth chasing nearby: drift back towards the middle, away from walls
+            float dx = world.getWidth() / 2f - cx;
+            float dy = world.getHeight() / 2f - cy;
+            float distance = (float) Math.sqrt(dx * dx + dy * dy);
+            if (distance > reach) {
+                steerX += dx / distance * 0.5f;
+                steerY += dy / distance * 0.5f;
+            }
+        }
+        float length = (float) Math.sqrt(steerX * steerX + steerY * steerY);
+        if (length < 1e-3f) {
+            world.releaseTouch(c);
+            return;
+        }
+        float scale = STEER_DISTANCE * Math.min(1, length) / length;
+        float x = Math.max(0, Math.min(world.getWidth(), cx + steerX * scale));
+        float y = Math.max(0, Math.min(world.getHeight(), cy + steerY * scale));
+        world.setTouch(c, x, y, 1);
+    }
+}
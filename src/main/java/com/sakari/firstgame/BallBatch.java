@@ -0,0 +1,98 @@
+package com.sakari.firstgame;
+
+/**
+ * Vertex data for drawing many balls in one call. Every ball becomes a textured quad
+ * over its SpriteAtlas cell, with the ball color on all four corners, laid out the way
+ * Canvas.drawVertices takes it. Indices are 16 bits, so one batch holds at most
+ * MAX_BALLS balls; the renderer flushes full batches and starts over.
+ */
+public class BallBatch {
+    public static final int MAX_BALLS = 65536 / 4; // quads addressable with short indices
+
+    public float[] vertices = new float[0]; // x, y of four corners per ball
+    public float[] texCoords = new float[0]; // atlas pixel coordinates matching vertices
+    public int[] colors = new int[0]; // ball color per corner
+    public short[] indices = new short[0]; // two triangles per ball
+    private int count; // balls in the batch
+
+    /**
+     * Empties the batch for the next frame or chunk.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    public boolean isFull() {
+        return count == MAX_BALLS;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** Number of floats in vertices in use, the vertexCount Canvas.drawVertices expects. */
+    public int getVertexCount() {
+        return count * 8;
+    }
+
+    public int getIndexCount() {
+        return count * 6;
+    }
+
+    /**
+     * Appends a ball. The quad covers the whole atlas cell of the ball's bucket, scaled so
+     * the circle inside it gets the exact radius.
+     */
+    public void add(float cx, float cy, float radius, int color) {
+        if (count * 4 == colors.length) {
+            grow();
+        }
+        int bucket = SpriteAtlas.bucketFor(radius);
+        float bucketRadius = SpriteAtlas.BUCKET_RADII[bucket];
+        float half = radius * (bucketRadius + SpriteAtlas.PADDING) / bucketRadius;
+        float u0 = SpriteAtlas.cellLeft(bucket);
+        float v0 = SpriteAtlas.cellTop(bucket);
+        float u1 = u0 + SpriteAtlas.cellSize(bucket);
+        float v1 = v0 + SpriteAtlas.cellSize(bucket);
+
+        int v = count * 8;
+        float[] p = vertices;
+        float[] t = texCoords;
+        p[v] = cx - half;     p[v + 1] = cy - half; t[v] = u0;     t[v + 1] = v0;
+        p[v + 2] = cx + half; p[v + 3] = cy - half; t[v + 2] = u1; t[v + 3] = v0;
+        p[v + 4] = cx + half; p[v + 5] = cy + half; t[v + 4] = u1; t[v + 5] = v1;
+        p[v + 6] = cx - half; p[v + 7] = cy + half; t[v + 6] = u0; t[v + 7] = v1;
+        int c = count * 4;
+        colors[c] = color;
+        colors[c + 1] = color;
+        colors[c + 2] = color;
+        colors[c + 3] = color;
+        count++;
+    }
+
+    // Grows all arrays together; the index pattern never changes, so it is written here once
+    private void grow() {
+        int capacity = Math.min(MAX_BALLS, Math.max(64, count * 2));
+        float[] newVertices = new float[capacity * 8];
+        float[] newTexCoords = new float[capacity * 8];
+        int[] newColors = new int[capacity * 4];
+        short[] newIndices = new short[capacity * 6];
+        System.arraycopy(vertices, 0, newVertices, 0, count * 8);
+        System.arraycopy(texCoords, 0, newTexCoords, 0, count * 8);
+        System.arraycopy(colors, 0, newColors, 0, count * 4);
+        for (int i = 0; i < capacity; i++) {
+            int corner = i * 4;
+            int k = i * 6;
+            newIndices[k] = (short) corner;
+            newIndices[k + 1] = (short) (corner + 1);
+            newIndices[k + 2] = (short) (corner + 2);
+            newIndices[k + 3] = (short) corner;
+            newIndices[k + 4] = (short) (corner + 2);
+            newIndices[k + 5] = (short) (corner + 3);
+        }
+        vertices = newVertices;
+        texCoords = newTexCoords;
+        colors = newColors;
+        indices = newIndices;
+    }
+}
@@ -0,0 +1,63 @@
+package com.sakari.firstgame;
+
+/**
+ * Moves every ball one tick in a single pass over the BallPool arrays. Positions are
+ * exact floats. A ball that ends up past a wall is mirrored back inside by the depth it
+ * went in, so it never sticks to or tunnels into the wall, and its velocity is pointed
+ * away from that wall. Collectible balls then grow by their growth rate.
+ *
+ * The loop body only selects between values, which C2 turns into conditional moves, and
+ * touches nothing but float arrays, so one pass costs a few nanoseconds per ball with no
+ * mispredicted branches on wall hits.
+ */
+public final class BallIntegrator {
+    private BallIntegrator() {
+    }
+
+    /**
+     * Moves, bounces and grows all balls of the pool.
+     * @param width Width of the area the balls stay in
+     * @param height Height of the area the balls stay in
+     */
+    public static void integrate(BallPool balls, float width, float height) {
+        integrate(balls.x, balls.y, balls.vx, balls.vy, balls.radius, balls.growth,
+                0, balls.size(), width, height);
+    }
+
+    /**
+     * Moves, bounces and grows the balls from index from up to but not including to.
+     */
+    public static void integrate(float[] x, float[] y, float[] vx, float[] vy, float[] radius,
+                                 float[] growth, int from, int to, float width, float height) {
+        for (int i = from; i < to; i++) {
+            float r = radius[i];
+
+            float px = x[i] + vx[i];
+            float far = width - r;
+            float left = r - px > 0 ? r - px : 0f; // how far past the left wall
+            float right = px - far > 0 ? px - far : 0f; // how far past the right wall
+            float depth = left - right;
+            float nx = px + 2 * depth;
+            nx = nx < r ? r : nx;
+            x[i] = nx > far ? far : nx;
+            // Away from the wall that was hit, else unchanged
+            float v = vx[i];
+            float speed = Math.abs(v);
+            vx[i] = depth > 0 ? speed : depth < 0 ? -speed : v;
+
+            float py = y[i] + vy[i];
+            far = height - r;
+            float top = r - py > 0 ? r - py : 0f;
+            float bottom = py - far > 0 ? py - far : 0f;
+            depth = top - bottom;
+            float ny = py + 2 * depth;
+            ny = ny < r ? r : ny;
+            y[i] = ny > far ? far : ny;
+            v = vy[i];
+            speed = Math.abs(v);
+            vy[i] = depth > 0 ? speed : depth < 0 ? -speed : v;
+
+            radius[i] = r + growth[i];
+        }
+    }
+}
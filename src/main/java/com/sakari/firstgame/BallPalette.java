@@ -0,0 +1,33 @@
+package com.sakari.firstgame;
+
+/**
+ * Precomputed colors of the flashing collectible balls. The table is filled once from a
+ * fixed seed, and the balls step through it one entry per tick, so flashing neither
+ * draws from the world's random sequence nor computes colors on the hot path.
+ */
+public final class BallPalette {
+    public static final int FLASH_SIZE = 64; // entries in the flash table, a power of two
+    private static final int FLASH_MASK = FLASH_SIZE - 1;
+    private static final long FLASH_SEED = 0x63617473L; // any fixed value; keeps the palette the same between runs
+
+    private static final int[] FLASH = new int[FLASH_SIZE];
+
+    static {
+        GameRandom random = new GameRandom(FLASH_SEED);
+        for (int i = 0; i < FLASH_SIZE; i++) {
+            FLASH[i] = BallThing.rgb(random.nextInt(255), random.nextInt(255), random.nextInt(255));
+        }
+    }
+
+    private BallPalette() {
+    }
+
+    /**
+     * Returns the flash color of a ball at a tick.
+     * @param tick World tick
+     * @param ball Index of the ball, so neighbouring balls show different colors
+     */
+    public static int flash(long tick, int ball) {
+        return FLASH[(int) (tick + ball) & FLASH_MASK];
+    }
+}
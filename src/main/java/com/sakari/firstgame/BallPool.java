@@ -0,0 +1,234 @@
+package com.sakari.firstgame;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays store for all balls in the game. Every ball lives in one slot of
+ * the parallel primitive arrays, so updating and drawing walks contiguous memory and
+ * spawning reuses slots instead of allocating objects.
+ *
+ * Live balls always occupy slots 0..size()-1. Removing a ball moves the last ball into
+ * its slot, so indices are only stable until the next remove - iterate from the end when
+ * removing while iterating.
+ *
+ * A pool can be bounded: once it holds maxCapacity balls acquire() refuses new ones
+ * instead of growing. Balls go back to the pool by marking them dead and calling
+ * releaseDead(), and clear() empties the pool for a new game while keeping its arrays.
+ */
+public class BallPool {
+    public static final byte FLAG_ALIVE = 1; // slot holds a ball in play
+    public static final byte FLAG_COLLECTIBLE = 2; // flashy ball that can be eaten
+    public static final float COLLECTIBLE_GROWTH = 0.5f; // radius gained per tick by collectible balls
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    public float[] x; // center x coordinates
+    public float[] y; // center y coordinates
+    public float[] prevX; // center x coordinates before the latest tick, for interpolation
+    public float[] prevY; // center y coordinates before the latest tick, for interpolation
+    public float[] vx; // x velocities
+    public float[] vy; // y velocities
+    public float[] radius; // radii
+    public float[] growth; // radius gained per tick
+    public int[] color; // colors as packed ARGB
+    public byte[] flags; // FLAG_* bits
+    public byte[] contacts; // bit per cat in contact with the ball as of the latest tick
+    private int size; // number of live balls
+    private int maxCapacity; // most balls the pool ever holds
+
+    public BallPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BallPool(int initialCapacity) {
+        this(initialCapacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param initialCapacity Balls that fit before the arrays first grow
+     * @param maxCapacity Balls the pool holds at most, the arrays never grow past it
+     */
+    public BallPool(int initialCapacity, int maxCapacity) {
+        this.maxCapacity = Math.max(1, maxCapacity);
+        int capacity = Math.min(Math.max(1, initialCapacity), this.maxCapacity);
+        x = new float[capacity];
+        y = new float[capacity];
+        prevX = new float[capacity];
+        prevY = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        radius = new float[capacity];
+        growth = new float[capacity];
+        color = new int[capacity];
+        flags = new byte[capacity];
+        contacts = new byte[capacity];
+    }
+
+    /**
+     * Takes the next free slot into use, growing the arrays when they are full.
+     * @return index of the new ball, with all fields cleared and FLAG_ALIVE set, or -1 if
+     * the pool already holds maxCapacity balls
+     */
+    public int acquire() {
+        if (size >= maxCapacity) {
+            return -1;
+        }
+        if (size == x.length) {
+            grow();
+        }
+        int i = size++;
+        x[i] = 0;
+        y[i] = 0;
+        prevX[i] = 0;
+        prevY[i] = 0;
+        vx[i] = 0;
+        vy[i] = 0;
+        radius[i] = 0;
+        growth[i] = 0;
+        color[i] = 0;
+        flags[i] = FLAG_ALIVE;
+        contacts[i] = 0;
+        return i;
+    }
+
+    /**
+     * Removes a ball by moving the last live ball into its slot.
+     * @param i Index of the ball to remove
+     */
+    public void remove(int i) {
+        int last = --size;
+        if (i != last) {
+            x[i] = x[last];
+            y[i] = y[last];
+            prevX[i] = prevX[last];
+            prevY[i] = prevY[last];
+            vx[i] = vx[last];
+            vy[i] = vy[last];
+            radius[i] = radius[last];
+            growth[i] = growth[last];
+            color[i] = color[last];
+            flags[i] = flags[last];
+            contacts[i] = contacts[last];
+        }
+        flags[last] = 0;
+    }
+
+    /**
+     * Returns every ball marked dead, with setAlive(false) or by clearing FLAG_ALIVE, to
+     * the pool. Called once per tick after everything that uses the current indices.
+     * @return how many balls were released
+     */
+    public int releaseDead() {
+        int released = 0;
+        // Iterating from the end keeps swap-removal from skipping any ball
+        for (int i = size - 1; i >= 0; i--) {
+            if ((flags[i] & FLAG_ALIVE) == 0) {
+                remove(i);
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Moves and bounces a single ball within the given area and grows collectible balls.
+     * Positions stay whole pixels like they always have, walls nudge by a pixel to avoid sticking.
+     * This is the original per-ball movement; the game itself now moves all balls at once
+     * with BallIntegrator.
+     */
+    public void update(int i, int width, int height) {
+        x[i] += (int) vx[i];
+        y[i] += (int) vy[i];
+        float r = radius[i];
+
+        if ((x[i] >= width - r) || (x[i] <= r)) {
+            vx[i] = -vx[i];
+            if (x[i] <= r) {
+                x[i]++;
+            } else {
+                x[i]--;
+            }
+        }
+        if ((y[i] >= height - r) || (y[i] <= r)) {
+            vy[i] = -vy[i];
+            if (y[i] <= r) {
+                y[i]++;
+            } else {
+                y[i]--;
+            }
+        }
+        if ((flags[i] & FLAG_COLLECTIBLE) != 0) {
+            radius[i] = r + COLLECTIBLE_GROWTH;
+        }
+    }
+
+    /**
+     * Remembers the current positions as the previous ones. Called at the start of every
+     * tick so that rendering can interpolate between the last two ticks.
+     */
+    public void savePositions() {
+        System.arraycopy(x, 0, prevX, 0, size);
+        System.arraycopy(y, 0, prevY, 0, size);
+    }
+
+    public boolean isAlive(int i) {
+        return (flags[i] & FLAG_ALIVE) != 0;
+    }
+
+    public boolean isCollectible(int i) {
+        return (flags[i] & FLAG_COLLECTIBLE) != 0;
+    }
+
+    public void clear() {
+        Arrays.fill(flags, 0, size, (byte) 0);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return x.length;
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * Changes the ball cap. Arrays already larger are kept; balls over a lower cap stay
+     * until removed, and no more are taken in until the pool is back under it.
+     */
+    public void setMaxCapacity(int maxCapacity) {
+        this.maxCapacity = Math.max(1, maxCapacity);
+    }
+
+    /**
+     * Grows the arrays up front so that at least the given number of balls fit without
+     * further allocation.
+     */
+    public void ensureCapacity(int capacity) {
+        capacity = Math.min(capacity, maxCapacity);
+        while (x.length < capacity) {
+            grow();
+        }
+    }
+
+    // Grows by half of the current capacity, which keeps late-game growth steps small,
+    // but never past maxCapacity
+    private void grow() {
+        int capacity = (int) Math.min(x.length + (x.length >> 1) + 1L, maxCapacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        prevX = Arrays.copyOf(prevX, capacity);
+        prevY = Arrays.copyOf(prevY, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        growth = Arrays.copyOf(growth, capacity);
+        color = Arrays.copyOf(color, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        contacts = Arrays.copyOf(contacts, capacity);
+    }
+}
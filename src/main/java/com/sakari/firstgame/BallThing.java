@@ -1,96 +1,86 @@
 package com.sakari.firstgame;
 
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-
+/**
+ * Lightweight view onto one ball stored in a BallPool. The handle holds no ball data
+ * itself and can be pointed at another slot with at(), so one instance can walk through
+ * every ball without allocating. Pool indices change when balls are removed, so a handle
+ * is only valid until the next removal.
+ */
 public class BallThing {
-    private int x, y; // coordinates
-    private float radius; // ball radius
-    private Paint color; // ball color
-    private float xVelocity; // x velocity
-    private float yVelocity; // y velocity
-    private int maxRadius;
-    private int maxVelocity;
-    private GameView gameView;
-    private boolean collectible;
-    private boolean alive;
+    private BallPool pool;
+    private int index;
 
-    public BallThing(GameView gv, int maxRad, int maxVel, boolean collect) {
-        gameView = gv;
-        maxRadius = maxRad;
-        maxVelocity = maxVel;
-        radius = gameView.randomValue(maxRadius);
-        x = (int) (radius + gameView.randomValue(gv.getScreenWidth() - (int) radius * 2));
-        y = (int) (radius + gameView.randomValue(gv.getScreenHeight() - (int) radius * 2));
-        xVelocity = gameView.randomValue(maxVelocity);
-        yVelocity = gameView.randomValue(maxVelocity);
-        color = new Paint();
-        setNewColor();
-        collectible = collect;
-        alive = true;
+    public BallThing(BallPool pool, int index) {
+        this.pool = pool;
+        this.index = index;
     }
 
-    public void draw(Canvas canvas) {
-        canvas.drawCircle(x, y, radius, color);
+    /**
+     * Points this handle at another ball of the same pool.
+     * @param index Pool index of the ball
+     * @return this handle
+     */
+    public BallThing at(int index) {
+        this.index = index;
+        return this;
     }
 
-    public void update() {
-        x += (int) xVelocity;
-        y += (int) yVelocity;
+    public void update(int width, int height) {
+        pool.update(index, width, height);
+    }
 
-        // To keep the object within game view, walls cause bouncing.
-        // Also x/y is moved in order to prevent sticking to walls.
-        if ((x >= gameView.getScreenWidth() - radius) || (x <= 0 + radius)) {
-            xVelocity = xVelocity * -1;
-            if (x <= 0 + radius) {
-                x++;
-            } else {
-                x--;
-            }
-        }
-        if ((y >= gameView.getScreenHeight() - radius) || (y <= 0 + radius)) {
-            yVelocity = yVelocity * -1;
-            if (y <= 0 + radius) {
-                y++;
-            } else {
-                y--;
-            }
-        }
-        if (collectible) {
-            setNewColor();
-            radius += 0.5;
-        }
+    public int getIndex() {
+        return index;
     }
 
     public int getX() {
-        return x;
+        return (int) pool.x[index];
     }
 
     public int getY() {
-        return y;
+        return (int) pool.y[index];
     }
 
     public int getRadius() {
-        return (int) radius;
+        return (int) pool.radius[index];
+    }
+
+    public float getExactRadius() {
+        return pool.radius[index];
+    }
+
+    public int getColor() {
+        return pool.color[index];
+    }
+
+    public void setColor(int color) {
+        pool.color[index] = color;
     }
 
     public boolean isCollectible() {
-        return collectible;
+        return pool.isCollectible(index);
     }
 
     public boolean isAlive() {
-        return alive;
+        return pool.isAlive(index);
     }
 
+    /**
+     * Marks the ball alive or dead. A dead ball stays in its slot for the rest of the tick
+     * and goes back to the pool at the next BallPool.releaseDead().
+     */
     public void setAlive(boolean life) {
-        alive = life;
+        if (life) {
+            pool.flags[index] |= BallPool.FLAG_ALIVE;
+        } else {
+            pool.flags[index] &= ~BallPool.FLAG_ALIVE;
+        }
     }
 
-    public void setNewColor() {
-        if (color != null) {
-            color.setColor(Color.rgb(gameView.randomValue(255),
-                    gameView.randomValue(255),gameView.randomValue(255)));
-        }
+    /**
+     * Packs an opaque color the same way as android.graphics.Color.rgb does.
+     */
+    public static int rgb(int red, int green, int blue) {
+        return 0xff000000 | (red << 16) | (green << 8) | blue;
     }
 }
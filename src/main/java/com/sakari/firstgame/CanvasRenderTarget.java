@@ -0,0 +1,121 @@
+package com.sakari.firstgame;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+/**
+ * RenderTarget drawing on an Android Canvas. Bitmaps and paints are created once here
+ * and reused for every frame; only the canvas changes between frames. Ball batches are
+ * drawn with drawVertices from a white circle atlas, tinted by the vertex colors.
+ */
+public class CanvasRenderTarget implements RenderTarget {
+    private Canvas canvas; // canvas of the frame being drawn
+    private final Bitmap[] images; // preloaded images by IMAGE_* id
+    private final Paint shapePaint; // shared paint for circles and rectangles
+    private final Paint[] textPaints; // text paints by TEXT_* id
+    private final RectF dst; // reused destination rectangle for scaled images
+    private final Paint ballPaint; // textures ball batches with the circle atlas
+
+    public CanvasRenderTarget(Bitmap catImage, Bitmap endSplash) {
+        images = new Bitmap[] {catImage, endSplash};
+        shapePaint = new Paint();
+        Paint scorePaint = new Paint();
+        scorePaint.setTextSize(WorldRenderer.SCORE_TEXT_SIZE);
+        scorePaint.setColor(WorldRenderer.SCORE_COLOR);
+        Paint endPaint = new Paint();
+        endPaint.setTextSize(WorldRenderer.END_TEXT_SIZE);
+        endPaint.setColor(WorldRenderer.END_TEXT_COLOR);
+        Paint overlayPaint = new Paint();
+        overlayPaint.setTextSize(WorldRenderer.OVERLAY_TEXT_SIZE);
+        overlayPaint.setColor(WorldRenderer.OVERLAY_COLOR);
+        textPaints = new Paint[] {scorePaint, endPaint, overlayPaint};
+        dst = new RectF();
+        ballPaint = new Paint();
+        ballPaint.setFilterBitmap(true);
+        ballPaint.setShader(new BitmapShader(createBallAtlas(), Shader.TileMode.CLAMP,
+                Shader.TileMode.CLAMP));
+    }
+
+    /**
+     * Rasterizes the white circles of every SpriteAtlas bucket into one bitmap.
+     */
+    private static Bitmap createBallAtlas() {
+        Bitmap atlas = Bitmap.createBitmap(SpriteAtlas.WIDTH, SpriteAtlas.HEIGHT,
+                Bitmap.Config.ARGB_8888);
+        Canvas atlasCanvas = new Canvas(atlas);
+        Paint circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        circlePaint.setColor(0xffffffff);
+        for (int b = 0; b < SpriteAtlas.BUCKET_RADII.length; b++) {
+            atlasCanvas.drawCircle(SpriteAtlas.centerX(b), SpriteAtlas.centerY(b),
+                    SpriteAtlas.BUCKET_RADII[b], circlePaint);
+        }
+        return atlas;
+    }
+
+    /**
+     * Turns bilinear filtering of the ball sprites on or off. Without it balls have
+     * rougher edges but cost less to fill.
+     */
+    public void setBallFiltering(boolean filtering) {
+        ballPaint.setFilterBitmap(filtering);
+    }
+
+    public void setCanvas(Canvas canvas) {
+        this.canvas = canvas;
+    }
+
+    @Override
+    public void clear(int color) {
+        canvas.drawColor(color);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, int color) {
+        shapePaint.setColor(color);
+        canvas.drawCircle(cx, cy, radius, shapePaint);
+    }
+
+    @Override
+    public void drawBalls(BallBatch batch) {
+        canvas.drawVertices(Canvas.VertexMode.TRIANGLES, batch.getVertexCount(),
+                batch.vertices, 0, batch.texCoords, 0, batch.colors, 0,
+                batch.indices, 0, batch.getIndexCount(), ballPaint);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, int color) {
+        shapePaint.setColor(color);
+        canvas.drawRect(left, top, right, bottom, shapePaint);
+    }
+
+    @Override
+    public void drawImage(int image, float left, float top) {
+        canvas.drawBitmap(images[image], left, top, null);
+    }
+
+    @Override
+    public void drawImage(int image, float left, float top, float right, float bottom) {
+        dst.set(left, top, right, bottom);
+        canvas.drawBitmap(images[image], null, dst, null);
+    }
+
+    @Override
+    public void drawText(char[] text, int start, int count, float x, float y, int style) {
+        canvas.drawText(text, start, count, x, y, textPaints[style]);
+    }
+
+    @Override
+    public void clipRect(int left, int top, int right, int bottom) {
+        canvas.save();
+        canvas.clipRect(left, top, right, bottom);
+    }
+
+    @Override
+    public void restoreClip() {
+        canvas.restore();
+    }
+}
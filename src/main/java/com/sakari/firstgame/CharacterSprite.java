@@ -1,33 +1,47 @@
 package com.sakari.firstgame;
 
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-
+/**
+ * Player character state and movement. Holds no image itself - GameView draws the cat
+ * bitmap at this position - so the sprite can be simulated without Android.
+ */
 public class CharacterSprite {
-    private Bitmap image; // actual image
     private float width; // image width
     private float height; // image height
     private int x, y; // coordinates
-    private float xVelocity = 20; // Speed on X axis
-    private float yVelocity = 12; // Speed on Y acis
-    private int responsivity = 300; // Control responsivity delay - higher = more sluggish reaction
-    private float friction = 0.1f; // movement friction
-    private final int MAX_VELOCITY = 30; // Maximum velocity
-    private GameView gameView; // Main game system
-
-    public CharacterSprite(Bitmap bmp, GameView gv) {
+    private int prevX, prevY; // coordinates before the latest update, for interpolation
+    private float xVelocity = START_X_VELOCITY; // Speed on X axis
+    private float yVelocity = START_Y_VELOCITY; // Speed on Y acis
+    private int responsivity; // Control responsivity delay - higher = more sluggish reaction
+    private float friction; // movement friction
+    private int maxVelocity; // Maximum velocity
+    private static final float START_X_VELOCITY = 20; // Speed on X axis at the start of a game
+    private static final float START_Y_VELOCITY = 12; // Speed on Y axis at the start of a game
+    public static final float HITBOX_SCALE = 0.8f; // share of the image size that hits balls
+    private GameWorld gameWorld; // Main game system
 
-        image = bmp;
-        gameView = gv;
-        width = image.getWidth();
-        height = image.getHeight();
+    /**
+     * @param rules Rules the cat tunables are copied from
+     */
+    public CharacterSprite(float width, float height, GameWorld gw, GameRules rules) {
+        this.width = width;
+        this.height = height;
+        gameWorld = gw;
+        applyRules(rules);
     }
 
-    public void draw(Canvas canvas) {
-        canvas.drawBitmap(image, x, y, null);
+    /**
+     * Copies the cat tunables of the rules, for the next game.
+     */
+    public void applyRules(GameRules rules) {
+        responsivity = rules.getCatResponsivity();
+        friction = rules.getCatFriction();
+        maxVelocity = rules.getCatMaxVelocity();
     }
 
     public void update() {
+        prevX = x;
+        prevY = y;
+
         // Move the player according to velocity
         x += (int) xVelocity;
         y += (int) yVelocity;
@@ -42,22 +56,26 @@ public class CharacterSprite {
     private void checkBorders() {
         /**
          * To keep the player within game view, walls cause bouncing.
-         * Also x/y is moved by a pixel in order to prevent sticking to walls.
+         * Whatever the cat moved past a wall during the tick is mirrored back inside, and
+         * x/y is moved by a pixel more in order to prevent sticking to walls, so even at
+         * full speed the cat never ends up partly off the screen.
          */
-        if ((x >= gameView.getScreenWidth() - width) || (x <= 0)) {
+        int right = (int) (gameWorld.getWidth() - width);
+        if ((x >= gameWorld.getWidth() - width) || (x <= 0)) {
             xVelocity = xVelocity * -1;
             if (x <= 0) {
-                x++;
+                x = Math.min(right, 1 - x);
             } else {
-                x--;
+                x = Math.max(0, 2 * right - x - 1);
             }
         }
-        if ((y >= gameView.getScreenHeight() - height) || (y <= 0)) {
+        int bottom = (int) (gameWorld.getHeight() - height);
+        if ((y >= gameWorld.getHeight() - height) || (y <= 0)) {
             yVelocity = yVelocity * -1;
             if (y <= 0) {
-                y++;
+                y = Math.min(bottom, 1 - y);
             } else {
-                y--;
+                y = Math.max(0, 2 * bottom - y - 1);
             }
         }
     }
@@ -86,7 +104,16 @@ public class CharacterSprite {
      * @param yTap Y coordinate of a tap/click
      */
     public void relateVelocity(double xTap, double yTap) {
-        addVelocity((xTap - x - width / 2) / responsivity, (yTap - y - height / 2) / responsivity);
+        relateVelocity(xTap, yTap, 1);
+    }
+
+    /**
+     * Performs a velocity change towards a touch that lasted only part of a tick.
+     * @param weight Share of the tick the touch lasted, 0..1
+     */
+    public void relateVelocity(double xTap, double yTap, float weight) {
+        addVelocity((xTap - x - width / 2) / responsivity * weight,
+                (yTap - y - height / 2) / responsivity * weight);
     }
 
     /**
@@ -97,15 +124,15 @@ public class CharacterSprite {
     public void addVelocity(double xV, double yV) {
         xVelocity += xV;
         yVelocity += yV;
-        if (yVelocity > MAX_VELOCITY) {
-            yVelocity = MAX_VELOCITY;
-        } else if (yVelocity < -MAX_VELOCITY) {
-            yVelocity = -MAX_VELOCITY;
+        if (yVelocity > maxVelocity) {
+            yVelocity = maxVelocity;
+        } else if (yVelocity < -maxVelocity) {
+            yVelocity = -maxVelocity;
         }
-        if (xVelocity > MAX_VELOCITY) {
-            xVelocity = MAX_VELOCITY;
-        } else if (xVelocity < -MAX_VELOCITY) {
-            xVelocity = -MAX_VELOCITY;
+        if (xVelocity > maxVelocity) {
+            xVelocity = maxVelocity;
+        } else if (xVelocity < -maxVelocity) {
+            xVelocity = -maxVelocity;
         }
     }
 
@@ -118,8 +145,8 @@ public class CharacterSprite {
      */
     public boolean ballTouching(int xB, int yB, int radius) {
         // Height and width of the player is adjusted for further proximity in impact
-        float height = this.height * 0.8f;
-        float width = this.width * 0.8f;
+        float height = this.height * HITBOX_SCALE;
+        float width = this.width * HITBOX_SCALE;
 
         float ballDistX = Math.abs(xB - (x + width / 2));
         float ballDistY = Math.abs(yB - (y + height / 2));
@@ -138,9 +165,73 @@ public class CharacterSprite {
             return true;
         }
 
-        double cornerDistance_sq = Math.pow(ballDistX - width/2, 2) +
-                Math.pow(ballDistY - height/2, 2);
+        float cornerX = ballDistX - width/2;
+        float cornerY = ballDistY - height/2;
+        float cornerDistance_sq = cornerX * cornerX + cornerY * cornerY;
+
+        return (cornerDistance_sq <= (float) radius * radius);
+    }
+
+    /**
+     * Puts the character back at a start place, moving as it does at the start of a game.
+     */
+    public void reset(int x, int y) {
+        setPosition(x, y);
+        xVelocity = START_X_VELOCITY;
+        yVelocity = START_Y_VELOCITY;
+    }
+
+    /**
+     * Places the character without any movement in between.
+     */
+    public void setPosition(int x, int y) {
+        this.x = x;
+        this.y = y;
+        prevX = x;
+        prevY = y;
+    }
+
+    /**
+     * Puts the character back into a saved state.
+     */
+    public void restore(int x, int y, int prevX, int prevY, float xVelocity, float yVelocity) {
+        this.x = x;
+        this.y = y;
+        this.prevX = prevX;
+        this.prevY = prevY;
+        this.xVelocity = xVelocity;
+        this.yVelocity = yVelocity;
+    }
+
+    public float getXVelocity() {
+        return xVelocity;
+    }
+
+    public float getYVelocity() {
+        return yVelocity;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getPrevX() {
+        return prevX;
+    }
+
+    public int getPrevY() {
+        return prevY;
+    }
+
+    public float getWidth() {
+        return width;
+    }
 
-        return (cornerDistance_sq <= Math.pow(radius, 2));
+    public float getHeight() {
+        return height;
     }
-}
\ No newline at end of file
+}
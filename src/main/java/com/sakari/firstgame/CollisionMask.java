@@ -0,0 +1,302 @@
+package com.sakari.firstgame;
+
+/**
+ * Pixel-exact shape of a sprite for collisions, built once from the alpha channel of its
+ * image. Every row of pixels is a run of bits in a long array, set where the pixel is
+ * solid, so checking a circle against the mask tests the pixels the circle covers in each
+ * row 64 at a time instead of one by one. The first and last solid pixel of each row are
+ * kept too, which settles most rows without looking at the bits at all.
+ *
+ * Most checks do not get that far: the nearest solid pixel to every pixel, and the
+ * distance to it, are precomputed as well, so a circle clearly apart from or touching the
+ * shape is settled with a lookup, and a sweep skips ahead by the free distance around the
+ * circle instead of stepping through every position.
+ *
+ * Coordinates are in pixels of the image, with the top left corner at 0, 0.
+ */
+public class CollisionMask {
+    public static final int DEFAULT_ALPHA_THRESHOLD = 128; // alpha from which a pixel is solid
+    private static final float PIXEL_DIAGONAL = 1.415f; // a little over the diagonal of a pixel
+    private static final double FAR = 1e20; // squared distance standing for no solid pixel
+
+    private final int width; // image width in pixels
+    private final int height; // image height in pixels
+    private final int rowWords; // longs per row
+    private final long[] bits; // solid pixels, row after row
+    private final int[] rowFirst; // first solid pixel of each row, width if none
+    private final int[] rowLast; // last solid pixel of each row, -1 if none
+    private final int[] nearestSolid; // index of the nearest solid pixel to each, -1 if none
+    private final float[] distance; // from each pixel center to the nearest solid one
+
+    /**
+     * @param argb Pixels of the image as packed ARGB, row after row
+     * @param alphaThreshold Lowest alpha of a solid pixel
+     */
+    public CollisionMask(int width, int height, int[] argb, int alphaThreshold) {
+        this(width, height, solidBits(width, height, argb, alphaThreshold));
+    }
+
+    private static long[] solidBits(int width, int height, int[] argb, int alphaThreshold) {
+        int rowWords = (width + 63) >>> 6;
+        long[] bits = new long[height * rowWords];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (argb[y * width + x] >>> 24 >= alphaThreshold) {
+                    bits[y * rowWords + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Wraps mask bits as returned by getBits().
+     */
+    CollisionMask(int width, int height, long[] bits) {
+        if (width <= 0 || height <= 0 || bits.length != height * ((width + 63) >>> 6)) {
+            throw new IllegalArgumentException("Mask bits do not match " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        rowWords = (width + 63) >>> 6;
+        this.bits = bits;
+        rowFirst = new int[height];
+        rowLast = new int[height];
+        for (int y = 0; y < height; y++) {
+            rowFirst[y] = width;
+            rowLast[y] = -1;
+            for (int x = 0; x < width; x++) {
+                if (isSolid(x, y)) {
+                    rowFirst[y] = Math.min(rowFirst[y], x);
+                    rowLast[y] = x;
+                }
+            }
+        }
+        nearestSolid = nearestSolid(width, height, bits, rowWords);
+        distance = new float[width * height];
+        for (int i = 0; i < distance.length; i++) {
+            int site = nearestSolid[i];
+            int dx = site % width - i % width;
+            int dy = site / width - i / width;
+            distance[i] = site < 0 ? Float.MAX_VALUE : (float) Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    // Exact Euclidean distance transform of the solid pixels, one pass down the columns
+    // and one along the rows (Felzenszwalb and Huttenlocher), keeping the nearest pixels
+    private static int[] nearestSolid(int width, int height, long[] bits, int rowWords) {
+        int size = Math.max(width, height);
+        double[] f = new double[size];
+        double[] d = new double[size];
+        int[] sites = new int[size];
+        int[] nearest = new int[size];
+        double[] bounds = new double[size + 1];
+        double[] squared = new double[width * height];
+        int[] columnSite = new int[width * height]; // nearest solid row in the same column
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                boolean solid = (bits[y * rowWords + (x >>> 6)] & 1L << x) != 0;
+                f[y] = solid ? 0 : FAR;
+            }
+            transform(f, height, d, nearest, sites, bounds);
+            for (int y = 0; y < height; y++) {
+                squared[y * width + x] = d[y];
+                columnSite[y * width + x] = nearest[y];
+            }
+        }
+        int[] result = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            System.arraycopy(squared, row, f, 0, width);
+            transform(f, width, d, nearest, sites, bounds);
+            for (int x = 0; x < width; x++) {
+                int column = nearest[x];
+                result[row + x] = d[x] < FAR ? columnSite[row + column] * width + column : -1;
+            }
+        }
+        return result;
+    }
+
+    // Squared distances along one line, the lower envelope of parabolas rooted at each
+    // pixel, and the pixel each distance is to
+    private static void transform(double[] f, int n, double[] d, int[] nearest, int[] sites,
+                                  double[] bounds) {
+        int k = 0;
+        sites[0] = 0;
+        bounds[0] = Double.NEGATIVE_INFINITY;
+        bounds[1] = Double.POSITIVE_INFINITY;
+        for (int q = 1; q < n; q++) {
+            double s;
+            while (true) {
+                int v = sites[k];
+                s = ((f[q] + (double) q * q) - (f[v] + (double) v * v)) / (2.0 * (q - v));
+                if (s > bounds[k]) {
+                    break;
+                }
+                k--;
+            }
+            k++;
+            sites[k] = q;
+            bounds[k] = s;
+            bounds[k + 1] = Double.POSITIVE_INFINITY;
+        }
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (bounds[k + 1] < q) {
+                k++;
+            }
+            int v = sites[k];
+            d[q] = (double) (q - v) * (q - v) + f[v];
+            nearest[q] = v;
+        }
+    }
+
+    /**
+     * Lower bound of the distance from a point to the nearest solid pixel. The distances
+     * are between pixel centers, so up to a pixel diagonal is taken off. For a point
+     * outside the image the distance beyond the edge adds up with the distance from the
+     * edge like the sides of a right triangle, since every solid pixel is inside.
+     */
+    private float clearance(float x, float y) {
+        float inside = Math.max(0, nearest(x, y) - PIXEL_DIAGONAL);
+        float outX = outside(x, width);
+        float outY = outside(y, height);
+        if (outX == 0 && outY == 0) {
+            return inside;
+        }
+        return (float) Math.sqrt(inside * inside + outX * outX + outY * outY);
+    }
+
+    // Distance from the center of the image pixel nearest to a point to the nearest solid one
+    private float nearest(float x, float y) {
+        return distance[pixel(x, y)];
+    }
+
+    // Index of the image pixel nearest to a point
+    private int pixel(float x, float y) {
+        int px = Math.max(0, Math.min(width - 1, (int) x));
+        int py = Math.max(0, Math.min(height - 1, (int) y));
+        return py * width + px;
+    }
+
+    // How far a coordinate is outside 0..size
+    private static float outside(float v, int size) {
+        return v < 0 ? -v : v > size ? v - size : 0;
+    }
+
+    /**
+     * Checks if a circle covers any solid pixel, counting pixels it only partly covers.
+     */
+    public boolean touchesCircle(float cx, float cy, float r) {
+        int site = nearestSolid[pixel(cx, cy)];
+        if (site < 0) {
+            return false; // nothing solid at all
+        }
+        // The solid pixel nearest to the center is the one most likely to be touched
+        int sx = site % width;
+        int sy = site / width;
+        float dx = cx < sx ? sx - cx : cx > sx + 1 ? cx - (sx + 1) : 0;
+        float dy = cy < sy ? sy - cy : cy > sy + 1 ? cy - (sy + 1) : 0;
+        if (dx * dx + dy * dy <= r * r) {
+            return true;
+        }
+        if (clearance(cx, cy) > r) {
+            return false;
+        }
+        int top = Math.max(0, (int) Math.floor(cy - r));
+        int bottom = Math.min(height - 1, (int) Math.floor(cy + r));
+        for (int y = top; y <= bottom; y++) {
+            if (rowTouches(y, cx, cy, r)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Checks one row of pixels against a circle
+    private boolean rowTouches(int y, float cx, float cy, float r) {
+        // Nearest distance from the center to the row, then the span of the row in reach
+        float dy = cy < y ? y - cy : cy > y + 1 ? cy - (y + 1) : 0;
+        float rest = r * r - dy * dy;
+        if (rest < 0) {
+            return false;
+        }
+        float half = (float) Math.sqrt(rest);
+        int from = Math.max(0, (int) Math.floor(cx - half));
+        int to = Math.min(width - 1, (int) Math.floor(cx + half));
+        int first = rowFirst[y];
+        int last = rowLast[y];
+        if (from > last || to < first) {
+            return false;
+        }
+        // Reaching past either end of the solid run covers that end, else look closer
+        return from <= first || to >= last || anySolid(y, from, to);
+    }
+
+    /**
+     * Sweeps a circle against the mask: finds when the circle enters the image box, then
+     * moves it on by the free distance around it, a pixel at least, until it touches a
+     * solid pixel or the movement ends.
+     * @return time of the first position touching a solid pixel, 0..1, or NarrowPhase.NO_HIT
+     */
+    public float sweepCircle(float x0, float y0, float dx, float dy, float r) {
+        float t = NarrowPhase.sweepCircleBox(x0, y0, dx, dy, r, 0, 0, width, height);
+        if (t < 0) {
+            return NarrowPhase.NO_HIT;
+        }
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        while (true) {
+            float x = x0 + dx * t;
+            float y = y0 + dy * t;
+            float free = clearance(x, y) - r;
+            if (free <= 0 && touchesCircle(x, y, r)) {
+                return t;
+            }
+            if (t >= 1 || length == 0) {
+                return NarrowPhase.NO_HIT;
+            }
+            t = Math.min(1, t + Math.max(1, free) / length);
+        }
+    }
+
+    // Checks the pixels from..to, inclusive, of a row for any solid one
+    private boolean anySolid(int y, int from, int to) {
+        int row = y * rowWords;
+        int first = from >>> 6;
+        int last = to >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if (first == last) {
+            return (bits[row + first] & firstMask & lastMask) != 0;
+        }
+        if ((bits[row + first] & firstMask) != 0) {
+            return true;
+        }
+        for (int w = first + 1; w < last; w++) {
+            if (bits[row + w] != 0) {
+                return true;
+            }
+        }
+        return (bits[row + last] & lastMask) != 0;
+    }
+
+    public boolean isSolid(int x, int y) {
+        return (bits[y * rowWords + (x >>> 6)] & 1L << x) != 0;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the solid pixel bits, row after row, each row starting in a new long.
+     * Not a copy, so do not modify.
+     */
+    long[] getBits() {
+        return bits;
+    }
+}
@@ -0,0 +1,10 @@
+package com.sakari.firstgame;
+
+/**
+ * Steers the cat of a headless world in place of a player's finger. Called once before
+ * every tick; an implementation touches the world with GameWorld.setTouch() or lets go
+ * with releaseTouch(), exactly like touch input would.
+ */
+public interface Controller {
+    void control(GameWorld world);
+}
@@ -0,0 +1,16 @@
+package com.sakari.firstgame;
+
+/**
+ * How often new balls appear as a game goes on. The interval depends on simulation time
+ * only, in ticks, so a game plays the same however fast frames are drawn. Curves must be
+ * deterministic: replays depend on getting the same interval for the same tick, so use
+ * StrictMath for anything beyond plain arithmetic. The built-in curves come from
+ * DifficultyCurves.
+ */
+public interface DifficultyCurve {
+    /**
+     * @param tick Ticks since the start of the game
+     * @return ticks until the next ball, at least 1
+     */
+    int interval(long tick);
+}
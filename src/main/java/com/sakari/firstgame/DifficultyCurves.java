@@ -0,0 +1,53 @@
+package com.sakari.firstgame;
+
+/**
+ * The built-in difficulty curves.
+ */
+public final class DifficultyCurves {
+
+    private DifficultyCurves() {
+    }
+
+    /**
+     * The ramp of the original game, which made every spawn one tick sooner than the one
+     * before, written as a function of time: the interval falls from start as the square
+     * root of the remaining ramp, reaching minimum after about
+     * (start * start - minimum * minimum) / 2 ticks.
+     */
+    public static DifficultyCurve classic(final int start, final int minimum) {
+        return new DifficultyCurve() {
+            @Override
+            public int interval(long tick) {
+                double remaining = (double) start * start - 2.0 * tick;
+                int interval = remaining > 0 ? (int) Math.sqrt(remaining) : 0;
+                return Math.max(1, Math.max(minimum, interval));
+            }
+        };
+    }
+
+    /**
+     * Halves the distance between the interval and minimum every halfLife ticks.
+     */
+    public static DifficultyCurve exponential(final int start, final int minimum,
+            final long halfLife) {
+        return new DifficultyCurve() {
+            @Override
+            public int interval(long tick) {
+                double decay = StrictMath.pow(0.5, (double) tick / halfLife);
+                return Math.max(1, minimum + (int) ((start - minimum) * decay));
+            }
+        };
+    }
+
+    /**
+     * The same interval for the whole game.
+     */
+    public static DifficultyCurve constant(final int interval) {
+        return new DifficultyCurve() {
+            @Override
+            public int interval(long tick) {
+                return Math.max(1, interval);
+            }
+        };
+    }
+}
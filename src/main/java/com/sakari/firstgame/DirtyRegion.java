@@ -0,0 +1,189 @@
+package com.sakari.firstgame;
+
+/**
+ * A small set of non-overlapping rectangles covering everything that has to be repainted.
+ * Added rectangles are merged with every rectangle they overlap; once the set is full,
+ * a new rectangle is merged into the one it grows the least. Coordinates are whole
+ * pixels, right and bottom exclusive.
+ */
+public class DirtyRegion {
+    private final int[] left;
+    private final int[] top;
+    private final int[] right;
+    private final int[] bottom;
+    private int count; // rectangles in use
+
+    /**
+     * @param maxRects Most rectangles kept before they are merged together
+     */
+    public DirtyRegion(int maxRects) {
+        left = new int[maxRects];
+        top = new int[maxRects];
+        right = new int[maxRects];
+        bottom = new int[maxRects];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Adds an area, rounded outwards to whole pixels. Empty areas are ignored.
+     */
+    public void add(float l, float t, float r, float b) {
+        int nl = (int) Math.floor(l);
+        int nt = (int) Math.floor(t);
+        int nr = (int) Math.ceil(r);
+        int nb = (int) Math.ceil(b);
+        if (nr <= nl || nb <= nt) {
+            return;
+        }
+        while (true) {
+            // Swallow every rectangle the new one overlaps; growing may reach further ones
+            boolean merged = false;
+            for (int i = 0; i < count; i++) {
+                if (nl < right[i] && left[i] < nr && nt < bottom[i] && top[i] < nb) {
+                    nl = Math.min(nl, left[i]);
+                    nt = Math.min(nt, top[i]);
+                    nr = Math.max(nr, right[i]);
+                    nb = Math.max(nb, bottom[i]);
+                    removeAt(i);
+                    merged = true;
+                    i--;
+                }
+            }
+            if (merged) {
+                continue; // the grown rectangle may now overlap one checked before it grew
+            }
+            if (count < left.length) {
+                break;
+            }
+            // Full: fold into the rectangle that grows the least and check again
+            int best = cheapestMerge(nl, nt, nr, nb);
+            nl = Math.min(nl, left[best]);
+            nt = Math.min(nt, top[best]);
+            nr = Math.max(nr, right[best]);
+            nb = Math.max(nb, bottom[best]);
+            removeAt(best);
+        }
+        left[count] = nl;
+        top[count] = nt;
+        right[count] = nr;
+        bottom[count] = nb;
+        count++;
+    }
+
+    /**
+     * Replaces the region with a single rectangle.
+     */
+    public void set(int l, int t, int r, int b) {
+        count = 0;
+        add(l, t, r, b);
+    }
+
+    /**
+     * Limits every rectangle to the given bounds, dropping those left empty.
+     */
+    public void clip(int l, int t, int r, int b) {
+        for (int i = 0; i < count; i++) {
+            left[i] = Math.max(left[i], l);
+            top[i] = Math.max(top[i], t);
+            right[i] = Math.min(right[i], r);
+            bottom[i] = Math.min(bottom[i], b);
+            if (right[i] <= left[i] || bottom[i] <= top[i]) {
+                removeAt(i);
+                i--;
+            }
+        }
+    }
+
+    public int getLeft(int i) {
+        return left[i];
+    }
+
+    public int getTop(int i) {
+        return top[i];
+    }
+
+    public int getRight(int i) {
+        return right[i];
+    }
+
+    public int getBottom(int i) {
+        return bottom[i];
+    }
+
+    public int getBoundsLeft() {
+        int v = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            v = Math.min(v, left[i]);
+        }
+        return v;
+    }
+
+    public int getBoundsTop() {
+        int v = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            v = Math.min(v, top[i]);
+        }
+        return v;
+    }
+
+    public int getBoundsRight() {
+        int v = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            v = Math.max(v, right[i]);
+        }
+        return v;
+    }
+
+    public int getBoundsBottom() {
+        int v = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            v = Math.max(v, bottom[i]);
+        }
+        return v;
+    }
+
+    /**
+     * Total area of the rectangles, in pixels.
+     */
+    public long getArea() {
+        long area = 0;
+        for (int i = 0; i < count; i++) {
+            area += (long) (right[i] - left[i]) * (bottom[i] - top[i]);
+        }
+        return area;
+    }
+
+    private int cheapestMerge(int l, int t, int r, int b) {
+        int best = 0;
+        long bestGrowth = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            long merged = (long) (Math.max(r, right[i]) - Math.min(l, left[i]))
+                    * (Math.max(b, bottom[i]) - Math.min(t, top[i]));
+            long growth = merged - (long) (right[i] - left[i]) * (bottom[i] - top[i]);
+            if (growth < bestGrowth) {
+                bestGrowth = growth;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private void removeAt(int i) {
+        count--;
+        left[i] = left[count];
+        top[i] = top[count];
+        right[i] = right[count];
+        bottom[i] = bottom[count];
+    }
+}
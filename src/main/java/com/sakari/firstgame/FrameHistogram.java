@@ -0,0 +1,100 @@
+package com.sakari.firstgame;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of non-negative long values, in the spirit of HdrHistogram.
+ * Values below 32 are counted exactly; above that each power of two is split into 32
+ * buckets, which keeps the relative error of reported percentiles around 3%.
+ *
+ * There is exactly one writing thread (the game loop), which records with a plain
+ * read and an ordered store, so recording neither locks nor allocates. Any thread may
+ * read the counts at the same time through Stats objects it owns.
+ */
+public class FrameHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Counts one value. Negative values are counted as zero. Single writer only.
+     */
+    public void record(long value) {
+        int bucket = bucketOf(value < 0 ? 0 : value);
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /** Largest value that falls into the given bucket. */
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long low = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    /**
+     * Percentiles over the values recorded between two update() calls. Each reader keeps
+     * its own Stats, so readers never disturb the writer or each other.
+     */
+    public static class Stats {
+        private final long[] seen = new long[BUCKETS]; // counts at the previous update
+        private final long[] window = new long[BUCKETS]; // counts within the latest window
+        public long count; // values in the window
+        public long p50; // median
+        public long p95; // 95th percentile
+        public long p99; // 99th percentile
+        public long max; // largest value, to bucket precision
+
+        /**
+         * Reads the values recorded since the previous call and computes the percentiles.
+         */
+        public void update(FrameHistogram histogram) {
+            AtomicLongArray counts = histogram.counts;
+            long total = 0;
+            int highest = -1;
+            for (int i = 0; i < BUCKETS; i++) {
+                long now = counts.get(i);
+                long delta = now - seen[i];
+                seen[i] = now;
+                window[i] = delta;
+                if (delta != 0) {
+                    total += delta;
+                    highest = i;
+                }
+            }
+            count = total;
+            max = highest < 0 ? 0 : highestValueIn(highest);
+            p50 = percentile(total, 0.50);
+            p95 = percentile(total, 0.95);
+            p99 = percentile(total, 0.99);
+        }
+
+        private long percentile(long total, double fraction) {
+            if (total == 0) {
+                return 0;
+            }
+            long wanted = (long) Math.ceil(total * fraction);
+            long sum = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                sum += window[i];
+                if (sum >= wanted) {
+                    return highestValueIn(i);
+                }
+            }
+            return max;
+        }
+    }
+}
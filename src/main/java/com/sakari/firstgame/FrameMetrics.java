@@ -0,0 +1,129 @@
+package com.sakari.firstgame;
+
+/**
+ * Frame-time and tick instrumentation of the game loop. The simulation thread records
+ * its steps and the render thread its frames, each into histograms and counters only it
+ * writes, without locking or allocating; snapshots can be taken from any thread, and a
+ * summary is written to the log periodically.
+ */
+public class FrameMetrics {
+    private final FrameHistogram updateTime = new FrameHistogram(); // nanos spent in simulation per loop round
+    private final FrameHistogram drawTime = new FrameHistogram(); // nanos spent drawing per frame
+    private final FrameHistogram sleepOvershoot = new FrameHistogram(); // nanos overslept per loop round
+    private final FrameHistogram stepsPerFrame = new FrameHistogram(); // simulation steps per loop round
+    private final long frameBudgetNanos; // frames longer than this count as slow
+    private volatile long frames; // frames drawn
+    private volatile long slowFrames; // frames whose drawing went over budget
+    private volatile long droppedBacklogs; // times the loop gave up catching up
+    private volatile int liveBalls; // balls at the latest frame
+
+    private long dumpIntervalNanos = 10000000000L; // time between log dumps
+    private long lastDump; // time of the latest dump
+    private final Snapshot dumpSnapshot = new Snapshot(); // reused by dumps
+    private final TextBuffer dumpText = new TextBuffer(256); // reused by dumps
+
+    public FrameMetrics(long frameBudgetNanos) {
+        this.frameBudgetNanos = frameBudgetNanos;
+    }
+
+    /**
+     * Records one round of the simulation loop. Called from the simulation thread only.
+     * @param updateNanos Time spent in simulation steps
+     * @param overshootNanos How much longer the loop slept than it asked for
+     * @param steps Simulation steps run in this round
+     * @param balls Live ball count after the steps
+     */
+    public void recordUpdate(long updateNanos, long overshootNanos, int steps, int balls) {
+        updateTime.record(updateNanos);
+        sleepOvershoot.record(overshootNanos);
+        stepsPerFrame.record(steps);
+        liveBalls = balls;
+    }
+
+    /**
+     * Records one drawn frame. Called from the render thread only.
+     * @param drawNanos Time spent drawing, not counting waits for a buffer to lock
+     */
+    public void recordDraw(long drawNanos) {
+        drawTime.record(drawNanos);
+        if (drawNanos > frameBudgetNanos) {
+            slowFrames++;
+        }
+        frames++;
+    }
+
+    /** Records that the loop dropped its backlog of simulation time. */
+    public void recordDroppedBacklog() {
+        droppedBacklogs++;
+    }
+
+    /**
+     * Fills in the statistics of the frames recorded since the previous call with the same
+     * snapshot object.
+     */
+    public void snapshot(Snapshot out) {
+        out.update.update(updateTime);
+        out.draw.update(drawTime);
+        out.overshoot.update(sleepOvershoot);
+        out.steps.update(stepsPerFrame);
+        out.frames = frames;
+        out.slowFrames = slowFrames;
+        out.droppedBacklogs = droppedBacklogs;
+        out.liveBalls = liveBalls;
+        Runtime runtime = Runtime.getRuntime();
+        out.heapUsed = runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Writes a summary line to the log when the dump interval has passed. Called from the
+     * simulation thread; does nothing unless debug logging is on.
+     * @param now Current System.nanoTime
+     */
+    public void maybeDump(long now) {
+        if (now - lastDump < dumpIntervalNanos || !GameLog.isLoggable(GameLog.DEBUG)) {
+            return;
+        }
+        lastDump = now;
+        snapshot(dumpSnapshot);
+        dumpSnapshot.appendTo(dumpText.clear());
+        GameLog.d(dumpText);
+    }
+
+    public void setDumpInterval(long nanos) {
+        dumpIntervalNanos = nanos;
+    }
+
+    /**
+     * Statistics over one window of frames. Times are in nanoseconds.
+     */
+    public static class Snapshot {
+        public final FrameHistogram.Stats update = new FrameHistogram.Stats();
+        public final FrameHistogram.Stats draw = new FrameHistogram.Stats();
+        public final FrameHistogram.Stats overshoot = new FrameHistogram.Stats();
+        public final FrameHistogram.Stats steps = new FrameHistogram.Stats();
+        public long frames; // frames recorded in total
+        public long slowFrames; // slow frames in total
+        public long droppedBacklogs; // dropped backlogs in total
+        public int liveBalls; // balls at the latest frame
+        public long heapUsed; // bytes of Java heap in use when the snapshot was taken
+
+        /**
+         * Appends the snapshot as one line of text, times in microseconds.
+         */
+        public TextBuffer appendTo(TextBuffer text) {
+            appendStats(text.append("frame us p50/p95/p99/max: update "), update);
+            appendStats(text.append(" draw "), draw);
+            appendStats(text.append(" oversleep "), overshoot);
+            text.append(" steps p50/max ").append(steps.p50).append('/').append(steps.max);
+            text.append(" frames ").append(frames).append(" slow ").append(slowFrames);
+            text.append(" dropped ").append(droppedBacklogs);
+            text.append(" balls ").append(liveBalls);
+            return text.append(" heap ").append(heapUsed / 1024).append("k");
+        }
+
+        static void appendStats(TextBuffer text, FrameHistogram.Stats stats) {
+            text.append(stats.p50 / 1000).append('/').append(stats.p95 / 1000).append('/')
+                    .append(stats.p99 / 1000).append('/').append(stats.max / 1000);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.sakari.firstgame;
+
+/**
+ * Receives game events as plain values, so passing them on allocates nothing. See
+ * GameEvents for the event types and what their values mean.
+ */
+public interface GameEventListener {
+    /**
+     * @param type GameEvents.HIT, COLLECT, SPAWN, DEATH, CONTACT_BEGIN or CONTACT_END
+     * @param tick Tick during which the event happened
+     * @param cat Cat the event concerns, -1 for none
+     * @param value Radius of the ball, rounded down, for HIT, COLLECT, CONTACT_BEGIN and
+     * CONTACT_END, the latter at the tick the contact ended; kind of the ball for SPAWN,
+     * SpawnScheduler.BALL or PRIZE; 0 for DEATH
+     * @param points Score change
+     * @param energy Energy change, before the energy cap
+     */
+    void onEvent(byte type, long tick, int cat, int value, int points, int energy);
+}
@@ -0,0 +1,120 @@
+package com.sakari.firstgame;
+
+/**
+ * Ring buffer of everything that changes the score or the energy of a game: hits, eaten
+ * prizes, spawns and the end of the game, as well as the start and end of each contact.
+ * GameWorld emits the events during step() and derives its score and energy from them
+ * with a ScoreKeeper; anything else that wants to follow the game, such as statistics or
+ * an event log, reads them with a Reader of its own. Events are kept in parallel
+ * primitive arrays, so neither emitting nor reading allocates.
+ *
+ * The buffer keeps the latest capacity events. A reader that falls further behind skips
+ * the overwritten events and counts them as lost. Readers run on the simulation thread,
+ * between steps.
+ */
+public class GameEvents {
+    public static final byte HIT = 0; // a cat touched a dull ball, once per tick of contact
+    public static final byte COLLECT = 1; // a cat ate a prize ball
+    public static final byte SPAWN = 2; // a ball was due, spawned unless the pool was full
+    public static final byte DEATH = 3; // the cat ran out of energy and the game ended
+    public static final byte CONTACT_BEGIN = 4; // a cat started touching a dull ball
+    public static final byte CONTACT_END = 5; // a cat stopped touching a dull ball
+
+    private final byte[] types;
+    private final byte[] cats;
+    private final long[] ticks;
+    private final int[] values;
+    private final int[] points;
+    private final int[] energies;
+    private final int mask; // capacity - 1, capacity is a power of two
+    private long published; // events emitted so far
+
+    /**
+     * @param capacity Events kept for readers, rounded up to a power of two
+     */
+    public GameEvents(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        types = new byte[size];
+        cats = new byte[size];
+        ticks = new long[size];
+        values = new int[size];
+        points = new int[size];
+        energies = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an event, overwriting the oldest one if the buffer is full. See
+     * GameEventListener for the parameters.
+     */
+    public void emit(byte type, long tick, int cat, int value, int points, int energy) {
+        int slot = (int) published & mask;
+        types[slot] = type;
+        ticks[slot] = tick;
+        cats[slot] = (byte) cat;
+        values[slot] = value;
+        this.points[slot] = points;
+        energies[slot] = energy;
+        published++;
+    }
+
+    /**
+     * @return number of events emitted so far, the sequence number of the next event
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Starts following the events from the next one emitted.
+     */
+    public Reader newReader() {
+        return new Reader(published);
+    }
+
+    /**
+     * Position of one consumer in the event stream.
+     */
+    public class Reader {
+        private long next; // sequence number of the next event to read
+        private long lost; // events overwritten before this reader got to them
+
+        Reader(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Passes every event emitted since the previous call to the listener, oldest first.
+         * @return number of events passed on
+         */
+        public int drainTo(GameEventListener listener) {
+            long end = published;
+            if (end - next > types.length) {
+                lost += end - types.length - next;
+                next = end - types.length;
+            }
+            int count = (int) (end - next);
+            for (; next < end; next++) {
+                int slot = (int) next & mask;
+                listener.onEvent(types[slot], ticks[slot], cats[slot], values[slot],
+                        points[slot], energies[slot]);
+            }
+            return count;
+        }
+
+        /**
+         * @return events emitted but not yet read
+         */
+        public int available() {
+            return (int) Math.min(published - next, types.length);
+        }
+
+        public long getLost() {
+            return lost;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.sakari.firstgame;
+
+import java.io.PrintStream;
+
+/**
+ * Level-gated logger for the game. Messages below the current level cost one comparison
+ * and nothing else. Enabled messages are formatted into a shared buffer and written as
+ * ASCII bytes, so even logging from the game loop does not create garbage.
+ * System.out ends up in logcat on Android.
+ */
+public final class GameLog {
+    public static final int DEBUG = 1;
+    public static final int INFO = 2;
+    public static final int WARN = 3;
+    public static final int NONE = 4;
+
+    private static volatile int level = INFO; // lowest level that gets written
+    private static PrintStream out = System.out; // where log lines go
+    private static final TextBuffer line = new TextBuffer(128);
+    private static byte[] bytes = new byte[128];
+
+    private GameLog() {
+    }
+
+    public static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+
+    public static void setOutput(PrintStream stream) {
+        synchronized (line) {
+            out = stream;
+        }
+    }
+
+    public static boolean isLoggable(int messageLevel) {
+        return messageLevel >= level;
+    }
+
+    public static void d(String message) {
+        if (DEBUG >= level) {
+            write(message, false, 0);
+        }
+    }
+
+    public static void d(String message, long value) {
+        if (DEBUG >= level) {
+            write(message, true, value);
+        }
+    }
+
+    public static void i(String message) {
+        if (INFO >= level) {
+            write(message, false, 0);
+        }
+    }
+
+    public static void i(String message, long value) {
+        if (INFO >= level) {
+            write(message, true, value);
+        }
+    }
+
+    public static void w(String message) {
+        if (WARN >= level) {
+            write(message, false, 0);
+        }
+    }
+
+    /**
+     * Writes a debug line that has been prepared into a caller owned buffer.
+     */
+    public static void d(TextBuffer text) {
+        if (DEBUG >= level) {
+            synchronized (line) {
+                writeLine(text);
+            }
+        }
+    }
+
+    /**
+     * Writes a line that has been prepared into a caller owned buffer.
+     */
+    public static void i(TextBuffer text) {
+        if (INFO >= level) {
+            synchronized (line) {
+                writeLine(text);
+            }
+        }
+    }
+
+    private static void write(String message, boolean withValue, long value) {
+        synchronized (line) {
+            line.clear().append(message);
+            if (withValue) {
+                line.append(value);
+            }
+            writeLine(line);
+        }
+    }
+
+    // Caller holds the lock
+    private static void writeLine(TextBuffer text) {
+        int length = text.length();
+        if (bytes.length < length + 1) {
+            bytes = new byte[length + 1 + (length >> 1)];
+        }
+        char[] chars = text.getChars();
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            bytes[i] = (byte) (c < 128 ? c : '?');
+        }
+        bytes[length] = '\n';
+        out.write(bytes, 0, length + 1);
+        out.flush();
+    }
+}
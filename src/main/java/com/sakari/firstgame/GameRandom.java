@@ -0,0 +1,52 @@
+package com.sakari.firstgame;
+
+/**
+ * Small, fast and seedable random number generator (SplitMix64), one per world. Unlike
+ * Math.random() it is not shared between threads, needs no synchronization, and the
+ * same seed always produces the same game. The whole state is one long, so it can be
+ * saved and restored exactly.
+ */
+public class GameRandom {
+    private long state; // current generator state
+
+    public GameRandom(long seed) {
+        state = seed;
+    }
+
+    public long nextLong() {
+        long z = (state += 0x9e3779b97f4a7c15L);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param bound Exclusive upper limit
+     * @return a value in 0..bound-1, or 0 if bound is not positive
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            return 0;
+        }
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * @return a value in 0 (inclusive) .. 1 (exclusive)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+}
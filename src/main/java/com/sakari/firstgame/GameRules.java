@@ -0,0 +1,417 @@
+package com.sakari.firstgame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Tuning values of the game. A GameWorld copies these into its own fields when it is
+ * created or reset with new rules, so changing a GameRules object never affects a game
+ * already running. The defaults are the values the game has always been played with.
+ *
+ * A rules profile is the same values as a properties file, one key per value named like
+ * its field, for example maxBalls=600. Keys left out keep their defaults. load() reads a
+ * profile and validates it, and toProfile() writes one back out; a custom difficulty
+ * curve has no profile form, so a profile always describes the curve of the counters.
+ */
+public class GameRules {
+    // Profile keys in the order toProfile() writes them
+    private static final String[] KEYS = {
+            "maxBallVelocity", "maxBallRadius", "prizeChance", "startBallCounter",
+            "minimumBallCounter", "difficultyHalfLife", "ballsDefaultEdible", "pointModifier",
+            "startEnergy", "energyGain", "maxEnergy", "maxBalls", "cats", "catResponsivity",
+            "catFriction", "catMaxVelocity"
+    };
+
+    private int maxBallVelocity = 15; // spawned ball max speed
+    private int maxBallRadius = 65; // spawned ball max radius
+    private double prizeChance = 0.005; // price ball chance per tick
+    private int startBallCounter = 100; // starting delay of new balls appearing - higher is slower
+    private int minimumBallCounter = 10; // minimum delay with new ball spawns
+    private long difficultyHalfLife = 0; // ticks to halve the spawn delay, 0 for the classic ramp
+    private DifficultyCurve difficultyCurve; // custom spawn delay curve, overrides the values above
+    private boolean ballsDefaultEdible = false; // whether normal balls are consumable
+    private int pointModifier = 1000; // higher value yields more points
+    private double startEnergy = 1000; // energy at start - higher is more enduring
+    private int energyGain = 100; // energy gained per caught flashy ball
+    private int maxEnergy = 2000; // energy cap
+    private int maxBalls = 4096; // balls in play at most, further spawns are skipped
+    private int cats = 1; // player characters, 1..GameWorld.MAX_CATS
+    private int catResponsivity = 300; // control delay of the cats - higher = more sluggish reaction
+    private float catFriction = 0.1f; // speed the cats lose per tick
+    private int catMaxVelocity = 30; // cat max speed on both axes
+
+    public GameRules copy() {
+        GameRules copy = new GameRules();
+        copy.maxBallVelocity = maxBallVelocity;
+        copy.maxBallRadius = maxBallRadius;
+        copy.prizeChance = prizeChance;
+        copy.startBallCounter = startBallCounter;
+        copy.minimumBallCounter = minimumBallCounter;
+        copy.difficultyHalfLife = difficultyHalfLife;
+        copy.difficultyCurve = difficultyCurve;
+        copy.ballsDefaultEdible = ballsDefaultEdible;
+        copy.pointModifier = pointModifier;
+        copy.startEnergy = startEnergy;
+        copy.energyGain = energyGain;
+        copy.maxEnergy = maxEnergy;
+        copy.maxBalls = maxBalls;
+        copy.cats = cats;
+        copy.catResponsivity = catResponsivity;
+        copy.catFriction = catFriction;
+        copy.catMaxVelocity = catMaxVelocity;
+        return copy;
+    }
+
+    /**
+     * Reads a rules profile on top of the defaults.
+     * @throws IllegalArgumentException if the profile has an unknown key, a value that
+     * does not parse or rules that fail validate()
+     */
+    public static GameRules load(InputStream in) throws IOException {
+        Properties profile = new Properties();
+        profile.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        GameRules rules = new GameRules();
+        for (String key : profile.stringPropertyNames()) {
+            if (!rules.set(key, profile.getProperty(key).trim())) {
+                throw new IllegalArgumentException("Unknown rules key: " + key);
+            }
+        }
+        return rules.validate();
+    }
+
+    /**
+     * Sets one value by its profile key.
+     * @return false if there is no such key
+     * @throws IllegalArgumentException if the value does not parse
+     */
+    public boolean set(String key, String value) {
+        try {
+            switch (key) {
+                case "maxBallVelocity":
+                    maxBallVelocity = Integer.parseInt(value);
+                    return true;
+                case "maxBallRadius":
+                    maxBallRadius = Integer.parseInt(value);
+                    return true;
+                case "prizeChance":
+                    prizeChance = Double.parseDouble(value);
+                    return true;
+                case "startBallCounter":
+                    startBallCounter = Integer.parseInt(value);
+                    return true;
+                case "minimumBallCounter":
+                    minimumBallCounter = Integer.parseInt(value);
+                    return true;
+                case "difficultyHalfLife":
+                    difficultyHalfLife = Long.parseLong(value);
+                    return true;
+                case "ballsDefaultEdible":
+                    ballsDefaultEdible = parseBoolean(value);
+                    return true;
+                case "pointModifier":
+                    pointModifier = Integer.parseInt(value);
+                    return true;
+                case "startEnergy":
+                    startEnergy = Double.parseDouble(value);
+                    return true;
+                case "energyGain":
+                    energyGain = Integer.parseInt(value);
+                    return true;
+                case "maxEnergy":
+                    maxEnergy = Integer.parseInt(value);
+                    return true;
+                case "maxBalls":
+                    maxBalls = Integer.parseInt(value);
+                    return true;
+                case "cats":
+                    cats = Integer.parseInt(value);
+                    return true;
+                case "catResponsivity":
+                    catResponsivity = Integer.parseInt(value);
+                    return true;
+                case "catFriction":
+                    catFriction = Float.parseFloat(value);
+                    return true;
+                case "catMaxVelocity":
+                    catMaxVelocity = Integer.parseInt(value);
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad value for " + key + ": " + value);
+        }
+    }
+
+    private static boolean parseBoolean(String value) {
+        if (!value.equals("true") && !value.equals("false")) {
+            throw new NumberFormatException(value);
+        }
+        return value.equals("true");
+    }
+
+    /**
+     * @return the value of a profile key as text, or null if there is no such key
+     */
+    public String get(String key) {
+        switch (key) {
+            case "maxBallVelocity":
+                return Integer.toString(maxBallVelocity);
+            case "maxBallRadius":
+                return Integer.toString(maxBallRadius);
+            case "prizeChance":
+                return Double.toString(prizeChance);
+            case "startBallCounter":
+                return Integer.toString(startBallCounter);
+            case "minimumBallCounter":
+                return Integer.toString(minimumBallCounter);
+            case "difficultyHalfLife":
+                return Long.toString(difficultyHalfLife);
+            case "ballsDefaultEdible":
+                return Boolean.toString(ballsDefaultEdible);
+            case "pointModifier":
+                return Integer.toString(pointModifier);
+            case "startEnergy":
+                return Double.toString(startEnergy);
+            case "energyGain":
+                return Integer.toString(energyGain);
+            case "maxEnergy":
+                return Integer.toString(maxEnergy);
+            case "maxBalls":
+                return Integer.toString(maxBalls);
+            case "cats":
+                return Integer.toString(cats);
+            case "catResponsivity":
+                return Integer.toString(catResponsivity);
+            case "catFriction":
+                return Float.toString(catFriction);
+            case "catMaxVelocity":
+                return Integer.toString(catMaxVelocity);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return these rules as a profile that load() reads back to the same values
+     */
+    public String toProfile() {
+        StringBuilder profile = new StringBuilder();
+        for (String key : KEYS) {
+            profile.append(key).append('=').append(get(key)).append('\n');
+        }
+        return profile.toString();
+    }
+
+    /**
+     * Checks that the values make a playable game: nothing the world divides by is zero,
+     * chances are chances and the counters ramp the right way.
+     * @return these rules
+     * @throws IllegalArgumentException listing every value out of range
+     */
+    public GameRules validate() {
+        StringBuilder problems = new StringBuilder();
+        check(problems, maxBallVelocity >= 0, "maxBallVelocity must not be negative");
+        check(problems, maxBallRadius >= 1, "maxBallRadius must be at least 1");
+        check(problems, prizeChance >= 0 && prizeChance <= 1, "prizeChance must be 0..1");
+        check(problems, minimumBallCounter >= 1, "minimumBallCounter must be at least 1");
+        check(problems, startBallCounter >= minimumBallCounter,
+                "startBallCounter must be at least minimumBallCounter");
+        check(problems, difficultyHalfLife >= 0, "difficultyHalfLife must not be negative");
+        check(problems, pointModifier >= 0, "pointModifier must not be negative");
+        check(problems, startEnergy > 0, "startEnergy must be positive");
+        check(problems, energyGain >= 0, "energyGain must not be negative");
+        check(problems, maxEnergy >= startEnergy, "maxEnergy must be at least startEnergy");
+        check(problems, maxBalls >= 1, "maxBalls must be at least 1");
+        check(problems, cats >= 1 && cats <= GameWorld.MAX_CATS,
+                "cats must be 1.." + GameWorld.MAX_CATS);
+        check(problems, catResponsivity >= 1, "catResponsivity must be at least 1");
+        check(problems, catFriction >= 0 && catFriction < catMaxVelocity,
+                "catFriction must be 0..catMaxVelocity");
+        check(problems, catMaxVelocity >= 1, "catMaxVelocity must be at least 1");
+        if (problems.length() > 0) {
+            throw new IllegalArgumentException("Invalid rules: " + problems);
+        }
+        return this;
+    }
+
+    private static void check(StringBuilder problems, boolean valid, String problem) {
+        if (!valid) {
+            problems.append(problems.length() > 0 ? ", " : "").append(problem);
+        }
+    }
+
+    public int getMaxBallVelocity() {
+        return maxBallVelocity;
+    }
+
+    public GameRules setMaxBallVelocity(int maxBallVelocity) {
+        this.maxBallVelocity = maxBallVelocity;
+        return this;
+    }
+
+    public int getMaxBallRadius() {
+        return maxBallRadius;
+    }
+
+    public GameRules setMaxBallRadius(int maxBallRadius) {
+        this.maxBallRadius = maxBallRadius;
+        return this;
+    }
+
+    public double getPrizeChance() {
+        return prizeChance;
+    }
+
+    public GameRules setPrizeChance(double prizeChance) {
+        this.prizeChance = prizeChance;
+        return this;
+    }
+
+    public int getStartBallCounter() {
+        return startBallCounter;
+    }
+
+    public GameRules setStartBallCounter(int startBallCounter) {
+        this.startBallCounter = startBallCounter;
+        return this;
+    }
+
+    public int getMinimumBallCounter() {
+        return minimumBallCounter;
+    }
+
+    public GameRules setMinimumBallCounter(int minimumBallCounter) {
+        this.minimumBallCounter = minimumBallCounter;
+        return this;
+    }
+
+    public long getDifficultyHalfLife() {
+        return difficultyHalfLife;
+    }
+
+    /**
+     * Makes the spawn delay fall exponentially from startBallCounter towards
+     * minimumBallCounter, halving the distance every given number of ticks. 0 keeps the
+     * classic ramp.
+     */
+    public GameRules setDifficultyHalfLife(long difficultyHalfLife) {
+        this.difficultyHalfLife = difficultyHalfLife;
+        return this;
+    }
+
+    /**
+     * @return the custom curve if one is set, else the curve the counters and half-life
+     * describe
+     */
+    public DifficultyCurve getDifficultyCurve() {
+        if (difficultyCurve != null) {
+            return difficultyCurve;
+        }
+        if (difficultyHalfLife > 0) {
+            return DifficultyCurves.exponential(startBallCounter, minimumBallCounter, difficultyHalfLife);
+        }
+        return DifficultyCurves.classic(startBallCounter, minimumBallCounter);
+    }
+
+    /**
+     * Sets a custom curve for the spawn delay, or null to go back to the counters.
+     */
+    public GameRules setDifficultyCurve(DifficultyCurve difficultyCurve) {
+        this.difficultyCurve = difficultyCurve;
+        return this;
+    }
+
+    public boolean isBallsDefaultEdible() {
+        return ballsDefaultEdible;
+    }
+
+    public GameRules setBallsDefaultEdible(boolean ballsDefaultEdible) {
+        this.ballsDefaultEdible = ballsDefaultEdible;
+        return this;
+    }
+
+    public int getPointModifier() {
+        return pointModifier;
+    }
+
+    public GameRules setPointModifier(int pointModifier) {
+        this.pointModifier = pointModifier;
+        return this;
+    }
+
+    public double getStartEnergy() {
+        return startEnergy;
+    }
+
+    public GameRules setStartEnergy(double startEnergy) {
+        this.startEnergy = startEnergy;
+        return this;
+    }
+
+    public int getEnergyGain() {
+        return energyGain;
+    }
+
+    public GameRules setEnergyGain(int energyGain) {
+        this.energyGain = energyGain;
+        return this;
+    }
+
+    public int getMaxEnergy() {
+        return maxEnergy;
+    }
+
+    public GameRules setMaxEnergy(int maxEnergy) {
+        this.maxEnergy = maxEnergy;
+        return this;
+    }
+
+    public int getMaxBalls() {
+        return maxBalls;
+    }
+
+    public GameRules setMaxBalls(int maxBalls) {
+        this.maxBalls = maxBalls;
+        return this;
+    }
+
+    public int getCats() {
+        return cats;
+    }
+
+    public GameRules setCats(int cats) {
+        this.cats = cats;
+        return this;
+    }
+
+    public int getCatResponsivity() {
+        return catResponsivity;
+    }
+
+    public GameRules setCatResponsivity(int catResponsivity) {
+        this.catResponsivity = catResponsivity;
+        return this;
+    }
+
+    public float getCatFriction() {
+        return catFriction;
+    }
+
+    public GameRules setCatFriction(float catFriction) {
+        this.catFriction = catFriction;
+        return this;
+    }
+
+    public int getCatMaxVelocity() {
+        return catMaxVelocity;
+    }
+
+    public GameRules setCatMaxVelocity(int catMaxVelocity) {
+        this.catMaxVelocity = catMaxVelocity;
+        return this;
+    }
+}
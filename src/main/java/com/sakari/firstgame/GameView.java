@@ -1,230 +1,507 @@
 package com.sakari.firstgame;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.RectF;
+import android.graphics.Rect;
+import android.util.DisplayMetrics;
 import android.view.MotionEvent;
 import android.view.SurfaceView;
 import android.view.SurfaceHolder;
 
-import java.util.ArrayList;
-
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * The game screen. Owns the world, the simulation and render loops and the loaded
+ * bitmaps for as long as the activity lives; a new game resets the world in place
+ * instead of building a new view. The loops run on threads of a LoopHost, which the
+ * activity and surface callbacks pause and resume without losing any game state.
+ *
+ * The world is in units of its own, mapped to the screen by a Viewport. Frames are
+ * drawn in world units on a surface buffer of a fixed size, usually smaller than the
+ * screen, which the display hardware scales up when it composes the screen.
+ */
 public class GameView extends SurfaceView implements SurfaceHolder.Callback {
-    private MainActivity main; // for restarting the game
-    private MainThread thread; // main game thread
-    private CharacterSprite characterSprite; // player character
+    private LoopHost host; // simulation and render threads
+    private GameWorld world; // the actual game simulation
+    private WorldRenderer renderer; // draws the world state
+    private CanvasRenderTarget renderTarget; // canvas drawing with preloaded bitmaps and paints
+    private FrameMetrics metrics; // frame-time instrumentation of the game loop
+    private QualityScaler quality; // render quality steered by the measured frame times
+    private volatile long latestStepNanos; // time the latest simulation step took
+    private int worldQuality = QualityScaler.FULL; // quality level the ball cap follows, simulation thread only
+    private InputRecorder recorder; // input of the current session, for replaying it later
+    private InputQueue inputs; // touch events from the UI thread to the simulation thread
+    private SnapshotExchange snapshots; // world state from the simulation thread to the render thread
     private float firstTouchX, firstTouchY; // Would be only used with gesture controls active
-    private MotionEvent localME; // for continuous control when touchpad is pressed
     private int screenWidth; // Screen width
     private int screenHeight; // Screen height
-    private ArrayList<BallThing> balls; // balls in the game
-    private int ballCounterDefault; // starting delay of new balls appearing - higher is slower
-    private int ballCounter; // current delay - value keeps decreasing
-    private double points; // player score
-    private double catHits; // hit points of player
-    private int scoreTextSize; // font size of score text
-    private int scoreX; // score text X coordinate
-    private int scoreY; // score text Y coordinate
-    private Paint scorePaint; // score text color
-    private Paint energyPaint; // energy text color
-    private Paint bgPaint; // background color
-    private int energyBarThickness; // hit points bar thickness
-    private boolean gameOver; // if tha game is over
-    private int energyGain; // How much bonus energy gained per caught flashy ball.
-
-    private final int MAX_BALL_VELOCITY = 15; // spawned ball max speed
-    private final int MAX_BALL_RADIUS = 65; // spawned ball max radius
-    private final double PRIZE_CHANCE = 0.005; // price ball chance as % per frame
-    private final int MINIMUM_BALL_COUNTER = 10; // minimum delay with new ball spawns
-    private final boolean BALLS_DEFAULT_EDIBLE = false; // whether normal balls are consumable
-    private final int POINT_MODIFIER = 1000; // higher value yields more points
+    private Viewport viewport; // world units to screen and frame pixels
+    private volatile int surfaceWidth, surfaceHeight; // frame buffer size reported by the surface
+    private volatile boolean surfaceResized; // the frame buffer changed since the last frame
+    private volatile boolean gameOver; // if tha game is over
+    private volatile boolean restartRequested; // new game asked for, started by the simulation thread
+    private boolean recording; // whether the recorder follows the current game
+    private volatile boolean dirtyRedraw; // repaint only changed areas instead of whole frames
+    private final Rect dirtyBounds = new Rect(); // area locked for a dirty frame, reused
+    private final int[] catPointers = new int[GameWorld.MAX_CATS]; // pointer steering each cat, -1 for none
+
+    private final String SESSION_FILE = "last_session.cbir"; // recording of the latest game
+    private final String SAVE_FILE = "save_state.cbss"; // game in progress when the surface went away
+    private final int INPUT_QUEUE_SIZE = 256; // touch samples buffered between two simulation steps
+    private final String DEFAULT_RULES = "rules/default.properties"; // rules profile of most devices
+    private final String LOW_END_RULES = "rules/low_end.properties"; // rules profile of low memory devices
+    private final String HIGH_END_RULES = "rules/high_end.properties"; // rules profile of large heap devices
+    private final int HIGH_END_MEMORY_CLASS = 256; // app heap limit in megabytes from which a device is high end
+    private String rulesAsset = DEFAULT_RULES; // rules profile of the device tier
+    private volatile GameRules nextRules; // rules swapped in by the next new game, if any
+    // The cat image is scaled as on a screen this dense, which is about as many pixels
+    // across as the world has units
+    private final int CAT_DENSITY = DisplayMetrics.DENSITY_XXHIGH;
+    // MotionEvent times are SystemClock.uptimeMillis, which runs on the same monotonic clock as System.nanoTime
+    private final long NANOS_PER_MILLI = 1000000L;
 
     public GameView(Context context) {
         super(context);
-        main = (MainActivity) context;
         getHolder().addCallback(this);
         setFocusable(true);
+        // Low-end devices are short of fill rate, so they only repaint what changes
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        dirtyRedraw = activityManager != null && activityManager.isLowRamDevice();
+        if (dirtyRedraw) {
+            rulesAsset = LOW_END_RULES;
+        } else if (activityManager != null
+                && activityManager.getMemoryClass() >= HIGH_END_MEMORY_CLASS) {
+            // Devices that give apps a large heap are the recent, fast ones
+            rulesAsset = HIGH_END_RULES;
+        }
         init();
     }
 
     public void init() {
-        thread = new MainThread(getHolder(), this);
+        metrics = new FrameMetrics(MainThread.FRAME_BUDGET_NANOS);
+        quality = new QualityScaler(MainThread.FRAME_BUDGET_NANOS);
+        host = new LoopHost();
         screenWidth = Resources.getSystem().getDisplayMetrics().widthPixels;
         screenHeight = Resources.getSystem().getDisplayMetrics().heightPixels;
-        balls = new ArrayList<>();
-        ballCounterDefault = 100; // higher is slower
-        ballCounter = ballCounterDefault; // value keeps decreasing
-        points = 0;
-        catHits = 1000; // higher is more enduring
-        energyBarThickness = 5;
+        viewport = new Viewport(screenWidth, screenHeight);
+        getHolder().setFixedSize(viewport.frameWidth(1), viewport.frameHeight(1));
+        Bitmap catImage = decodeCat();
+        world = new GameWorld(viewport.getWorldWidth(), viewport.getWorldHeight(),
+                catImage.getWidth(), catImage.getHeight(), System.nanoTime(), loadRules(rulesAsset));
+        world.setCatMask(catMask(catImage));
+        Arrays.fill(catPointers, -1);
+        renderer = new WorldRenderer(viewport.getWorldWidth(), viewport.getWorldHeight());
+        renderer.setFrameScale(Math.min(viewport.getFrameScaleX(), viewport.getFrameScaleY()));
+        renderer.setMetrics(metrics);
+        recorder = new InputRecorder();
+        world.setInputRecorder(recorder);
+        recording = true;
+        // Weaker devices get fewer balls rather than a stuttering game
+        world.setAdaptiveSpawns(true);
+        inputs = new InputQueue(INPUT_QUEUE_SIZE, MainThread.FRAME_BUDGET_NANOS);
+        snapshots = new SnapshotExchange();
+        renderTarget = new CanvasRenderTarget(catImage, decodeEndSplash());
         gameOver = false;
-        energyGain = 100; // higher gives more energy
+        host.add("simulation", new MainThread(this, host));
+        host.add("render", new RenderThread(getHolder(), this, host));
+        // The threads wait until the app is in the foreground with a surface
+        host.start();
+    }
+
+    /**
+     * Reads a rules profile from the app assets. A missing or broken profile is logged
+     * and the game goes on with the default rules.
+     */
+    public GameRules loadRules(String asset) {
+        try (InputStream in = getContext().getAssets().open(asset)) {
+            return GameRules.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            GameLog.w("Using default rules, " + asset + ": " + e.getMessage());
+            return new GameRules();
+        }
+    }
+
+    /**
+     * Plays the next new game with other rules, without restarting the activity.
+     * @param rules Rules to copy, with the cat count of the current game
+     * @throws IllegalArgumentException if the rules do not validate or change the cat count
+     */
+    public void setRules(GameRules rules) {
+        if (rules.validate().getCats() != world.getCatCount()) {
+            throw new IllegalArgumentException("Rules for " + rules.getCats()
+                    + " cats, the game has " + world.getCatCount());
+        }
+        nextRules = rules.copy();
+    }
+
+    /**
+     * Decodes the cat at the same size in world units on every screen. Its pixels are
+     * world units, so the drawn cat and its collision mask stay one and the same.
+     */
+    private Bitmap decodeCat() {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inTargetDensity = CAT_DENSITY;
+        Bitmap catImage = BitmapFactory.decodeResource(getResources(), R.drawable.catface_small,
+                options);
+        // Drawn one pixel per world unit, whatever the density of the canvas
+        catImage.setDensity(Bitmap.DENSITY_NONE);
+        return catImage;
+    }
+
+    /**
+     * Builds the collision mask of the cat from the alpha of its bitmap, once per world.
+     */
+    private static CollisionMask catMask(Bitmap catImage) {
+        int width = catImage.getWidth();
+        int height = catImage.getHeight();
+        int[] pixels = new int[width * height];
+        catImage.getPixels(pixels, 0, width, 0, 0, width, height);
+        return new CollisionMask(width, height, pixels, CollisionMask.DEFAULT_ALPHA_THRESHOLD);
+    }
 
-        scoreTextSize = 50; // pixels
-        scoreX = scoreTextSize / 2; // division in order to adjust location not outside screen
-        scoreY = scoreTextSize + scoreTextSize / 4; // division makes sure the text is within screen
-        scorePaint = new Paint();
-        energyPaint = new Paint();
-        bgPaint = new Paint();
-        scorePaint.setTextSize(scoreTextSize);
-        scorePaint.setColor(Color.RED);
-        energyPaint.setColor(Color.GREEN);
+    /**
+     * Decodes the game over picture once, downsampled close to the largest frame size.
+     * The drawable has no density folder, so it is decoded unscaled to keep it small.
+     */
+    private Bitmap decodeEndSplash() {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(getResources(), R.drawable.second_cat, options);
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= viewport.frameWidth(1)
+                && options.outHeight / (sampleSize * 2) >= viewport.frameHeight(1)) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeResource(getResources(), R.drawable.second_cat, options);
     }
 
-    // Not used in current version, but required due implementation
     @Override
     public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-
+        // Picked up by the render thread before its next frame
+        surfaceWidth = width;
+        surfaceHeight = height;
+        surfaceResized = true;
     }
 
     @Override
     public void surfaceCreated(SurfaceHolder holder) {
-        thread.setRunning(true);
-        try {
-            thread.start();
-        } catch (IllegalThreadStateException e) {
-            e.printStackTrace();
+        if (world.getTick() == 0) {
+            // A fresh view, after a restart of the app or a rotation, continues the saved game
+            restoreState();
         }
-        characterSprite = new CharacterSprite(BitmapFactory.decodeResource(getResources(),R.drawable.catface_small), this);
+        host.setSurface(true);
     }
 
     @Override
     public void surfaceDestroyed(SurfaceHolder holder) {
-        boolean retry = true;
-        while (retry) {
-            try {
-                thread.setRunning(false);
-                thread.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        // Returns once both loops wait, so the world can be read from here
+        host.setSurface(false);
+        saveState();
+    }
+
+    /**
+     * Saves the game in progress to the app files, or removes an earlier save once the
+     * game is over.
+     */
+    private void saveState() {
+        File file = new File(getContext().getFilesDir(), SAVE_FILE);
+        if (world.isGameOver()) {
+            file.delete();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            SaveState.save(world, file);
+            GameLog.d("State saved, micros: ", (System.nanoTime() - start) / 1000);
+        } catch (IOException e) {
+            GameLog.w("Saving state failed: " + e.getMessage());
+        }
+    }
+
+    // Continues a saved game, if there is one; a broken save just starts a new game
+    private void restoreState() {
+        File file = new File(getContext().getFilesDir(), SAVE_FILE);
+        try {
+            if (SaveState.load(file, world)) {
+                // The recording can not replay a game that was not played from the start
+                recording = false;
+                GameLog.d("State restored, balls: ", world.getBalls().size());
             }
-            retry = false;
+        } catch (IOException | IllegalArgumentException e) {
+            GameLog.w("Discarding save state: " + e.getMessage());
+            world.reset(System.nanoTime());
+            file.delete();
         }
     }
 
-    // Constant updates of the whole game system
-    public void update() {
-        if (catHits <= 0) {
+    // Constant updates of the whole game system, on the simulation thread. tickEnd is the
+    // System.nanoTime at which the step is due; input up to then steers it.
+    public void update(long tickEnd) {
+        if (restartRequested) {
+            restartRequested = false;
+            restart();
+        }
+        int level = quality.getLevel();
+        if (level != worldQuality) {
+            world.setBallCap(QualityScaler.getBallCap(level));
+            worldQuality = level;
+        }
+        inputs.drainTo(world, tickEnd);
+        world.step();
+        if (world.isGameOver() && !gameOver) {
             gameOver = true;
             endGame();
         }
+    }
 
-        // Checks if a touch is active - if is, movement action is carried on
-        if (localME != null) {
-            repeatMotion(localME);
-        }
-        characterSprite.update();
-        for (int i = balls.size() - 1; i > 0; i--) {
-            BallThing ball = balls.get(i);
-            if (ball != null) {
-                if (ball.isAlive()) {
-                    ball.update();
-
-                    if (characterSprite.ballTouching(ball.getX(), ball.getY(), ball.getRadius())) {
-                        if (ball.isCollectible()) {
-                            ball.setAlive(false);
-                            points += (POINT_MODIFIER / ball.getRadius()) * 2;
-                            gainEnergy();
-                            System.out.println("Eaten balls: " + points);
-                        } else {
-                            catHits--;
-                            //System.out.println("Cat gotten hit times: " + catHits);
-                        }
-                    }
-                } else {
-                    balls.remove(i);
-                }
-            }
+    /**
+     * Reports how long one simulation step took, for adaptive spawning. Simulation thread
+     * only.
+     */
+    public void reportStepTime(long stepNanos) {
+        latestStepNanos = stepNanos;
+        world.reportFrameTime(stepNanos, MainThread.FRAME_BUDGET_NANOS);
+    }
+
+    /**
+     * Reports how long drawing one frame took, for the quality scaler, and applies the
+     * drawing settings of a new quality level. Render thread only.
+     * @param drawNanos Time spent drawing, not counting waits for a buffer
+     */
+    public void reportDrawTime(long drawNanos) {
+        if (quality.report(latestStepNanos, drawNanos)) {
+            int level = quality.getLevel();
+            GameLog.d("Quality level: ", level);
+            renderer.setOverlayRefreshFrames(QualityScaler.getOverlayPeriod(level));
+            renderTarget.setBallFiltering(QualityScaler.isBallFiltering(level));
+            requestFrameSize(QualityScaler.getResolutionScale(level));
         }
-        ballCounter--;
-        if (ballCounter < 0) {
-            addBall(BALLS_DEFAULT_EDIBLE);
-            ballCounter = ballCounterDefault;
-            if (ballCounterDefault > MINIMUM_BALL_COUNTER) {
-                ballCounterDefault--;
+    }
+
+    /**
+     * Asks the surface for a frame buffer of the render scale times a resolution scale.
+     * The new buffer comes through surfaceChanged once the UI thread has laid it out.
+     */
+    private void requestFrameSize(float resolutionScale) {
+        final int width = viewport.frameWidth(resolutionScale);
+        final int height = viewport.frameHeight(resolutionScale);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                getHolder().setFixedSize(width, height);
             }
-            points += (POINT_MODIFIER / ballCounter) / 2;
+        });
+    }
+
+    /**
+     * Sets the frame pixels per screen pixel at full quality, 1 to draw every pixel of
+     * the screen. By default the frame has no more pixels across than the world has units.
+     */
+    public void setRenderScale(float renderScale) {
+        viewport.setRenderScale(renderScale);
+        requestFrameSize(QualityScaler.getResolutionScale(quality.getLevel()));
+    }
+
+    // Scales the world to a frame buffer size, returning true if the size is a new one
+    private boolean setFrameSize(int width, int height) {
+        if (!viewport.setFrameSize(width, height)) {
+            return false;
         }
-        if (PRIZE_CHANCE > Math.random()) {
-            addBall(true);
+        renderer.setFrameScale(Math.min(viewport.getFrameScaleX(), viewport.getFrameScaleY()));
+        return true;
+    }
+
+    // Takes up a new frame buffer size; whatever was on the old buffer is gone
+    private void applySurfaceSize() {
+        if (surfaceResized) {
+            surfaceResized = false;
+            setFrameSize(surfaceWidth, surfaceHeight);
+            renderer.invalidate();
         }
     }
 
-    // Drawing of the game view
-    @Override
-    public void draw(Canvas canvas) {
+    /**
+     * Publishes the current world state to the render thread. Called from the simulation
+     * thread after its steps.
+     * @param tickNanos System.nanoTime at which the latest step was due
+     */
+    public void publishSnapshot(long tickNanos) {
+        WorldSnapshot snapshot = snapshots.getWriteBuffer();
+        snapshot.capture(world, QualityScaler.getFlashPeriod(quality.getLevel()));
+        snapshot.publishNanos = tickNanos;
+        snapshots.publish();
+    }
+
+    /**
+     * Returns the newest published world state. Render thread only.
+     */
+    public WorldSnapshot latestSnapshot() {
+        return snapshots.latest();
+    }
+
+    /**
+     * Draws the game view with moving things placed between their last two simulated
+     * positions.
+     * @param canvas Canvas to draw on
+     * @param snapshot World state to draw
+     * @param alpha How far the simulation has progressed towards the next tick, 0..1
+     */
+    public void draw(Canvas canvas, WorldSnapshot snapshot, float alpha) {
         super.draw(canvas);
-        if (canvas != null) {
-            canvas.drawColor(bgPaint.getColor());
-            for (int i = 0; i < balls.size(); i++) {
-                BallThing ball = balls.get(i);
-                if (ball != null) {
-                    ball.draw(canvas);
-                }
-            }
-            characterSprite.draw(canvas);
-            drawEnergy(canvas);
-            if (gameOver) {
-                Bitmap endSplash = BitmapFactory.decodeResource(getResources(),R.drawable.second_cat);
-                RectF dst = new RectF(0, 0, screenWidth, screenHeight);
-                canvas.drawBitmap(endSplash, null, dst, null);
-                Paint endText = new Paint();
-                endText.setTextSize(100);
-                endText.setColor(Color.MAGENTA);
-                canvas.drawText("RIP, meow", screenWidth / 4, screenHeight / 2, endText);
-                System.out.println("Still here");
-            }
-            canvas.drawText("Score: " + (int) points, scoreX, scoreY, scorePaint);
+        applySurfaceSize();
+        setFrameSize(canvas.getWidth(), canvas.getHeight());
+        canvas.save();
+        canvas.scale(viewport.getFrameScaleX(), viewport.getFrameScaleY());
+        renderTarget.setCanvas(canvas);
+        renderer.render(snapshot, renderTarget, alpha);
+        canvas.restore();
+    }
+
+    /**
+     * Works out the area a dirty frame has to repaint. Render thread only.
+     * @return the area to lock, or null if the frame would not change anything
+     */
+    public Rect collectDirty(WorldSnapshot snapshot, float alpha) {
+        applySurfaceSize();
+        DirtyRegion region = renderer.collectDirty(snapshot, alpha);
+        if (region.isEmpty()) {
+            return null;
         }
+        // The region is in world units, the lock in pixels of the frame buffer
+        dirtyBounds.set(viewport.toFrameLeft(region.getBoundsLeft()),
+                viewport.toFrameTop(region.getBoundsTop()),
+                viewport.toFrameRight(region.getBoundsRight()),
+                viewport.toFrameBottom(region.getBoundsBottom()));
+        return dirtyBounds;
     }
 
-    public void pause() {
-        try {
-            thread.setRunning(false);
-            System.out.println("paused");
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Repaints the changed areas of a frame on a canvas locked with lockCanvas(dirty).
+     * @param dirty The area the surface asks to have repainted
+     */
+    public void drawDirty(Canvas canvas, WorldSnapshot snapshot, float alpha, Rect dirty) {
+        if (setFrameSize(canvas.getWidth(), canvas.getHeight())) {
+            // The buffer changed size after the area was worked out, so paint it all
+            draw(canvas, snapshot, alpha);
+            return;
         }
+        canvas.save();
+        canvas.scale(viewport.getFrameScaleX(), viewport.getFrameScaleY());
+        renderTarget.setCanvas(canvas);
+        renderer.renderDirty(snapshot, renderTarget, alpha,
+                viewport.toWorldLeft(dirty.left), viewport.toWorldTop(dirty.top),
+                viewport.toWorldRight(dirty.right), viewport.toWorldBottom(dirty.bottom));
+        canvas.restore();
+    }
+
+    /**
+     * Makes the next dirty frame repaint everything, for when a frame could not be drawn.
+     */
+    public void invalidateDirty() {
+        renderer.invalidate();
+    }
+
+    public boolean isDirtyRedraw() {
+        return dirtyRedraw;
+    }
+
+    /**
+     * Switches between repainting whole frames and only the areas that change.
+     */
+    public void setDirtyRedraw(boolean dirty) {
+        dirtyRedraw = dirty;
+    }
+
+    /**
+     * Holds the game where it is while the app is in the background. Returns once both
+     * loops wait.
+     */
+    public void pause() {
+        host.setForeground(false);
+        GameLog.d("paused");
     }
 
+    /**
+     * Goes on with the game where it was held, as soon as there is a surface too.
+     */
     public void resume() {
-        try {
-            thread = new MainThread(getHolder(), this);
-            System.out.println("continue");
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        host.setForeground(true);
+        GameLog.d("continue");
+    }
+
+    /**
+     * Ends the loop threads for good, when the activity is destroyed.
+     */
+    public void stop() {
+        host.stop();
     }
 
     // The SurfaceView class implements onTouchListener
     // So we can override this method and detect screen touches.
     @Override
     public boolean onTouchEvent(MotionEvent motionEvent) {
+        long time = motionEvent.getEventTime() * NANOS_PER_MILLI;
+        int cat;
 
-        switch (motionEvent.getAction() & MotionEvent.ACTION_MASK) {
+        switch (motionEvent.getActionMasked()) {
 
             // Player has touched the screen
             case MotionEvent.ACTION_DOWN:
                 if (gameOver) {
+                    Arrays.fill(catPointers, -1);
                     newGame();
+                    return true;
+                } else if (renderer.isOnScore(viewport.toWorldX(motionEvent.getX()),
+                        viewport.toWorldY(motionEvent.getY()))) {
+                    // Tapping the score toggles the frame metrics overlay
+                    renderer.setMetricsOverlay(!renderer.isMetricsOverlay());
+                    return true;
                 }
                 /*
                 firstTouchX = motionEvent.getX();
                 firstTouchY = motionEvent.getY();
                 */
-                localME = motionEvent;
-                System.out.println("Click X: " + motionEvent.getX() + " Y: " + motionEvent.getY());
+                // Fall through - the first finger is handled like any other
+
+            // Another finger joins, and takes the first cat nobody steers yet
+            case MotionEvent.ACTION_POINTER_DOWN:
+                int index = motionEvent.getActionIndex();
+                cat = claimCat(motionEvent.getPointerId(index));
+                if (cat >= 0) {
+                    inputs.offer(InputQueue.TOUCH, cat, viewport.toWorldX(motionEvent.getX(index)),
+                            viewport.toWorldY(motionEvent.getY(index)), time);
+                }
                 break;
 
-            // Player is dragging finger
+            // Player is dragging fingers
             case MotionEvent.ACTION_MOVE:
-                localME = motionEvent;
-                //System.out.println(motionEvent.getX() + " " + motionEvent.getY());
+                for (int p = 0, pointers = motionEvent.getPointerCount(); p < pointers; p++) {
+                    cat = catOf(motionEvent.getPointerId(p));
+                    if (cat < 0) {
+                        continue;
+                    }
+                    // Samples batched since the previous event come first, oldest to newest
+                    for (int h = 0, history = motionEvent.getHistorySize(); h < history; h++) {
+                        inputs.offer(InputQueue.TOUCH, cat,
+                                viewport.toWorldX(motionEvent.getHistoricalX(p, h)),
+                                viewport.toWorldY(motionEvent.getHistoricalY(p, h)),
+                                motionEvent.getHistoricalEventTime(h) * NANOS_PER_MILLI);
+                    }
+                    inputs.offer(InputQueue.TOUCH, cat, viewport.toWorldX(motionEvent.getX(p)),
+                            viewport.toWorldY(motionEvent.getY(p)), time);
+                }
                 break;
 
             // Player has removed finger from screen
@@ -236,16 +513,49 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
                     moveCharacterTowards(firstTouchX, firstTouchY, motionEvent.getX(), motionEvent.getX());
                 }
                 */
-                localME = null;
+                // Fall through - the last finger is handled like any other
+
+            // One of several fingers is lifted, and its cat is let go
+            case MotionEvent.ACTION_POINTER_UP:
+                cat = catOf(motionEvent.getPointerId(motionEvent.getActionIndex()));
+                if (cat >= 0) {
+                    catPointers[cat] = -1;
+                    inputs.offer(InputQueue.RELEASE, cat, 0, 0, time);
+                }
+                break;
+
+            // The gesture was taken away, for example by the system
+            case MotionEvent.ACTION_CANCEL:
+                for (cat = 0; cat < GameWorld.MAX_CATS; cat++) {
+                    if (catPointers[cat] >= 0) {
+                        catPointers[cat] = -1;
+                        inputs.offer(InputQueue.RELEASE, cat, 0, 0, time);
+                    }
+                }
                 break;
         }
         return true;
     }
 
-    public void repeatMotion(MotionEvent me) {
-        if (me != null) {
-            characterSprite.relateVelocity(me.getX(), me.getY());
+    // Gives a new pointer the first free cat, or -1 if every cat is already steered
+    private int claimCat(int pointerId) {
+        for (int cat = 0; cat < world.getCatCount(); cat++) {
+            if (catPointers[cat] < 0) {
+                catPointers[cat] = pointerId;
+                return cat;
+            }
+        }
+        return -1;
+    }
+
+    // Finds the cat a pointer steers, -1 for a pointer without a cat
+    private int catOf(int pointerId) {
+        for (int cat = 0; cat < GameWorld.MAX_CATS; cat++) {
+            if (catPointers[cat] == pointerId) {
+                return cat;
+            }
         }
+        return -1;
     }
 
     /**
@@ -256,7 +566,15 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
      * @param y2
      */
     public void moveCharacterTowards(float x1, float y1, float x2, float y2) {
-        characterSprite.addVelocity(x1+x2, y1+y2);
+        world.getCharacterSprite().addVelocity(x1+x2, y1+y2);
+    }
+
+    public FrameMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getBallCount() {
+        return world.getBalls().size();
     }
 
     public int getScreenHeight() {
@@ -267,54 +585,56 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
         return screenWidth;
     }
 
-    public void addBall(boolean collectible) {
-        if (!collectible) {
-            System.out.println("Adding a ball");
-            BallThing ball = new BallThing(this, MAX_BALL_RADIUS, MAX_BALL_VELOCITY,
-                    false);
-            balls.add(ball);
-            System.out.println(balls.size() + " balls in the game now.");
-        } else {
-            BallThing ball = new BallThing(this, MAX_BALL_RADIUS * 2, MAX_BALL_VELOCITY / 2,
-                    true);
-            balls.add(ball);
-        }
+    public void endGame() {
+        GameLog.i("Game over");
+        // Both threads keep running, idle, so that a new game can start without new ones
+        saveRecording();
     }
 
-    public void drawEnergy(Canvas canvas) {
-        int eX, eY;
-        if (screenWidth > screenHeight) {
-            eX = energyBarThickness;
-            eY = screenHeight - energyBarThickness;
-            canvas.drawRect(eX, eY, (float) (eX + catHits), eY+energyBarThickness, energyPaint);
-        } else {
-            eX = screenWidth - energyBarThickness;
-            eY = energyBarThickness;
-            canvas.drawRect(eX, eY, eX+energyBarThickness, (float) (eY + catHits), energyPaint);
+    /**
+     * Writes the input recording of the finished game to the app files, from where it can
+     * be pulled and replayed headless with InputReplay.
+     */
+    private void saveRecording() {
+        if (!recording) {
+            return;
+        }
+        recorder.finish(world.getTick());
+        File file = new File(getContext().getFilesDir(), SESSION_FILE);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            recorder.writeTo(out);
+            GameLog.d("Session recorded, bytes: ", recorder.size());
+        } catch (IOException e) {
+            GameLog.w("Saving recording failed: " + e.getMessage());
         }
     }
 
-    public int randomValue(int maxValue) {
-        int value = (int) (Math.random() * maxValue);
-        return value;
-    }
-
-    public void endGame() {
-        System.out.println("Game over");
-        //pause();
-        thread.setRunning(false);
-    }
-
+    /**
+     * Asks for a new game. The simulation thread starts it before its next step, so the
+     * world is never touched from the UI thread.
+     */
     public void newGame() {
-        System.out.println("Starting a new game");
-        main.newGame();
+        restartRequested = true;
     }
 
-    public void gainEnergy() {
-        if (catHits + energyGain >= 2000) {
-            catHits = 2000;
+    // Resets the world for a new game on the simulation thread, reusing everything
+    private void restart() {
+        if (!world.isGameOver()) {
+            return; // a second tap on the game over screen
+        }
+        GameLog.i("Starting a new game");
+        inputs.clear();
+        GameRules rules = nextRules;
+        if (rules != null) {
+            nextRules = null;
+            world.reset(System.nanoTime(), rules);
         } else {
-            catHits += energyGain;
+            world.reset(System.nanoTime());
         }
+        if (!recording) {
+            world.setInputRecorder(recorder);
+            recording = true;
+        }
+        gameOver = false;
     }
 }
@@ -1,4 +1,844 @@
 package com.sakari.firstgame;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The whole game simulation without any Android dependencies. Owns the balls, the cats,
+ * score, energy and spawn state, and advances them one tick at a time with step().
+ * GameView only hands touch input in and renders the state out, so the same world can
+ * be run headless on a plain JVM for load testing and profiling.
+ *
+ * A world has one to MAX_CATS cats, each steered by its own touch. They share the score
+ * and the energy, and all of them check their contacts through the same spatial grid,
+ * so each cat only costs as much as the balls near it.
+ *
+ * Contacts are found with the swept tests of NarrowPhase over the movement of the whole
+ * tick, against the cat's hit box or, once setCatMask() is called, the solid pixels of its
+ * image, so small fast balls cannot slip through a cat or each other between ticks.
+ *
+ * reset() starts a new game in the same world object, reusing the ball pool, the grid
+ * and all other buffers, so a restart allocates nothing. reset() with new GameRules swaps
+ * the rules between games, copying them into the same plain fields the constructor does.
+ */
 public class GameWorld {
+    public static final int MAX_CATS = 8; // most cats a world can have
+    private static final int INITIAL_BALLS = 64; // pool slots before the first growth
+    private int width; // world width
+    private int height; // world height
+    private final CharacterSprite[] cats; // player characters
+    private BallPool balls; // balls in the game
+    private SpatialGrid grid; // collision broadphase over the balls
+    private boolean gridStale = true; // balls were added or removed after the grid was built
+    private boolean ballCollisions; // whether balls bounce off each other
+    private CollisionMask catMask; // solid pixels of the cat image, null to use the hit box
+    private byte[] contactsSeen = new byte[0]; // bit per cat touching each ball this tick
+    private int[] touchedBalls = new int[0]; // balls with contactsSeen bits this tick
+    private int contactPairs; // cat and ball pairs in contact after the latest tick
+    private SpawnScheduler spawner; // when new balls appear
+    private boolean adaptiveSpawns; // whether frame times steer the spawn pressure
+    private int ballCap = QualityScaler.NO_CAP; // live balls at most on this device, below the rules
+    private final GameEvents events; // hits, prizes, spawns and deaths of the game
+    private final ScoreKeeper score; // score and energy, added up from the events
+    private boolean gameOver; // if tha game is over
+    private static final int EVENT_CAPACITY = 4096; // events kept for readers
+    private long tick; // simulated ticks since start
+    private final boolean[] touching; // for continuous control when touchpad is pressed, per cat
+    private final float[] touchX, touchY; // latest touch location of each cat
+    private final float[] touchWeight; // share of the tick each touch lasted
+    private long seed; // seed of the random generator, identifies the session
+    private final GameRandom random; // all randomness of the world comes from here
+    private InputRecorder recorder; // records the input seen by each tick, if set
+    private final boolean[] recordedTouching; // touch states last written to the recorder
+    private int recordedPressure; // spawn pressure last written to the recorder
+    private int recordedBallCap; // ball cap last written to the recorder
+    private final float[] recordedX, recordedY; // touch locations last written to the recorder
+    private final float[] recordedWeight; // touch weights last written to the recorder
+
+    // Tuning values copied from GameRules, so the tick never looks them up
+    private GameRules rules; // copy of the rules of the current game
+    private byte[] rulesProfile; // the rules as profile text, for recordings and saves
+    private int maxBallVelocity; // spawned ball max speed
+    private float sweepMargin; // how far a ball can move in a tick, for swept queries
+    private int maxBallRadius; // spawned ball max radius
+    private boolean ballsDefaultEdible; // whether normal balls are consumable
+    private int pointModifier; // higher value yields more points
+    private int maxEnergy; // energy cap
+    private int energyGain; // How much bonus energy gained per caught flashy ball.
+    private double startEnergy; // energy at the start of a game - higher is more enduring
+
+    /**
+     * Creates a world with a seed that differs from run to run.
+     */
+    public GameWorld(int width, int height, float catWidth, float catHeight) {
+        this(width, height, catWidth, catHeight, System.nanoTime());
+    }
+
+    /**
+     * @param width World width, in pixels
+     * @param height World height, in pixels
+     * @param catWidth Width of the player character
+     * @param catHeight Height of the player character
+     * @param seed Random seed - the same seed and input always play out the same game
+     */
+    public GameWorld(int width, int height, float catWidth, float catHeight, long seed) {
+        this(width, height, catWidth, catHeight, seed, new GameRules());
+    }
+
+    /**
+     * @param width World width, in pixels
+     * @param height World height, in pixels
+     * @param catWidth Width of the player character
+     * @param catHeight Height of the player character
+     * @param seed Random seed - the same seed and input always play out the same game
+     * @param rules Tuning values, copied at construction; the cat count stays for the life
+     *              of the world
+     */
+    public GameWorld(int width, int height, float catWidth, float catHeight, long seed,
+                     GameRules rules) {
+        copyRules(rules);
+        this.seed = seed;
+        random = new GameRandom(seed);
+        this.width = width;
+        this.height = height;
+        int catCount = Math.max(1, Math.min(MAX_CATS, rules.getCats()));
+        cats = new CharacterSprite[catCount];
+        for (int c = 0; c < catCount; c++) {
+            cats[c] = new CharacterSprite(catWidth, catHeight, this, rules);
+        }
+        placeCats();
+        touching = new boolean[catCount];
+        touchX = new float[catCount];
+        touchY = new float[catCount];
+        touchWeight = new float[catCount];
+        recordedTouching = new boolean[catCount];
+        recordedX = new float[catCount];
+        recordedY = new float[catCount];
+        recordedWeight = new float[catCount];
+        balls = new BallPool(INITIAL_BALLS, rules.getMaxBalls());
+        grid = new SpatialGrid(width, height, maxBallRadius * 2);
+        spawner = new SpawnScheduler(rules.getDifficultyCurve(), rules.getPrizeChance());
+        spawner.reset(random);
+        events = new GameEvents(EVENT_CAPACITY);
+        score = new ScoreKeeper(maxEnergy);
+        score.reset(startEnergy);
+        gameOver = false;
+    }
+
+    // Takes the tuning values of the rules into the fields the tick reads
+    private void copyRules(GameRules rules) {
+        this.rules = rules.copy();
+        rulesProfile = rules.toProfile().getBytes(StandardCharsets.UTF_8);
+        maxBallVelocity = rules.getMaxBallVelocity();
+        sweepMargin = maxBallVelocity * 2;
+        maxBallRadius = rules.getMaxBallRadius();
+        ballsDefaultEdible = rules.isBallsDefaultEdible();
+        pointModifier = rules.getPointModifier();
+        maxEnergy = rules.getMaxEnergy();
+        energyGain = rules.getEnergyGain();
+        startEnergy = rules.getStartEnergy();
+    }
+
+    // Puts the cats in their start places, spread along the top edge from the left corner
+    private void placeCats() {
+        float spacing = cats.length > 1 ? (width - cats[0].getWidth()) / (cats.length - 1) : 0;
+        for (int c = 0; c < cats.length; c++) {
+            cats[c].reset((int) (c * spacing), 0);
+        }
+    }
+
+    /**
+     * Starts a new game in this world: no balls, the cats back in their places, and score,
+     * energy, spawn delay and tick back at their start values. The pool, grid and other
+     * buffers are kept, so restarting allocates nothing. An input recorder stays attached
+     * and begins a new recording.
+     * @param seed Random seed of the new game
+     */
+    public void reset(long seed) {
+        this.seed = seed;
+        random.setState(seed);
+        balls.clear();
+        placeCats();
+        spawner.reset(random);
+        score.reset(startEnergy);
+        gameOver = false;
+        tick = 0;
+        Arrays.fill(touching, false);
+        contactPairs = 0;
+        gridStale = true;
+        if (recorder != null) {
+            setInputRecorder(recorder);
+        }
+    }
+
+    /**
+     * Starts a new game in this world with other rules, for example another profile
+     * picked between games. The pool keeps its arrays and the grid is only built anew
+     * when the largest ball size changes. Spawn pressure is kept, since it follows the
+     * device.
+     * @param rules Tuning values, copied; must have the cat count of this world
+     * @throws IllegalArgumentException if the rules do not validate or change the cat count
+     */
+    public void reset(long seed, GameRules rules) {
+        rules.validate();
+        if (rules.getCats() != cats.length) {
+            throw new IllegalArgumentException("A world keeps its " + cats.length
+                    + " cats, the rules have " + rules.getCats());
+        }
+        int oldRadius = maxBallRadius;
+        copyRules(rules);
+        for (CharacterSprite cat : cats) {
+            cat.applyRules(rules);
+        }
+        balls.setMaxCapacity(Math.min(ballCap, rules.getMaxBalls()));
+        if (maxBallRadius != oldRadius) {
+            grid = new SpatialGrid(width, height, maxBallRadius * 2);
+        }
+        spawner.setCurve(rules.getDifficultyCurve(), rules.getPrizeChance());
+        score.setMaxEnergy(maxEnergy);
+        reset(seed);
+    }
+
+    /**
+     * Puts the world back into a saved state. Used by SaveState together with restoring
+     * the balls, the cats and the spawn queue. An attached input recorder is detached,
+     * since its recording could not replay a game that did not start from the seed.
+     */
+    void restore(long seed, long randomState, long tick, double points, double catHits,
+                 boolean gameOver, boolean ballCollisions) {
+        this.seed = seed;
+        random.setState(randomState);
+        this.tick = tick;
+        score.restore(points, catHits);
+        this.gameOver = gameOver;
+        this.ballCollisions = ballCollisions;
+        Arrays.fill(touching, false);
+        // Contacts of cats this world does not have are dropped
+        int catBits = (1 << cats.length) - 1;
+        contactPairs = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            balls.contacts[i] &= catBits;
+            contactPairs += Integer.bitCount(balls.contacts[i] & 0xff);
+        }
+        gridStale = true;
+        recorder = null;
+    }
+
+    /**
+     * Advances the simulation by one tick. Does nothing once the game is over.
+     */
+    public void step() {
+        if (gameOver) {
+            return;
+        }
+        tick++;
+        if (score.getEnergy() <= 0) {
+            gameOver = true;
+            emit(GameEvents.DEATH, -1, 0, 0, 0);
+        }
+
+        if (recorder != null) {
+            recordInput();
+        }
+
+        // Checks if a touch is active - if is, movement action is carried on
+        for (int c = 0; c < cats.length; c++) {
+            if (touching[c]) {
+                cats[c].relateVelocity(touchX[c], touchY[c], touchWeight[c]);
+            }
+            cats[c].update();
+        }
+        balls.savePositions();
+        BallIntegrator.integrate(balls, width, height);
+        for (int i = 0; i < balls.size(); i++) {
+            if (balls.isCollectible(i)) {
+                balls.color[i] = BallPalette.flash(tick, i);
+            }
+        }
+
+        grid.rebuild(balls);
+        gridStale = false;
+        if (ballCollisions) {
+            collideBalls();
+        }
+        checkCatContacts();
+
+        if (balls.releaseDead() > 0) {
+            gridStale = true;
+        }
+        int kind;
+        while ((kind = spawner.poll(tick, random)) >= 0) {
+            if (kind == SpawnScheduler.BALL) {
+                addBall(ballsDefaultEdible);
+                // Surviving a faster spawn rate is worth more; a restored interval may be 0
+                int interval = Math.max(1, spawner.getInterval());
+                emit(GameEvents.SPAWN, -1, kind, (pointModifier / interval) / 2, 0);
+            } else {
+                addBall(true);
+                emit(GameEvents.SPAWN, -1, kind, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Checks the balls near each cat for contact during the tick, in cat order, so a prize
+     * two cats reach in the same tick goes to the first. Contacts with dull balls are
+     * followed from tick to tick, and their start and end emitted as events. Eaten balls
+     * are only marked dead here, so that grid indices stay valid until the removal pass.
+     */
+    private void checkCatContacts() {
+        if (contactsSeen.length < balls.capacity()) {
+            contactsSeen = new byte[balls.capacity()];
+            touchedBalls = new int[balls.capacity()];
+        }
+        int touched = 0; // balls in touchedBalls
+        int continuing = 0; // contacts that were there the tick before too
+        for (int c = 0; c < cats.length; c++) {
+            CharacterSprite cat = cats[c];
+            int x = cat.getX();
+            int y = cat.getY();
+            int moveX = x - cat.getPrevX();
+            int moveY = y - cat.getPrevY();
+            // Everywhere the cat was during the tick, widened by how far a ball gets in one
+            int found = grid.query(Math.min(x, x - moveX) - sweepMargin,
+                    Math.min(y, y - moveY) - sweepMargin,
+                    Math.max(x, x - moveX) + cat.getWidth() + sweepMargin,
+                    Math.max(y, y - moveY) + cat.getHeight() + sweepMargin);
+            int[] candidates = grid.getResults();
+            for (int k = 0; k < found; k++) {
+                int i = candidates[k];
+                if (!balls.isAlive(i) || !touches(cat, i, moveX, moveY)) {
+                    continue;
+                }
+                int radius = (int) balls.radius[i];
+                if (balls.isCollectible(i)) {
+                    balls.flags[i] &= ~BallPool.FLAG_ALIVE;
+                    // Fresh prize balls can be under a pixel in size
+                    int points = (pointModifier / Math.max(1, radius)) * 2;
+                    emit(GameEvents.COLLECT, c, radius, points, energyGain);
+                    continue;
+                }
+                int bit = 1 << c;
+                if (contactsSeen[i] == 0) {
+                    touchedBalls[touched++] = i;
+                }
+                contactsSeen[i] |= bit;
+                if ((balls.contacts[i] & bit) != 0) {
+                    continuing++;
+                } else {
+                    emit(GameEvents.CONTACT_BEGIN, c, radius, 0, 0);
+                }
+                emit(GameEvents.HIT, c, radius, 0, -1);
+            }
+        }
+
+        // Ended contacts are only looked for when fewer went on than there were
+        if (continuing < contactPairs) {
+            endContacts();
+        }
+        contactPairs = 0;
+        for (int k = 0; k < touched; k++) {
+            int i = touchedBalls[k];
+            balls.contacts[i] = contactsSeen[i];
+            contactPairs += Integer.bitCount(contactsSeen[i] & 0xff);
+            contactsSeen[i] = 0;
+        }
+    }
+
+    // Emits the end of every contact of the previous tick that did not go on in this one
+    private void endContacts() {
+        for (int i = 0; i < balls.size(); i++) {
+            int ended = balls.contacts[i] & ~contactsSeen[i] & 0xff;
+            if (ended == 0) {
+                continue;
+            }
+            for (int c = 0; c < cats.length; c++) {
+                if ((ended & 1 << c) != 0) {
+                    emit(GameEvents.CONTACT_END, c, (int) balls.radius[i], 0, 0);
+                }
+            }
+            balls.contacts[i] &= contactsSeen[i];
+        }
+    }
+
+    /**
+     * Checks if a ball touched the cat at any moment of the tick, by sweeping the ball
+     * along its movement relative to the cat against the cat where it is now.
+     */
+    private boolean touches(CharacterSprite cat, int i, int moveX, int moveY) {
+        float x0 = balls.prevX[i] + moveX;
+        float y0 = balls.prevY[i] + moveY;
+        float dx = balls.x[i] - x0;
+        float dy = balls.y[i] - y0;
+        float r = balls.radius[i];
+        if (catMask != null) {
+            return catMask.sweepCircle(x0 - cat.getX(), y0 - cat.getY(), dx, dy, r) >= 0;
+        }
+        float left = cat.getX();
+        float top = cat.getY();
+        return NarrowPhase.sweepCircleBox(x0, y0, dx, dy, r, left, top,
+                left + cat.getWidth() * CharacterSprite.HITBOX_SCALE,
+                top + cat.getHeight() * CharacterSprite.HITBOX_SCALE) >= 0;
+    }
+
+    /**
+     * Bounces touching balls off each other as an elastic collision, mass following the
+     * ball area. Balls that are apart at the end of the tick but passed through each other
+     * during it are swept back to where they touched, bounced there and moved on for the
+     * rest of the tick, no further than the walls. Their coordinates in the grid move with
+     * them, while their cells stay those of the swept box, so the grid stays valid for the
+     * later pairs and the cat check. The grid holds the swept box of each ball, so a pair
+     * that crossed is found even when it ends up in different cells. A pair sharing
+     * several cells is handled only in the cell holding the top left corner of the overlap
+     * of their swept boxes, which both of them are registered in.
+     */
+    private void collideBalls() {
+        float[] vx = balls.vx;
+        float[] vy = balls.vy;
+        int[] items = grid.getCellItems();
+        float[] x = grid.getItemX();
+        float[] y = grid.getItemY();
+        float[] radius = grid.getItemRadius();
+        float[] boxLeft = grid.getBoxLeft();
+        float[] boxTop = grid.getBoxTop();
+        float[] boxRight = grid.getBoxRight();
+        float[] boxBottom = grid.getBoxBottom();
+        for (int cell = 0, cells = grid.getCellCount(); cell < cells; cell++) {
+            int end = grid.cellEnd(cell);
+            for (int a = grid.cellStart(cell); a < end; a++) {
+                float xa = x[a];
+                float ya = y[a];
+                float ra = radius[a];
+                int i = items[a];
+                for (int b = a + 1; b < end; b++) {
+                    int j = items[b];
+                    // Balls whose swept boxes do not overlap never came near each other
+                    float overlapX = Math.max(boxLeft[i], boxLeft[j]);
+                    float overlapY = Math.max(boxTop[i], boxTop[j]);
+                    if (overlapX > Math.min(boxRight[i], boxRight[j])
+                            || overlapY > Math.min(boxBottom[i], boxBottom[j])
+                            || grid.cellAt(overlapX, overlapY) != cell) {
+                        continue;
+                    }
+                    float dx = x[b] - xa;
+                    float dy = y[b] - ya;
+                    float reach = ra + radius[b];
+                    float distSq = dx * dx + dy * dy;
+                    float t = 1; // share of the tick after which they touched
+                    if (distSq < reach * reach) {
+                        if (distSq == 0) {
+                            continue;
+                        }
+                    } else {
+                        // Apart now, but small fast balls may have crossed each other
+                        float startX = balls.prevX[j] - balls.prevX[i];
+                        float startY = balls.prevY[j] - balls.prevY[i];
+                        t = NarrowPhase.sweepCircleCircle(startX, startY, dx - startX, dy - startY,
+                                reach);
+                        if (t <= 0) {
+                            continue; // missed, or touched already when the tick began
+                        }
+                        dx = startX + (dx - startX) * t;
+                        dy = startY + (dy - startY) * t;
+                        distSq = reach * reach;
+                    }
+                    float approach = (vx[j] - vx[i]) * dx + (vy[j] - vy[i]) * dy;
+                    if (approach >= 0) {
+                        continue; // already separating
+                    }
+                    float massA = ra * ra;
+                    float massB = radius[b] * radius[b];
+                    // approach / distSq folds in both normal divisions by the distance
+                    float impulse = 2 * approach / (distSq * (massA + massB));
+                    vx[i] += impulse * massB * dx;
+                    vy[i] += impulse * massB * dy;
+                    vx[j] -= impulse * massA * dx;
+                    vy[j] -= impulse * massA * dy;
+                    if (t < 1) {
+                        rewind(i, t);
+                        rewind(j, t);
+                        xa = x[a];
+                        ya = y[a];
+                    }
+                }
+            }
+        }
+    }
+
+    // Moves a ball to where it was at time t of the tick, then on with its new velocity,
+    // keeping it inside the walls; every grid copy of the ball moves with it
+    private void rewind(int i, float t) {
+        float rest = 1 - t;
+        float r = balls.radius[i];
+        float nx = balls.prevX[i] + (balls.x[i] - balls.prevX[i]) * t + balls.vx[i] * rest;
+        float ny = balls.prevY[i] + (balls.y[i] - balls.prevY[i]) * t + balls.vy[i] * rest;
+        nx = nx < r ? r : nx;
+        ny = ny < r ? r : ny;
+        balls.x[i] = nx > width - r ? width - r : nx;
+        balls.y[i] = ny > height - r ? height - r : ny;
+        grid.moveItem(i, balls.x[i], balls.y[i]);
+    }
+
+    // Writes the touch state this tick acts on, if it differs from the previous tick
+    private void recordInput() {
+        for (int c = 0; c < cats.length; c++) {
+            if (touching[c]) {
+                if (!recordedTouching[c]) {
+                    recorder.record(tick, InputRecorder.DOWN, c, touchX[c], touchY[c],
+                            touchWeight[c]);
+                } else if (touchX[c] != recordedX[c] || touchY[c] != recordedY[c]
+                        || touchWeight[c] != recordedWeight[c]) {
+                    recorder.record(tick, InputRecorder.MOVE, c, touchX[c], touchY[c],
+                            touchWeight[c]);
+                }
+                recordedX[c] = touchX[c];
+                recordedY[c] = touchY[c];
+                recordedWeight[c] = touchWeight[c];
+            } else if (recordedTouching[c]) {
+                recorder.record(tick, InputRecorder.UP, c, 0, 0, 0);
+            }
+            recordedTouching[c] = touching[c];
+        }
+        int pressure = spawner.getPressure();
+        if (pressure != recordedPressure) {
+            recorder.record(tick, InputRecorder.PRESSURE, 0, pressure, 0, 0);
+            recordedPressure = pressure;
+        }
+        if (ballCap != recordedBallCap) {
+            recorder.record(tick, InputRecorder.BALL_CAP, 0, ballCap, 0, 0);
+            recordedBallCap = ballCap;
+        }
+    }
+
+    /**
+     * Starts recording the input of every tick, or stops it with null. The recording
+     * contains everything InputReplay needs to play the session again, so it has to start
+     * before the first step.
+     */
+    public void setInputRecorder(InputRecorder recorder) {
+        if (recorder != null && tick != 0) {
+            throw new IllegalStateException("Recording must start before the first step");
+        }
+        this.recorder = recorder;
+        if (recorder != null) {
+            recorder.begin(seed, width, height, cats[0].getWidth(), cats[0].getHeight(),
+                    rulesProfile, catMask);
+            Arrays.fill(recordedTouching, false);
+            recordedPressure = SpawnScheduler.FULL_PRESSURE;
+            recordedBallCap = QualityScaler.NO_CAP;
+        }
+    }
+
+    /**
+     * Turns adaptive spawning on or off. When on, reportFrameTime() lowers the spawn
+     * pressure while frames run over budget. Off by default, so headless runs do not
+     * depend on the machine they run on.
+     */
+    public void setAdaptiveSpawns(boolean adaptive) {
+        adaptiveSpawns = adaptive;
+    }
+
+    public boolean isAdaptiveSpawns() {
+        return adaptiveSpawns;
+    }
+
+    /**
+     * Reports how long the latest frame took, for adaptive spawning. Call from the
+     * simulation thread between steps.
+     */
+    public void reportFrameTime(long frameNanos, long budgetNanos) {
+        if (adaptiveSpawns && spawner.adapt(frameNanos, budgetNanos)) {
+            GameLog.d("Spawn pressure: ", spawner.getPressure());
+        }
+    }
+
+    /**
+     * Caps the live balls below the cap of the rules, for devices that can not draw
+     * more, or lifts the cap with QualityScaler.NO_CAP. Balls over a lowered cap stay in
+     * play; no new ones spawn while the count is at or over it. The cap is
+     * an input like spawn pressure: it is kept over new games and recorded for replays.
+     */
+    public void setBallCap(int cap) {
+        ballCap = Math.max(1, cap);
+        balls.setMaxCapacity(Math.min(ballCap, rules.getMaxBalls()));
+    }
+
+    public int getBallCap() {
+        return ballCap;
+    }
+
+    /**
+     * Sets the spawn pressure directly, as replays do. See SpawnScheduler.
+     */
+    public void setSpawnPressure(int pressure) {
+        spawner.setPressure(pressure);
+    }
+
+    public SpawnScheduler getSpawnScheduler() {
+        return spawner;
+    }
+
+    /**
+     * Starts or moves a continuous touch towards which the first cat is steered every tick.
+     * @param x X coordinate of the touch
+     * @param y Y coordinate of the touch
+     */
+    public void setTouch(float x, float y) {
+        setTouch(0, x, y, 1);
+    }
+
+    /**
+     * Starts or moves a touch of the first cat that lasted only part of the coming tick.
+     * @param weight Share of the tick the touch lasted, 0..1
+     */
+    public void setTouch(float x, float y, float weight) {
+        setTouch(0, x, y, weight);
+    }
+
+    /**
+     * Starts or moves the touch of one cat. A touch that lasted only part of the coming
+     * tick steers the cat only that much.
+     * @param cat Index of the cat, 0..getCatCount() - 1
+     * @param weight Share of the tick the touch lasted, 0..1
+     */
+    public void setTouch(int cat, float x, float y, float weight) {
+        touchX[cat] = x;
+        touchY[cat] = y;
+        touchWeight[cat] = weight;
+        touching[cat] = true;
+    }
+
+    public void releaseTouch() {
+        releaseTouch(0);
+    }
+
+    public void releaseTouch(int cat) {
+        touching[cat] = false;
+    }
+
+    public boolean isTouching() {
+        return touching[0];
+    }
+
+    public boolean isTouching(int cat) {
+        return touching[cat];
+    }
+
+    public float getTouchX() {
+        return touchX[0];
+    }
+
+    public float getTouchX(int cat) {
+        return touchX[cat];
+    }
+
+    public float getTouchY() {
+        return touchY[0];
+    }
+
+    public float getTouchY(int cat) {
+        return touchY[cat];
+    }
+
+    public float getTouchWeight() {
+        return touchWeight[0];
+    }
+
+    public float getTouchWeight(int cat) {
+        return touchWeight[cat];
+    }
+
+    public void addBall(boolean collectible) {
+        if (!collectible) {
+            spawnBall(maxBallRadius, maxBallVelocity, false);
+        } else {
+            spawnBall(maxBallRadius * 2, maxBallVelocity / 2, true);
+        }
+    }
+
+    /**
+     * Places a new ball of random size, location, speed and color into the pool.
+     * @param maxRadius Upper limit of the ball radius
+     * @param maxVelocity Upper limit of the ball speed on both axes
+     * @param collectible Whether the ball can be eaten
+     * @return pool index of the new ball, or -1 if the pool is full and nothing was spawned
+     */
+    private int spawnBall(int maxRadius, int maxVelocity, boolean collectible) {
+        int i = balls.acquire();
+        if (i < 0) {
+            return -1;
+        }
+        gridStale = true;
+        int radius = randomValue(maxRadius);
+        balls.radius[i] = radius;
+        balls.x[i] = radius + randomValue(width - radius * 2);
+        balls.y[i] = radius + randomValue(height - radius * 2);
+        balls.prevX[i] = balls.x[i];
+        balls.prevY[i] = balls.y[i];
+        balls.vx[i] = randomValue(maxVelocity);
+        balls.vy[i] = randomValue(maxVelocity);
+        balls.color[i] = randomColor();
+        if (collectible) {
+            balls.flags[i] |= BallPool.FLAG_COLLECTIBLE;
+            balls.growth[i] = BallPool.COLLECTIBLE_GROWTH;
+        }
+        return i;
+    }
+
+    private int randomColor() {
+        return BallThing.rgb(randomValue(255), randomValue(255), randomValue(255));
+    }
+
+    // Records an event of the current tick and adds it to the score
+    private void emit(byte type, int cat, int value, int points, int energy) {
+        events.emit(type, tick, cat, value, points, energy);
+        score.onEvent(type, tick, cat, value, points, energy);
+    }
+
+    public int randomValue(int maxValue) {
+        return random.nextInt(maxValue);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public GameRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Turns ball-vs-ball bouncing on or off. Off by default, as in the original game.
+     */
+    public void setBallCollisions(boolean enabled) {
+        ballCollisions = enabled;
+    }
+
+    public boolean isBallCollisions() {
+        return ballCollisions;
+    }
+
+    /**
+     * Makes cats collide with the solid pixels of their image instead of their hit box,
+     * or with the hit box again with null. The mask is part of the simulation, so an
+     * attached input recorder starts its recording over to include it.
+     * @throws IllegalArgumentException if the mask is not the size of the cats
+     * @throws IllegalStateException if recording and the game has already started
+     */
+    public void setCatMask(CollisionMask mask) {
+        if (mask != null && (mask.getWidth() != Math.round(cats[0].getWidth())
+                || mask.getHeight() != Math.round(cats[0].getHeight()))) {
+            throw new IllegalArgumentException("Mask is " + mask.getWidth() + "x"
+                    + mask.getHeight() + ", cats are " + cats[0].getWidth() + "x"
+                    + cats[0].getHeight());
+        }
+        catMask = mask;
+        if (recorder != null) {
+            setInputRecorder(recorder);
+        }
+    }
+
+    public CollisionMask getCatMask() {
+        return catMask;
+    }
+
+    public SpatialGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Collects the balls that may reach into the given rectangle, for controllers that
+     * look around the cats between steps. Balls only move during step(), so the grid built
+     * there is reused unless balls have been added or removed since, which happens on a
+     * small share of ticks.
+     * @return number of candidates, readable from getGrid().getResults()
+     */
+    public int queryBalls(float minX, float minY, float maxX, float maxY) {
+        if (gridStale) {
+            grid.rebuild(balls);
+            gridStale = false;
+        }
+        return grid.query(minX, minY, maxX, maxY);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the first cat, the only one in a single player game
+     */
+    public CharacterSprite getCharacterSprite() {
+        return cats[0];
+    }
+
+    public CharacterSprite getCat(int cat) {
+        return cats[cat];
+    }
+
+    public int getCatCount() {
+        return cats.length;
+    }
+
+    public BallPool getBalls() {
+        return balls;
+    }
+
+    public double getPoints() {
+        return score.getPoints();
+    }
+
+    public double getCatHits() {
+        return score.getEnergy();
+    }
+
+    /**
+     * Overrides the current energy. Meant for benchmarks and tools that need a world to
+     * keep running regardless of hits.
+     */
+    public void setCatHits(double hits) {
+        score.setEnergy(hits);
+    }
+
+    /**
+     * @return the events of the game, for readers that follow it between steps
+     */
+    public GameEvents getEvents() {
+        return events;
+    }
+
+    /**
+     * @return a copy of the rules of the current game
+     */
+    public GameRules getRules() {
+        return rules.copy();
+    }
+
+    /**
+     * @return the rules of the current game as profile text in UTF-8. Not a copy, so do
+     * not modify.
+     */
+    byte[] getRulesProfile() {
+        return rulesProfile;
+    }
+
+    public ScoreKeeper getScore() {
+        return score;
+    }
+
+    public InputRecorder getInputRecorder() {
+        return recorder;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public long getTick() {
+        return tick;
+    }
 }
@@ -0,0 +1,220 @@
+package com.sakari.firstgame;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer single-consumer queue of touch events. The UI thread offers
+ * events as they arrive and the simulation thread drains them into the world right
+ * before each step, so the world is only ever touched by the simulation thread. Events
+ * are kept in parallel arrays, so queueing allocates nothing.
+ *
+ * Every event carries the time it happened, so the UI thread can queue all historical
+ * samples batched into a MotionEvent. drainTo(world, tickEnd) then steers each step
+ * towards the time-weighted average of where the finger was during that step's tick,
+ * weighted by how much of the tick it was down, instead of towards whichever sample came
+ * last. Samples after the tick stay queued for the step that covers them, so every step
+ * of a catch-up round is steered by its own part of the input.
+ *
+ * Every event also names the cat it steers, so each finger of a multi-touch gesture
+ * drives its own cat. The averaging is done separately for each cat.
+ */
+public class InputQueue {
+    public static final byte TOUCH = 0; // finger down or moved
+    public static final byte RELEASE = 1; // finger lifted
+
+    private final byte[] actions;
+    private final byte[] cats; // cat each event steers
+    private final float[] xs;
+    private final float[] ys;
+    private final long[] times; // System.nanoTime of each event
+    private final int mask; // capacity - 1, capacity is a power of two
+    private final AtomicLong head = new AtomicLong(); // next event to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next free slot, written by the producer
+    private long cachedHead; // producer's last seen head
+    private volatile long dropped; // events lost to a full queue
+    private final long tickNanos; // longest time one drain averages over
+
+    // Consumer state carried between drains, per cat
+    private final boolean[] down = new boolean[GameWorld.MAX_CATS]; // finger down after latest event
+    private final float[] downX = new float[GameWorld.MAX_CATS]; // finger after latest event
+    private final float[] downY = new float[GameWorld.MAX_CATS];
+    private long lastDrain; // tick end of the latest timed drain
+
+    // Sums of the timed drain in progress, per cat
+    private final long[] cursor = new long[GameWorld.MAX_CATS]; // time accounted for so far
+    private final long[] downNanos = new long[GameWorld.MAX_CATS]; // time the finger was down
+    private final double[] sumX = new double[GameWorld.MAX_CATS]; // locations integrated over time
+    private final double[] sumY = new double[GameWorld.MAX_CATS];
+
+    /**
+     * @param capacity Events the queue can hold, rounded up to a power of two
+     * @param tickNanos Length of a simulation tick, the longest time one drain averages over
+     */
+    public InputQueue(int capacity, long tickNanos) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        actions = new byte[size];
+        cats = new byte[size];
+        xs = new float[size];
+        ys = new float[size];
+        times = new long[size];
+        mask = size - 1;
+        this.tickNanos = tickNanos;
+    }
+
+    /**
+     * Queues an event of the first cat that happens now. Producer thread only.
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(byte action, float x, float y) {
+        return offer(action, 0, x, y, System.nanoTime());
+    }
+
+    /**
+     * Queues an event of the first cat. Producer thread only.
+     * @param timeNanos When the event happened, on the System.nanoTime clock
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(byte action, float x, float y, long timeNanos) {
+        return offer(action, 0, x, y, timeNanos);
+    }
+
+    /**
+     * Queues an event. Producer thread only.
+     * @param cat Cat the event steers, 0..GameWorld.MAX_CATS - 1
+     * @param timeNanos When the event happened, on the System.nanoTime clock
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(byte action, int cat, float x, float y, long timeNanos) {
+        long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                dropped++;
+                return false;
+            }
+        }
+        int slot = (int) t & mask;
+        actions[slot] = action;
+        cats[slot] = (byte) cat;
+        xs[slot] = x;
+        ys[slot] = y;
+        times[slot] = timeNanos;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Applies every queued event to the world in arrival order, ignoring event times.
+     * Events of cats the world does not have are dropped. Consumer thread only.
+     * @return number of events drained
+     */
+    public int drainTo(GameWorld world) {
+        long h = head.get();
+        long t = tail.get();
+        int catCount = world.getCatCount();
+        for (long i = h; i < t; i++) {
+            int slot = (int) i & mask;
+            int c = cats[slot];
+            if (c >= catCount) {
+                continue;
+            }
+            if (actions[slot] == RELEASE) {
+                down[c] = false;
+                world.releaseTouch(c);
+            } else {
+                down[c] = true;
+                downX[c] = xs[slot];
+                downY[c] = ys[slot];
+                world.setTouch(c, downX[c], downY[c], 1);
+            }
+        }
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+
+    /**
+     * Sets the touch of each cat for the tick ending at tickEnd to where its finger was on
+     * average since the previous drain, at most one tick back. Each location counts for
+     * as long as it held, and the touch weight is the share of that time the finger was
+     * down, so even a tap shorter than a tick steers a little. Draining stops at the first
+     * event later than tickEnd, which is left queued for the next tick. Events of cats
+     * the world does not have are dropped. Consumer thread only.
+     * @param tickEnd System.nanoTime at which the tick being simulated is due
+     * @return number of events drained
+     */
+    public int drainTo(GameWorld world, long tickEnd) {
+        long h = head.get();
+        long t = tail.get();
+        long start = Math.max(lastDrain, tickEnd - tickNanos);
+        int catCount = world.getCatCount();
+        for (int c = 0; c < catCount; c++) {
+            cursor[c] = start;
+            downNanos[c] = 0;
+            sumX[c] = 0;
+            sumY[c] = 0;
+        }
+        long i = h;
+        for (; i < t; i++) {
+            int slot = (int) i & mask;
+            if (times[slot] > tickEnd) {
+                break;
+            }
+            int c = cats[slot];
+            if (c >= catCount) {
+                continue;
+            }
+            // Samples older than the window count from its start
+            long time = Math.max(cursor[c], times[slot]);
+            hold(c, time);
+            if (actions[slot] == RELEASE) {
+                down[c] = false;
+            } else {
+                down[c] = true;
+                downX[c] = xs[slot];
+                downY[c] = ys[slot];
+            }
+        }
+        head.lazySet(i);
+        lastDrain = tickEnd;
+
+        long window = tickEnd - start;
+        for (int c = 0; c < catCount; c++) {
+            hold(c, tickEnd);
+            if (downNanos[c] > 0) {
+                float weight = window > 0 ? (float) downNanos[c] / window : 1;
+                world.setTouch(c, (float) (sumX[c] / downNanos[c]),
+                        (float) (sumY[c] / downNanos[c]), weight);
+            } else if (down[c]) {
+                // The finger came down as the tick ended, it steers from the next tick on
+                world.setTouch(c, downX[c], downY[c], 0);
+            } else {
+                world.releaseTouch(c);
+            }
+        }
+        return (int) (i - h);
+    }
+
+    // Accounts the time from the cursor of the cat up to the given time
+    private void hold(int c, long time) {
+        if (down[c]) {
+            long held = time - cursor[c];
+            sumX[c] += (double) downX[c] * held;
+            sumY[c] += (double) downY[c] * held;
+            downNanos[c] += held;
+        }
+        cursor[c] = time;
+    }
+
+    /**
+     * Drops every queued event. Consumer thread only.
+     */
+    public void clear() {
+        head.lazySet(tail.get());
+        Arrays.fill(down, false);
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,144 @@
+package com.sakari.firstgame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Records the touch input a GameWorld acted on, tick by tick, in a compact binary form.
+ * Together with the world seed, size, rules profile and cat mask stored in the header,
+ * the recording replays the session exactly with InputReplay.
+ *
+ * Format, all numbers big-endian:
+ * header: magic "CBIR", version byte, seed long, width int, height int,
+ *         cat width float, cat height float, rules profile as an int length and that
+ *         many bytes of UTF-8 text, cat mask width int and height int, both 0 without
+ *         a mask, and the mask bits as longs
+ * events: tick delta as unsigned varint, action byte, then the cat byte and x, y and
+ *         weight floats for DOWN and MOVE, the cat byte for UP, the spawn pressure
+ *         level as an int for PRESSURE, or the ball cap as an int for BALL_CAP. An END
+ *         event marks the last simulated tick.
+ */
+public class InputRecorder {
+    public static final int MAGIC = 0x43424952; // "CBIR"
+    public static final byte VERSION = 9; // bumped whenever the simulation stops replaying older recordings
+
+    public static final byte DOWN = 0; // touch started
+    public static final byte MOVE = 1; // touch moved
+    public static final byte UP = 2; // touch released
+    public static final byte END = 3; // recording ends at this tick
+    public static final byte PRESSURE = 4; // spawn pressure changed
+    public static final byte BALL_CAP = 5; // live ball cap changed
+
+    private byte[] data; // recording so far
+    private int length; // bytes in use
+    private long lastTick; // tick of the previous event
+
+    public InputRecorder() {
+        data = new byte[1024];
+    }
+
+    /**
+     * Starts a new recording for a world with the given parameters.
+     * @param rulesProfile Rules of the game as written by GameRules.toProfile(), in UTF-8
+     * @param catMask Pixel mask the cats collide with, or null
+     */
+    public void begin(long seed, int width, int height, float catWidth, float catHeight,
+                      byte[] rulesProfile, CollisionMask catMask) {
+        length = 0;
+        lastTick = 0;
+        writeInt(MAGIC);
+        writeByte(VERSION);
+        writeLong(seed);
+        writeInt(width);
+        writeInt(height);
+        writeInt(Float.floatToIntBits(catWidth));
+        writeInt(Float.floatToIntBits(catHeight));
+        writeInt(rulesProfile.length);
+        for (byte b : rulesProfile) {
+            writeByte(b);
+        }
+        if (catMask == null) {
+            writeInt(0);
+            writeInt(0);
+        } else {
+            writeInt(catMask.getWidth());
+            writeInt(catMask.getHeight());
+            for (long bits : catMask.getBits()) {
+                writeLong(bits);
+            }
+        }
+    }
+
+    /**
+     * Adds one input event.
+     * @param tick Tick during which the world first saw the input
+     * @param action DOWN, MOVE, UP, PRESSURE, which takes the level in x, or BALL_CAP,
+     *               which takes the cap in x
+     * @param cat Cat the touch steers, ignored for PRESSURE and BALL_CAP
+     * @param weight Share of the tick a DOWN or MOVE touch lasted
+     */
+    public void record(long tick, byte action, int cat, float x, float y, float weight) {
+        writeVarLong(tick - lastTick);
+        lastTick = tick;
+        writeByte(action);
+        if (action == UP) {
+            writeByte((byte) cat);
+        } else if (action == DOWN || action == MOVE) {
+            writeByte((byte) cat);
+            writeInt(Float.floatToIntBits(x));
+            writeInt(Float.floatToIntBits(y));
+            writeInt(Float.floatToIntBits(weight));
+        } else if (action == PRESSURE || action == BALL_CAP) {
+            writeInt((int) x);
+        }
+    }
+
+    /**
+     * Marks the last tick of the session. Further events should not be recorded.
+     */
+    public void finish(long tick) {
+        writeVarLong(tick - lastTick);
+        lastTick = tick;
+        writeByte(END);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(data, length);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(data, 0, length);
+    }
+
+    public int size() {
+        return length;
+    }
+
+    private void writeVarLong(long value) {
+        while ((value & ~0x7fL) != 0) {
+            writeByte((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((byte) value);
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void writeInt(int value) {
+        writeByte((byte) (value >>> 24));
+        writeByte((byte) (value >>> 16));
+        writeByte((byte) (value >>> 8));
+        writeByte((byte) value);
+    }
+
+    private void writeByte(byte value) {
+        if (length == data.length) {
+            data = Arrays.copyOf(data, length * 2);
+        }
+        data[length++] = value;
+    }
+}
@@ -0,0 +1,179 @@
+package com.sakari.firstgame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Plays back an InputRecorder recording into a headless GameWorld. A world created with
+ * createWorld() and driven with step() ends up in exactly the same state as the
+ * recorded session did.
+ */
+public class InputReplay {
+    private final byte[] data; // the recording
+    private int position; // read position in data
+    private final long seed; // world seed
+    private final int width; // world width
+    private final int height; // world height
+    private final float catWidth; // cat width
+    private final float catHeight; // cat height
+    private final GameRules rules; // rules the game was played with
+    private final CollisionMask catMask; // pixel mask of the cats, or null
+    private long nextTick; // tick of the next unread event
+    private boolean finished; // END has been reached
+    private long endTick; // last recorded tick, once known
+
+    /**
+     * @param data Recording made by InputRecorder
+     * @throws IllegalArgumentException if the data is not a supported recording
+     */
+    public InputReplay(byte[] data) {
+        this.data = data;
+        if (data.length < 41 || readInt() != InputRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not an input recording");
+        }
+        byte version = data[position++];
+        if (version != InputRecorder.VERSION) {
+            throw new IllegalArgumentException("Unsupported recording version " + version);
+        }
+        seed = readLong();
+        width = readInt();
+        height = readInt();
+        catWidth = Float.intBitsToFloat(readInt());
+        catHeight = Float.intBitsToFloat(readInt());
+        int profileLength = readInt();
+        if (profileLength < 0 || profileLength > data.length - position - 8) {
+            throw new IllegalArgumentException("Truncated rules profile");
+        }
+        try {
+            rules = GameRules.load(new ByteArrayInputStream(data, position, profileLength));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unreadable rules profile", e);
+        }
+        position += profileLength;
+        int maskWidth = readInt();
+        int maskHeight = readInt();
+        if (maskWidth > 0 && maskHeight > 0) {
+            if ((long) maskHeight * ((maskWidth + 63) >>> 6) * 8 > data.length - position) {
+                throw new IllegalArgumentException("Truncated cat mask");
+            }
+            long[] bits = new long[maskHeight * ((maskWidth + 63) >>> 6)];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = readLong();
+            }
+            catMask = new CollisionMask(maskWidth, maskHeight, bits);
+        } else {
+            catMask = null;
+        }
+        readNextTick(0);
+    }
+
+    /**
+     * Creates a new world set up like the recorded one.
+     */
+    public GameWorld createWorld() {
+        GameWorld world = new GameWorld(width, height, catWidth, catHeight, seed, rules);
+        world.setCatMask(catMask);
+        return world;
+    }
+
+    /**
+     * Feeds the world every input recorded for its upcoming tick. Call right before each
+     * world.step().
+     */
+    public void applyInputs(GameWorld world) {
+        long tick = world.getTick() + 1;
+        while (!finished && nextTick == tick) {
+            byte action = data[position++];
+            if (action == InputRecorder.END) {
+                finished = true;
+                endTick = nextTick;
+                return;
+            }
+            if (action == InputRecorder.UP) {
+                world.releaseTouch(data[position++]);
+            } else if (action == InputRecorder.PRESSURE) {
+                world.setSpawnPressure(readInt());
+            } else if (action == InputRecorder.BALL_CAP) {
+                world.setBallCap(readInt());
+            } else {
+                int cat = data[position++];
+                float x = Float.intBitsToFloat(readInt());
+                float y = Float.intBitsToFloat(readInt());
+                float weight = Float.intBitsToFloat(readInt());
+                world.setTouch(cat, x, y, weight);
+            }
+            readNextTick(nextTick);
+        }
+    }
+
+    /**
+     * Replays the whole recording.
+     * @return the world in its state at the end of the recording
+     */
+    public GameWorld run() {
+        GameWorld world = createWorld();
+        while (!isFinished(world)) {
+            applyInputs(world);
+            if (isFinished(world)) {
+                break;
+            }
+            world.step();
+        }
+        return world;
+    }
+
+    /**
+     * Checks if the world has simulated every tick of the recording.
+     */
+    public boolean isFinished(GameWorld world) {
+        return finished && world.getTick() >= endTick;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getCats() {
+        return rules.getCats();
+    }
+
+    /**
+     * @return a copy of the rules the game was played with
+     */
+    public GameRules getRules() {
+        return rules.copy();
+    }
+
+    public CollisionMask getCatMask() {
+        return catMask;
+    }
+
+    private void readNextTick(long previous) {
+        if (position >= data.length) {
+            // Recording without an END marker - stop at the last event
+            finished = true;
+            endTick = previous;
+            return;
+        }
+        long delta = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position++];
+            delta |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        nextTick = previous + delta;
+    }
+
+    private long readLong() {
+        return ((long) readInt() << 32) | (readInt() & 0xffffffffL);
+    }
+
+    private int readInt() {
+        int value = ((data[position] & 0xff) << 24) | ((data[position + 1] & 0xff) << 16)
+                | ((data[position + 2] & 0xff) << 8) | (data[position + 3] & 0xff);
+        position += 4;
+        return value;
+    }
+}
@@ -0,0 +1,223 @@
+package com.sakari.firstgame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the game loops, each on a thread of its own that lives as long as the host. The
+ * host is in one of four states:
+ * - RUNNING while the app is in the foreground and has a surface to draw on,
+ * - PAUSED while the app is in the background,
+ * - SUSPENDED while the app is in the foreground without a surface,
+ * - STOPPED for good, once the loop threads have ended.
+ *
+ * Outside RUNNING the loop threads wait on a condition, between two rounds, so they hold
+ * on to everything they had and go on the moment the host runs again. A state change
+ * returns once every loop has finished its round and waits, so from then on the world
+ * and the surface are free for the calling thread. Waits inside a round go through
+ * sleep(), which a state change cuts short.
+ *
+ * The state is changed from one thread, normally the UI thread.
+ */
+public class LoopHost {
+    public static final int RUNNING = 0; // loops are going round
+    public static final int PAUSED = 1; // app in the background
+    public static final int SUSPENDED = 2; // app in the foreground without a surface
+    public static final int STOPPED = 3; // loop threads have ended
+
+    /**
+     * A loop run by the host.
+     */
+    public interface Loop {
+        /**
+         * Called on the loop thread every time the host starts running, before the first
+         * round, for example to restart clocks that kept going while the loop waited.
+         */
+        void onRun();
+
+        /**
+         * Runs one round of the loop.
+         */
+        void round();
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition(); // state or active loops changed
+    private final List<Thread> threads = new ArrayList<>(); // one per loop
+    private volatile int state = PAUSED; // current state
+    private boolean foreground; // app in the foreground
+    private boolean surface; // surface to draw on
+    private long runs; // times the host has started running
+    private int active; // loops in a round, or about to start one
+
+    /**
+     * Adds a loop, on a thread of its own. The thread is started by start().
+     */
+    public void add(String name, final Loop loop) {
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop(loop);
+            }
+        }, name));
+    }
+
+    /**
+     * Starts the loop threads, which wait until the host runs.
+     */
+    public void start() {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    private void runLoop(Loop loop) {
+        long run = 0;
+        boolean inRound = false;
+        while (true) {
+            long current = awaitRunning(inRound);
+            if (current < 0) {
+                return;
+            }
+            inRound = true;
+            if (current != run) {
+                run = current;
+                loop.onRun();
+            }
+            loop.round();
+        }
+    }
+
+    // Waits while the host does not run. Returns the number of the run, or -1 once stopped.
+    private long awaitRunning(boolean inRound) {
+        if (inRound && state == RUNNING) {
+            return runs; // written before state under the lock, so no older than state
+        }
+        lock.lock();
+        try {
+            if (inRound) {
+                active--;
+                changed.signalAll();
+            }
+            while (state != RUNNING && state != STOPPED) {
+                changed.awaitUninterruptibly();
+            }
+            if (state == STOPPED) {
+                return -1;
+            }
+            active++;
+            return runs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a while in a round, or until the host leaves RUNNING. Loop threads only.
+     * @return true if the whole time was waited
+     */
+    public boolean sleep(long nanos) {
+        lock.lock();
+        try {
+            while (nanos > 0 && state == RUNNING) {
+                nanos = changed.awaitNanos(nanos);
+            }
+            return nanos <= 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells whether the app is in the foreground, and waits for the loops to stop if
+     * that stops the host.
+     */
+    public void setForeground(boolean foreground) {
+        lock.lock();
+        try {
+            this.foreground = foreground;
+            update();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells whether there is a surface to draw on, and waits for the loops to stop if
+     * that stops the host.
+     */
+    public void setSurface(boolean surface) {
+        lock.lock();
+        try {
+            this.surface = surface;
+            update();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the loop threads for good, after their current rounds.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            state = STOPPED;
+            changed.signalAll();
+            awaitIdle();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Works out the state, with the lock held
+    private void update() {
+        if (state == STOPPED) {
+            return;
+        }
+        int next = !foreground ? PAUSED : !surface ? SUSPENDED : RUNNING;
+        if (next == state) {
+            return;
+        }
+        if (next == RUNNING) {
+            runs++;
+        }
+        state = next;
+        changed.signalAll();
+        if (next != RUNNING) {
+            awaitIdle();
+        }
+    }
+
+    // Waits until no loop is in a round, with the lock held
+    private void awaitIdle() {
+        while (active > 0) {
+            changed.awaitUninterruptibly();
+        }
+    }
+
+    /**
+     * Waits for the loop threads to end, after stop().
+     * @param millis Longest time to wait for each
+     * @return true if all of them ended
+     */
+    public boolean join(long millis) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join(millis);
+            if (thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getState() {
+        return state;
+    }
+}
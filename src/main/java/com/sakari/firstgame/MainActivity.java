@@ -34,7 +34,24 @@ public class MainActivity extends Activity {
         gameView.pause();
     }
 
+    // This method executes when the activity goes away for good
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // The game threads end with the view
+        gameView.stop();
+    }
+
+    /**
+     * Starts a new game. The view is created only once; later games reuse it with its
+     * threads and bitmaps.
+     */
     public void newGame() {
+        if (gameView != null) {
+            gameView.newGame();
+            return;
+        }
         gameView = new GameView(this);
         setContentView(gameView);
     }
@@ -1,76 +1,76 @@
 package com.sakari.firstgame;
 
-import android.graphics.Canvas;
-import android.view.SurfaceHolder;
-
-public class MainThread extends Thread {
-    private SurfaceHolder surfaceHolder;
+/**
+ * Simulation loop running the game at a fixed timestep, on a thread of the LoopHost. Real
+ * time measured with System.nanoTime is collected into an accumulator and consumed in
+ * whole simulation steps, so the game runs at the same speed regardless of how fast
+ * frames are drawn. After its steps each round publishes a world snapshot for the
+ * RenderThread, which draws independently; this loop never waits for the canvas.
+ *
+ * While the host is not running the clock is left alone: time spent paused is not caught
+ * up on, and the game goes on from the tick it stopped at.
+ */
+public class MainThread implements LoopHost.Loop {
     private GameView gameView; // Actual game stuff happens here
-    private boolean running; // Flag for game running
-    public static Canvas canvas;
-    private int targetFPS = 50; // Intended FPS for the game - high value makes faster but more resource heavy game
-    private double averageFPS; // Real FPS while running - used only for debugging/checking
-
-    public MainThread(SurfaceHolder surfaceHolder, GameView gameView) {
+    private LoopHost host; // Runs this loop and paces it
+    public static final int TARGET_FPS = 50; // Simulation steps per second - high value makes faster but more resource heavy game
+    public static final long FRAME_BUDGET_NANOS = 1000000000L / TARGET_FPS; // Time available per step
+    private final int MAX_STEPS_PER_FRAME = 5; // Catch-up limit before the game is allowed to slow down
+    private FrameMetrics metrics; // Frame-time instrumentation
+    private long previousTime; // start of the previous round
+    private long accumulator; // real time not yet simulated
 
-        super();
-        this.surfaceHolder = surfaceHolder;
+    public MainThread(GameView gameView, LoopHost host) {
         this.gameView = gameView;
+        this.host = host;
+        this.metrics = gameView.getMetrics();
     }
 
     @Override
-    public void run() {
-        long startTime;
-        long timeMillis;
-        long waitTime;
-        long totalTime = 0;
-        int frameCount = 0;
-        long targetTime = 1000 / targetFPS;
-
-        while (running) {
-            startTime = System.nanoTime();
-            canvas = null;
-
-            try {
-                canvas = this.surfaceHolder.lockCanvas();
-                synchronized(surfaceHolder) {
-                    this.gameView.update();
-                    this.gameView.draw(canvas);
-                }
-            } catch (Exception e) {       }
-            finally {
-                if (canvas != null)            {
-                    try {
-                        surfaceHolder.unlockCanvasAndPost(canvas);
-                    }
-                    catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-
-            timeMillis = (System.nanoTime() - startTime) / 1000000;
-            waitTime = targetTime - timeMillis;
+    public void onRun() {
+        previousTime = System.nanoTime();
+        accumulator = 0;
+    }
 
-            try {
-                this.sleep(waitTime);
-            } catch (Exception e) {}
+    @Override
+    public void round() {
+        long stepNanos = FRAME_BUDGET_NANOS;
+        long roundStart = System.nanoTime();
+        long elapsed = roundStart - previousTime;
+        previousTime = roundStart;
+        accumulator += elapsed;
 
-            totalTime += System.nanoTime() - startTime;
-            frameCount++;
-            if (frameCount == targetFPS)        {
-                averageFPS = 1000 / ((totalTime / frameCount) / 1000000);
-                frameCount = 0;
-                totalTime = 0;
-                //System.out.println(averageFPS);
-            }
+        // Run as many fixed steps as real time requires, but never more than the cap
+        int steps = 0;
+        while (accumulator >= stepNanos && steps < MAX_STEPS_PER_FRAME) {
+            accumulator -= stepNanos;
+            // Each step of a catch-up round takes the input of its own tick
+            this.gameView.update(roundStart - accumulator);
+            steps++;
+        }
+        if (accumulator >= stepNanos) {
+            // Too far behind to catch up - drop the backlog instead of spiralling
+            accumulator %= stepNanos;
+            metrics.recordDroppedBacklog();
+        }
+        if (steps > 0) {
+            // The latest step is due at roundStart - accumulator; the renderer
+            // interpolates from there
+            this.gameView.publishSnapshot(roundStart - accumulator);
+        }
+        long updateEnd = System.nanoTime();
+        if (steps > 0) {
+            this.gameView.reportStepTime((updateEnd - roundStart) / steps);
         }
 
-    }
+        // Wait until the next simulation step is due, or the host stops running
+        long waitNanos = stepNanos - accumulator - (updateEnd - roundStart);
+        long overshoot = 0;
+        if (waitNanos > 0 && host.sleep(waitNanos)) {
+            overshoot = System.nanoTime() - updateEnd - waitNanos;
+        }
 
-    public void setRunning(boolean isRunning) {
-        running = isRunning;
+        metrics.recordUpdate(updateEnd - roundStart, overshoot, steps, gameView.getBallCount());
+        metrics.maybeDump(updateEnd);
     }
-
-
 }
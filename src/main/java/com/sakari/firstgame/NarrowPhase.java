@@ -0,0 +1,105 @@
+package com.sakari.firstgame;
+
+/**
+ * Exact contact tests between moving circles and boxes, run on the pairs the spatial grid
+ * finds near each other. The swept tests look at the whole movement of a tick instead of
+ * where it ended, so a small fast ball cannot pass through a cat or another ball between
+ * two ticks without touching it.
+ *
+ * A sweep moves a circle in a straight line from (x0, y0) by (dx, dy) and returns the time
+ * of impact: the share of the movement, 0..1, after which the circle first touches, or NO_HIT.
+ * Moving objects are swept by their movement relative to each other. Distances are only
+ * ever compared squared, so the tests take a single square root, and only on a hit.
+ */
+public final class NarrowPhase {
+    public static final float NO_HIT = -1; // the shapes do not touch during the movement
+
+    private NarrowPhase() {
+    }
+
+    /**
+     * Checks if a circle overlaps or touches a box.
+     */
+    public static boolean circleTouchesBox(float cx, float cy, float r,
+                                           float minX, float minY, float maxX, float maxY) {
+        // Distance to the nearest point of the box, which is the center itself inside it
+        float dx = cx < minX ? minX - cx : cx > maxX ? cx - maxX : 0;
+        float dy = cy < minY ? minY - cy : cy > maxY ? cy - maxY : 0;
+        return dx * dx + dy * dy <= r * r;
+    }
+
+    /**
+     * Sweeps a circle against a box that stays in place.
+     * @return time of impact 0..1, 0 if they touch at the start, or NO_HIT
+     */
+    public static float sweepCircleBox(float x0, float y0, float dx, float dy, float r,
+                                       float minX, float minY, float maxX, float maxY) {
+        if (circleTouchesBox(x0, y0, r, minX, minY, maxX, maxY)) {
+            return 0;
+        }
+        // The center hits the box grown by the radius with rounded corners. First find
+        // where it enters the grown box with square corners, slab by slab.
+        float enter = 0;
+        float exit = 1;
+        if (dx == 0) {
+            if (x0 < minX - r || x0 > maxX + r) {
+                return NO_HIT;
+            }
+        } else {
+            float t1 = (minX - r - x0) / dx;
+            float t2 = (maxX + r - x0) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (y0 < minY - r || y0 > maxY + r) {
+                return NO_HIT;
+            }
+        } else {
+            float t1 = (minY - r - y0) / dy;
+            float t2 = (maxY + r - y0) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (enter > exit) {
+            return NO_HIT;
+        }
+        // Entering beside an edge is a hit. Entering at a corner square is only a hit if
+        // the center also reaches the circle around that corner, the rounded part.
+        float hx = x0 + dx * enter;
+        float hy = y0 + dy * enter;
+        if ((hx >= minX && hx <= maxX) || (hy >= minY && hy <= maxY)) {
+            return enter;
+        }
+        float cornerX = hx < minX ? minX : maxX;
+        float cornerY = hy < minY ? minY : maxY;
+        return sweepCircleCircle(x0 - cornerX, y0 - cornerY, dx, dy, r);
+    }
+
+    /**
+     * Sweeps a circle against a circle that stays in place, or two moving circles by
+     * their relative movement.
+     * @param x0 Start of the moving center relative to the other center
+     * @param y0 Start of the moving center relative to the other center
+     * @param reach Sum of the radii
+     * @return time of impact 0..1, 0 if they touch at the start, or NO_HIT
+     */
+    public static float sweepCircleCircle(float x0, float y0, float dx, float dy, float reach) {
+        float c = x0 * x0 + y0 * y0 - reach * reach;
+        if (c <= 0) {
+            return 0;
+        }
+        float b = x0 * dx + y0 * dy;
+        if (b >= 0) {
+            return NO_HIT; // not closing in
+        }
+        float a = dx * dx + dy * dy;
+        float discriminant = b * b - a * c;
+        if (discriminant < 0) {
+            return NO_HIT; // passes by
+        }
+        // The earlier root of |p0 + t d|^2 = reach^2
+        float t = (-b - (float) Math.sqrt(discriminant)) / a;
+        return t <= 1 ? t : NO_HIT;
+    }
+}
@@ -0,0 +1,166 @@
+package com.sakari.firstgame;
+
+/**
+ * Steps the render quality down while frames run over budget and back up once there is
+ * room again. Every frame reports the latest simulation step time and the time spent
+ * drawing, and every WINDOW frames the larger of the two, as a share of the budget,
+ * decides:
+ * - a window averaging over HIGH_LOAD, or with more than SLOW_LIMIT slow frames, drops
+ *   one level at once,
+ * - a level is only raised after enough calm windows in a row, averaging under
+ *   LOW_LOAD with no slow frame at all.
+ *
+ * The gap between the two loads keeps the level from flapping on a steady load, and a
+ * step up that has to be taken back within PROBATION_WINDOWS doubles the calm windows
+ * that step needs next time, so a device that can not quite afford a level stops trying
+ * it every few seconds. A step that holds through its probation halves the wait again.
+ *
+ * Each level is a set of settings, from lowest to full quality: how long flashing balls
+ * keep each color, how often the metrics overlay refreshes, whether ball sprites are
+ * filtered, the resolution scale of the frame and a cap on live balls. Falling levels
+ * give up the cheapest-looking things first and cap the balls only as a last resort.
+ * The scaler holds no Android types and no clock, so it can be fed frame-time traces.
+ *
+ * report() is called from one thread only; the level and its settings can be read from
+ * any thread.
+ */
+public class QualityScaler {
+    public static final int LEVELS = 5; // quality levels, 0 is the lowest
+    public static final int FULL = LEVELS - 1; // level with every effect on
+    public static final int NO_CAP = Integer.MAX_VALUE; // ball cap of levels that do not limit balls
+    static final int WINDOW = 30; // frames per decision
+    static final float HIGH_LOAD = 0.9f; // share of the budget above which quality drops
+    static final float LOW_LOAD = 0.6f; // share of the budget below which quality may rise
+    static final int SLOW_LIMIT = WINDOW / 5; // slow frames a window may have before quality drops
+    static final int UPGRADE_WINDOWS = 4; // calm windows before quality rises, at the least
+    static final int MAX_UPGRADE_WINDOWS = 128; // calm windows before quality rises, at the most
+    static final int PROBATION_WINDOWS = 8; // a level dropped this soon after rising to it failed
+
+    // Settings of each level, lowest first
+    private static final int[] FLASH_PERIOD = {4, 2, 2, 2, 1}; // ticks a flashing ball keeps its color
+    private static final int[] OVERLAY_PERIOD = {100, 50, 50, 50, 25}; // frames between overlay updates
+    private static final boolean[] BALL_FILTERING = {false, false, false, true, true}; // smooth ball sprites
+    private static final float[] RESOLUTION_SCALE = {0.5f, 0.75f, 1, 1, 1}; // frame pixels per screen pixel
+    private static final int[] BALL_CAP = {300, NO_CAP, NO_CAP, NO_CAP, NO_CAP}; // live balls at most
+
+    private final long budgetNanos; // time available per frame
+    private volatile int level = FULL; // current quality level
+    private final int[] upgradeWindows = new int[LEVELS]; // calm windows needed to rise from each level
+    private int frames; // frames in the current window
+    private float loadSum; // summed load of the current window
+    private int slowFrames; // frames over budget in the current window
+    private int calmWindows; // calm windows in a row
+    private int windowsAtLevel; // windows since the level last changed
+    private boolean onProbation; // the level was reached by rising and has not yet held
+
+    /**
+     * @param budgetNanos Time available for a frame, and for a simulation step
+     */
+    public QualityScaler(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+        for (int l = 0; l < LEVELS; l++) {
+            upgradeWindows[l] = UPGRADE_WINDOWS;
+        }
+    }
+
+    /**
+     * Feeds in one frame.
+     * @param updateNanos Time the latest simulation step took
+     * @param drawNanos Time spent drawing the frame, not counting waits for the surface
+     * @return true if the level changed
+     */
+    public boolean report(long updateNanos, long drawNanos) {
+        long frameNanos = Math.max(updateNanos, drawNanos);
+        loadSum += (float) frameNanos / budgetNanos;
+        if (frameNanos > budgetNanos) {
+            slowFrames++;
+        }
+        if (++frames < WINDOW) {
+            return false;
+        }
+        float load = loadSum / WINDOW;
+        int slow = slowFrames;
+        frames = 0;
+        loadSum = 0;
+        slowFrames = 0;
+        windowsAtLevel++;
+
+        if (load > HIGH_LOAD || slow > SLOW_LIMIT) {
+            calmWindows = 0;
+            if (level == 0) {
+                return false;
+            }
+            if (onProbation) {
+                // Rising to this level did not last, so wait longer before the next try
+                int windows = upgradeWindows[level - 1] * 2;
+                upgradeWindows[level - 1] = Math.min(MAX_UPGRADE_WINDOWS, windows);
+            }
+            setLevel(level - 1, false);
+            return true;
+        }
+        if (onProbation && windowsAtLevel > PROBATION_WINDOWS) {
+            upgradeWindows[level - 1] = Math.max(UPGRADE_WINDOWS, upgradeWindows[level - 1] / 2);
+            onProbation = false;
+        }
+        if (load >= LOW_LOAD || slow > 0) {
+            calmWindows = 0;
+            return false;
+        }
+        if (level < FULL && ++calmWindows >= upgradeWindows[level]) {
+            setLevel(level + 1, true);
+            return true;
+        }
+        return false;
+    }
+
+    private void setLevel(int newLevel, boolean rising) {
+        level = newLevel;
+        onProbation = rising;
+        windowsAtLevel = 0;
+        calmWindows = 0;
+    }
+
+    /**
+     * Starts over at full quality, forgetting what earlier frames showed.
+     */
+    public void reset() {
+        setLevel(FULL, false);
+        frames = 0;
+        loadSum = 0;
+        slowFrames = 0;
+        for (int l = 0; l < LEVELS; l++) {
+            upgradeWindows[l] = UPGRADE_WINDOWS;
+        }
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return calm windows needed to rise from a level, as backed off so far
+     */
+    public int getUpgradeWindows(int level) {
+        return upgradeWindows[level];
+    }
+
+    public static int getFlashPeriod(int level) {
+        return FLASH_PERIOD[level];
+    }
+
+    public static int getOverlayPeriod(int level) {
+        return OVERLAY_PERIOD[level];
+    }
+
+    public static boolean isBallFiltering(int level) {
+        return BALL_FILTERING[level];
+    }
+
+    public static float getResolutionScale(int level) {
+        return RESOLUTION_SCALE[level];
+    }
+
+    public static int getBallCap(int level) {
+        return BALL_CAP[level];
+    }
+}
@@ -0,0 +1,39 @@
+package com.sakari.firstgame;
+
+/**
+ * Drawing surface used by WorldRenderer. On Android this is backed by a Canvas, while
+ * headless runs and tests can record or discard the calls. Images and text styles are
+ * referred to by ids so the implementation can preload bitmaps and paints once.
+ */
+public interface RenderTarget {
+    int IMAGE_CAT = 0; // player character
+    int IMAGE_END_SPLASH = 1; // game over picture
+
+    int TEXT_SCORE = 0; // score counter
+    int TEXT_END = 1; // game over message
+    int TEXT_OVERLAY = 2; // metrics overlay
+
+    void clear(int color);
+
+    void drawCircle(float cx, float cy, float radius, int color);
+
+    /**
+     * Draws every ball of the batch at once with the SpriteAtlas circles.
+     */
+    void drawBalls(BallBatch batch);
+
+    void drawRect(float left, float top, float right, float bottom, int color);
+
+    void drawImage(int image, float left, float top);
+
+    void drawImage(int image, float left, float top, float right, float bottom);
+
+    void drawText(char[] text, int start, int count, float x, float y, int style);
+
+    /**
+     * Limits drawing to a rectangle until restoreClip() is called.
+     */
+    void clipRect(int left, int top, int right, int bottom);
+
+    void restoreClip();
+}
@@ -0,0 +1,123 @@
+package com.sakari.firstgame;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.SurfaceHolder;
+
+/**
+ * Render loop drawing the latest world snapshot published by the simulation loop, on a
+ * thread of the LoopHost. Frames are paced by the surface: lockCanvas blocks until a
+ * buffer is free. Moving things are interpolated by how much time has passed since their
+ * tick was due, so motion stays smooth whatever the relative rates of the two loops.
+ *
+ * In dirty redraw mode only the areas that change are locked and repainted, and frames
+ * that would change nothing are skipped altogether.
+ */
+public class RenderThread implements LoopHost.Loop {
+    private static final long IDLE_SLEEP_NANOS = 2000000; // wait when there is nothing new to draw
+    private static final long FAILURE_LOG_NANOS = 1000000000L; // least time between two failure logs
+
+    private SurfaceHolder surfaceHolder;
+    private GameView gameView; // Source of the snapshots and the drawing
+    private LoopHost host; // Runs this loop and paces it
+    private FrameMetrics metrics; // Frame-time instrumentation
+    private final float stepNanos = MainThread.FRAME_BUDGET_NANOS; // time between two ticks
+    private long drawnTick; // latest tick fully on screen, -1 for none
+    private int failedFrames; // frames failed since the latest failure log
+    private long failureLogNanos; // time of the latest failure log
+
+    public RenderThread(SurfaceHolder surfaceHolder, GameView gameView, LoopHost host) {
+        this.surfaceHolder = surfaceHolder;
+        this.gameView = gameView;
+        this.host = host;
+        this.metrics = gameView.getMetrics();
+    }
+
+    @Override
+    public void onRun() {
+        // The surface may be a new one, with none of the earlier frames on it
+        drawnTick = -1;
+        gameView.invalidateDirty();
+        failureLogNanos = System.nanoTime() - FAILURE_LOG_NANOS;
+    }
+
+    @Override
+    public void round() {
+        WorldSnapshot snapshot = gameView.latestSnapshot();
+        long now = System.nanoTime();
+        float alpha = Math.min(1, Math.max(0, (now - snapshot.publishNanos) / stepNanos));
+        boolean settled = alpha >= 1 || snapshot.gameOver; // later frames would look the same
+        if (snapshot.tick == drawnTick && settled) {
+            // Everything up to the latest tick is on screen already
+            host.sleep(IDLE_SLEEP_NANOS);
+            return;
+        }
+
+        boolean dirtyFrame = gameView.isDirtyRedraw();
+        Rect dirty = null;
+        if (dirtyFrame) {
+            dirty = gameView.collectDirty(snapshot, alpha);
+            if (dirty == null) {
+                // Nothing on screen would change
+                drawnTick = settled ? snapshot.tick : -1;
+                host.sleep(IDLE_SLEEP_NANOS);
+                return;
+            }
+        }
+
+        Canvas canvas = null;
+        long drawNanos = -1; // stays -1 if no frame was drawn
+        boolean failed = false;
+        try {
+            canvas = this.surfaceHolder.lockCanvas(dirty);
+            long renderStart = System.nanoTime();
+            if (canvas == null) {
+                if (dirtyFrame) {
+                    gameView.invalidateDirty();
+                }
+            } else if (dirtyFrame) {
+                // The surface may have grown the area; dirty now holds what to repaint
+                this.gameView.drawDirty(canvas, snapshot, alpha, dirty);
+            } else {
+                this.gameView.draw(canvas, snapshot, alpha);
+            }
+            if (canvas != null) {
+                // Waiting for a free buffer is pacing, not load, so only drawing counts,
+                // the same for the quality scaler and the frame metrics
+                drawNanos = System.nanoTime() - renderStart;
+                gameView.reportDrawTime(drawNanos);
+            }
+        } catch (Exception e) {
+            failed = true;
+            logFailure(e);
+            // Whatever made it to the buffer can not be trusted, so repaint all of it
+            gameView.invalidateDirty();
+        }
+        finally {
+            if (canvas != null)            {
+                try {
+                    surfaceHolder.unlockCanvasAndPost(canvas);
+                }
+                catch (Exception e) {
+                    logFailure(e);
+                }
+            }
+        }
+        drawnTick = settled && !failed ? snapshot.tick : -1;
+        if (drawNanos >= 0) {
+            metrics.recordDraw(drawNanos);
+        }
+    }
+
+    // Logs a failed frame, at most once a second so a failure on every frame does not
+    // flood the log
+    private void logFailure(Exception e) {
+        failedFrames++;
+        long now = System.nanoTime();
+        if (now - failureLogNanos >= FAILURE_LOG_NANOS) {
+            GameLog.w("Drawing failed in " + failedFrames + " frames, latest: " + e);
+            failedFrames = 0;
+            failureLogNanos = now;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.sakari.firstgame;
+
+/**
+ * Score, energy and statistics of one game, added up from its events. GameWorld passes
+ * every event it emits here first, so the score and the energy it reports are always up
+ * to date. The energy never goes over the cap; a prize eaten at full energy is wasted.
+ */
+public class ScoreKeeper implements GameEventListener {
+    private int maxEnergy; // energy cap
+    private double points; // score
+    private double energy; // remaining energy, the game ends when it runs out
+    private long hits; // ticks of contact with dull balls
+    private long collects; // prize balls eaten
+    private long spawns; // balls due to spawn
+    private long contacts; // separate contacts with dull balls
+    private final double[] catPoints = new double[GameWorld.MAX_CATS]; // points each cat scored itself
+
+    public ScoreKeeper(int maxEnergy) {
+        this.maxEnergy = maxEnergy;
+    }
+
+    @Override
+    public void onEvent(byte type, long tick, int cat, int value, int points, int energy) {
+        this.points += points;
+        if (energy > 0) {
+            this.energy = Math.min(maxEnergy, this.energy + energy);
+        } else {
+            this.energy += energy;
+        }
+        if (cat >= 0) {
+            catPoints[cat] += points;
+        }
+        if (type == GameEvents.HIT) {
+            hits++;
+        } else if (type == GameEvents.COLLECT) {
+            collects++;
+        } else if (type == GameEvents.SPAWN) {
+            spawns++;
+        } else if (type == GameEvents.CONTACT_BEGIN) {
+            contacts++;
+        }
+    }
+
+    /**
+     * Changes the energy cap, for games with other rules.
+     */
+    public void setMaxEnergy(int maxEnergy) {
+        this.maxEnergy = maxEnergy;
+    }
+
+    /**
+     * Starts a new game with the given energy.
+     */
+    public void reset(double startEnergy) {
+        restore(0, startEnergy);
+    }
+
+    /**
+     * Continues a saved game. The statistics start over.
+     */
+    public void restore(double points, double energy) {
+        this.points = points;
+        this.energy = energy;
+        hits = 0;
+        collects = 0;
+        spawns = 0;
+        contacts = 0;
+        for (int c = 0; c < catPoints.length; c++) {
+            catPoints[c] = 0;
+        }
+    }
+
+    public double getPoints() {
+        return points;
+    }
+
+    public double getEnergy() {
+        return energy;
+    }
+
+    /**
+     * Overrides the current energy, for tools that keep a world running regardless of hits.
+     */
+    public void setEnergy(double energy) {
+        this.energy = energy;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getCollects() {
+        return collects;
+    }
+
+    public long getSpawns() {
+        return spawns;
+    }
+
+    public long getContacts() {
+        return contacts;
+    }
+
+    /**
+     * @return points the cat scored by eating prizes
+     */
+    public double getCatPoints(int cat) {
+        return catPoints[cat];
+    }
+}
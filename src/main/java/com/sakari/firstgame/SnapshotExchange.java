@@ -0,0 +1,61 @@
+package com.sakari.firstgame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer of world snapshots between one producing and one consuming
+ * thread. The producer always has a buffer of its own to write, the consumer always has
+ * the latest complete snapshot to read, and the third buffer is swapped between them
+ * with a single atomic exchange. Neither side ever waits for the other.
+ */
+public class SnapshotExchange {
+    private static final int INDEX_MASK = 3; // buffer index bits of the shared slot
+    private static final int FRESH = 4; // set when the shared buffer has not been read yet
+
+    private final WorldSnapshot[] buffers = new WorldSnapshot[3];
+    private final AtomicInteger shared; // index of the buffer in between, plus the FRESH bit
+    private int writeIndex; // buffer owned by the producer
+    private int readIndex; // buffer owned by the consumer
+
+    public SnapshotExchange() {
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new WorldSnapshot();
+        }
+        writeIndex = 0;
+        shared = new AtomicInteger(1);
+        readIndex = 2;
+    }
+
+    /**
+     * Returns the buffer the producer may fill. Producer thread only.
+     */
+    public WorldSnapshot getWriteBuffer() {
+        return buffers[writeIndex];
+    }
+
+    /**
+     * Hands the filled write buffer over to the consumer and takes a free buffer for the
+     * next snapshot. Producer thread only.
+     */
+    public void publish() {
+        writeIndex = shared.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the most recently published snapshot. The snapshot stays valid until the
+     * next call. Consumer thread only.
+     */
+    public WorldSnapshot latest() {
+        if ((shared.get() & FRESH) != 0) {
+            readIndex = shared.getAndSet(readIndex) & INDEX_MASK;
+        }
+        return buffers[readIndex];
+    }
+
+    /**
+     * Checks if a snapshot has been published since the consumer last called latest().
+     */
+    public boolean hasFresh() {
+        return (shared.get() & FRESH) != 0;
+    }
+}
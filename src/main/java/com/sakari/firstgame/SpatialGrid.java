@@ -0,0 +1,273 @@
+package com.sakari.firstgame;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the game area used as collision broadphase. Every tick the grid is
+ * rebuilt from the BallPool with a counting sort: each ball is registered in every cell
+ * its swept box overlaps, the bounding box of the ball where it was before the tick and
+ * where it is now. So even balls grown far past the cell size, or moving more than a
+ * cell in a tick, are found by looking only at the cells a query touches. Rebuilding
+ * allocates nothing unless the ball count outgrows the internal arrays.
+ */
+public class SpatialGrid {
+    private final float cellSize; // cell edge length
+    private final float inverseCellSize; // 1 / cellSize
+    private final int columns; // cell count on X axis
+    private final int rows; // cell count on Y axis
+    private int[] cellStart; // first entry of each cell in cellItems, one extra at the end
+    private int[] cellItems; // ball indices ordered by cell
+    private float[] itemX; // ball x coordinates in cellItems order
+    private float[] itemY; // ball y coordinates in cellItems order
+    private float[] itemRadius; // ball radii in cellItems order
+    private float[] boxLeft; // per ball left edge of the swept box
+    private float[] boxTop; // per ball top edge of the swept box
+    private float[] boxRight; // per ball right edge of the swept box
+    private float[] boxBottom; // per ball bottom edge of the swept box
+    private int[] stamps; // per ball query id, used to report each ball only once
+    private int queryId; // id of the latest query
+    private int[] results; // balls found by the latest query
+    private int resultCount; // number of valid entries in results
+
+    /**
+     * @param width Width of the covered area
+     * @param height Height of the covered area
+     * @param cellSize Cell edge length - about one ball diameter works best
+     */
+    public SpatialGrid(int width, int height, float cellSize) {
+        this.cellSize = cellSize;
+        inverseCellSize = 1f / cellSize;
+        columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        cellStart = new int[columns * rows + 1];
+        cellItems = new int[256];
+        itemX = new float[256];
+        itemY = new float[256];
+        itemRadius = new float[256];
+        stamps = new int[64];
+        boxLeft = new float[64];
+        boxTop = new float[64];
+        boxRight = new float[64];
+        boxBottom = new float[64];
+        results = new int[64];
+    }
+
+    /**
+     * Registers every live ball into the cells overlapped by its swept box.
+     * @param balls Balls to index - the grid is valid until any ball moves or is removed
+     */
+    public void rebuild(BallPool balls) {
+        int count = balls.size();
+        int[] start = cellStart;
+        Arrays.fill(start, 0);
+        if (stamps.length < balls.capacity()) {
+            int capacity = balls.capacity();
+            stamps = new int[capacity];
+            queryId = 0;
+            boxLeft = new float[capacity];
+            boxTop = new float[capacity];
+            boxRight = new float[capacity];
+            boxBottom = new float[capacity];
+        }
+
+        // Count entries per cell, shifted by one so the prefix sum yields start offsets
+        int entries = 0;
+        for (int i = 0; i < count; i++) {
+            float r = balls.radius[i];
+            float x = balls.x[i];
+            float y = balls.y[i];
+            float prevX = balls.prevX[i];
+            float prevY = balls.prevY[i];
+            boxLeft[i] = Math.min(x, prevX) - r;
+            boxTop[i] = Math.min(y, prevY) - r;
+            boxRight[i] = Math.max(x, prevX) + r;
+            boxBottom[i] = Math.max(y, prevY) + r;
+            int c0 = column(boxLeft[i]);
+            int c1 = column(boxRight[i]);
+            int r0 = row(boxTop[i]);
+            int r1 = row(boxBottom[i]);
+            for (int row = r0; row <= r1; row++) {
+                int base = row * columns + 1;
+                for (int col = c0; col <= c1; col++) {
+                    start[base + col]++;
+                }
+            }
+            entries += (c1 - c0 + 1) * (r1 - r0 + 1);
+        }
+        for (int c = 1; c < start.length; c++) {
+            start[c] += start[c - 1];
+        }
+        if (cellItems.length < entries) {
+            int capacity = entries + (entries >> 1);
+            cellItems = new int[capacity];
+            itemX = new float[capacity];
+            itemY = new float[capacity];
+            itemRadius = new float[capacity];
+        }
+
+        // Fill cells, using start[c] as a moving cursor and shifting back afterwards.
+        // Coordinates are copied next to the indices so pair loops read memory in order.
+        int[] items = cellItems;
+        for (int i = 0; i < count; i++) {
+            float x = balls.x[i];
+            float y = balls.y[i];
+            float r = balls.radius[i];
+            int c0 = column(boxLeft[i]);
+            int c1 = column(boxRight[i]);
+            int r0 = row(boxTop[i]);
+            int r1 = row(boxBottom[i]);
+            for (int row = r0; row <= r1; row++) {
+                int base = row * columns;
+                for (int col = c0; col <= c1; col++) {
+                    int k = start[base + col]++;
+                    items[k] = i;
+                    itemX[k] = x;
+                    itemY[k] = y;
+                    itemRadius[k] = r;
+                }
+            }
+        }
+        for (int c = start.length - 1; c > 0; c--) {
+            start[c] = start[c - 1];
+        }
+        start[0] = 0;
+    }
+
+    /**
+     * Collects every ball registered in the cells overlapping the given rectangle.
+     * The candidates still need an exact test, and each is reported only once.
+     * @return number of candidates, readable from getResults()
+     */
+    public int query(float minX, float minY, float maxX, float maxY) {
+        if (++queryId == 0) {
+            Arrays.fill(stamps, 0);
+            queryId = 1;
+        }
+        int id = queryId;
+        int found = 0;
+        int c0 = column(minX);
+        int c1 = column(maxX);
+        int r0 = row(minY);
+        int r1 = row(maxY);
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                int cell = row * columns + col;
+                for (int k = cellStart[cell], end = cellStart[cell + 1]; k < end; k++) {
+                    int ball = cellItems[k];
+                    if (stamps[ball] != id) {
+                        stamps[ball] = id;
+                        if (found == results.length) {
+                            results = Arrays.copyOf(results, found * 2);
+                        }
+                        results[found++] = ball;
+                    }
+                }
+            }
+        }
+        resultCount = found;
+        return found;
+    }
+
+    /**
+     * Updates the coordinates copied for a ball in every cell it is registered in, after
+     * the ball was moved. The ball stays in the cells of its swept box at rebuild time.
+     */
+    public void moveItem(int ball, float x, float y) {
+        int c0 = column(boxLeft[ball]);
+        int c1 = column(boxRight[ball]);
+        int r0 = row(boxTop[ball]);
+        int r1 = row(boxBottom[ball]);
+        for (int row = r0; row <= r1; row++) {
+            for (int col = c0; col <= c1; col++) {
+                int cell = row * columns + col;
+                for (int k = cellStart[cell], end = cellStart[cell + 1]; k < end; k++) {
+                    if (cellItems[k] == ball) {
+                        itemX[k] = x;
+                        itemY[k] = y;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    public int[] getResults() {
+        return results;
+    }
+
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    public int getCellCount() {
+        return columns * rows;
+    }
+
+    /** First index into getCellItems() belonging to the given cell. */
+    public int cellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    /** One past the last index into getCellItems() belonging to the given cell. */
+    public int cellEnd(int cell) {
+        return cellStart[cell + 1];
+    }
+
+    public int[] getCellItems() {
+        return cellItems;
+    }
+
+    /** Ball x coordinates at rebuild time, parallel to getCellItems(). */
+    public float[] getItemX() {
+        return itemX;
+    }
+
+    /** Ball y coordinates at rebuild time, parallel to getCellItems(). */
+    public float[] getItemY() {
+        return itemY;
+    }
+
+    /** Ball radii at rebuild time, parallel to getCellItems(). */
+    public float[] getItemRadius() {
+        return itemRadius;
+    }
+
+    /** Left edges of the swept boxes at rebuild time, by ball index. */
+    public float[] getBoxLeft() {
+        return boxLeft;
+    }
+
+    /** Top edges of the swept boxes at rebuild time, by ball index. */
+    public float[] getBoxTop() {
+        return boxTop;
+    }
+
+    /** Right edges of the swept boxes at rebuild time, by ball index. */
+    public float[] getBoxRight() {
+        return boxRight;
+    }
+
+    /** Bottom edges of the swept boxes at rebuild time, by ball index. */
+    public float[] getBoxBottom() {
+        return boxBottom;
+    }
+
+    /** Cell containing the given point, clamped into the grid. */
+    public int cellAt(float x, float y) {
+        return row(y) * columns + column(x);
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    private int column(float x) {
+        int c = (int) (x * inverseCellSize);
+        return c < 0 ? 0 : (c >= columns ? columns - 1 : c);
+    }
+
+    private int row(float y) {
+        int r = (int) (y * inverseCellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+}
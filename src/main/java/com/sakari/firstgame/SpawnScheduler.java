@@ -0,0 +1,225 @@
+package com.sakari.firstgame;
+
+import java.util.Arrays;
+
+/**
+ * Decides when balls appear. Upcoming spawns wait in a priority queue keyed on the tick
+ * they are due, a binary min-heap over primitive arrays, and every spawn schedules the
+ * next one of its kind when it is taken out:
+ * - normal balls come at the interval given by the DifficultyCurve for the current tick,
+ * - prize balls come after random gaps that average 1 / prizeChance ticks, which is the
+ *   same rate as rolling prizeChance every tick but costs one random number per prize.
+ *
+ * Spawn pressure scales the normal ball rate down, to as little as MIN_PRESSURE of the
+ * curve. In adaptive mode adapt() lowers it while measured frame times are over budget
+ * and raises it again once they are well under. Pressure is an input to the world like
+ * touches are, so GameWorld records its changes for replays.
+ */
+public class SpawnScheduler {
+    public static final byte BALL = 0; // normal ball
+    public static final byte PRIZE = 1; // collectible ball
+
+    public static final int FULL_PRESSURE = 64; // pressure level of the plain curve
+    public static final int MIN_PRESSURE = 16; // pressure level never goes below this
+    private static final int ADAPT_PERIOD = 25; // frame times between pressure changes
+    private static final float HIGH_LOAD = 0.75f; // share of the budget above which pressure drops
+    private static final float LOW_LOAD = 0.5f; // share of the budget below which pressure recovers
+
+    private DifficultyCurve curve; // normal ball intervals over time
+    private double prizeChance; // prize balls per tick on average
+    private long[] due = new long[4]; // heap of due ticks
+    private byte[] kinds = new byte[4]; // spawn kind of each heap entry
+    private int size; // entries in the heap
+    private int interval; // interval of the latest normal ball
+    private int pressure = FULL_PRESSURE; // spawn pressure, in 1/64ths of the curve rate
+    private float smoothedLoad; // recent frame times as a share of the budget
+    private int reports; // frame times reported since the last pressure change
+
+    /**
+     * @param curve Normal ball intervals
+     * @param prizeChance Chance of a prize ball per tick
+     */
+    public SpawnScheduler(DifficultyCurve curve, double prizeChance) {
+        setCurve(curve, prizeChance);
+    }
+
+    /**
+     * Changes the spawn rates, for games with other rules. Takes effect from reset().
+     */
+    public void setCurve(DifficultyCurve curve, double prizeChance) {
+        this.curve = curve;
+        this.prizeChance = prizeChance;
+    }
+
+    /**
+     * Empties the queue and schedules the first ball of each kind for a game starting at
+     * tick 0. Pressure is kept, since it follows the device rather than the game, but
+     * only applies from the second ball on, so that a recording starting now does not
+     * depend on it.
+     */
+    public void reset(GameRandom random) {
+        size = 0;
+        interval = curve.interval(0);
+        schedule(interval, BALL);
+        if (prizeChance > 0) {
+            schedule(prizeGap(random), PRIZE);
+        }
+    }
+
+    /**
+     * Takes the next spawn due at or before the tick out of the queue and schedules the
+     * one after it.
+     * @return BALL or PRIZE, or -1 if nothing is due
+     */
+    public int poll(long tick, GameRandom random) {
+        if (size == 0 || due[0] > tick) {
+            return -1;
+        }
+        byte kind = kinds[0];
+        removeFirst();
+        if (kind == BALL) {
+            interval = curve.interval(tick);
+            schedule(tick + scaled(interval), BALL);
+        } else if (prizeChance > 0) {
+            schedule(tick + prizeGap(random), PRIZE);
+        }
+        return kind;
+    }
+
+    /**
+     * Adds a spawn to the queue.
+     * @param tick Tick the spawn is due
+     * @param kind BALL or PRIZE
+     */
+    public void schedule(long tick, byte kind) {
+        if (size == due.length) {
+            due = Arrays.copyOf(due, size * 2);
+            kinds = Arrays.copyOf(kinds, size * 2);
+        }
+        int i = size++;
+        // Sift up
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (due[parent] <= tick) {
+                break;
+            }
+            due[i] = due[parent];
+            kinds[i] = kinds[parent];
+            i = parent;
+        }
+        due[i] = tick;
+        kinds[i] = kind;
+    }
+
+    /**
+     * Feeds in the time the latest frame took, for adaptive mode.
+     * @return true if the spawn pressure changed
+     */
+    public boolean adapt(long frameNanos, long budgetNanos) {
+        smoothedLoad += ((float) frameNanos / budgetNanos - smoothedLoad) * 0.125f;
+        if (++reports < ADAPT_PERIOD) {
+            return false;
+        }
+        int previous = pressure;
+        if (smoothedLoad > HIGH_LOAD) {
+            pressure = Math.max(MIN_PRESSURE, pressure - 4);
+        } else if (smoothedLoad < LOW_LOAD) {
+            pressure = Math.min(FULL_PRESSURE, pressure + 1);
+        }
+        reports = 0;
+        return pressure != previous;
+    }
+
+    // Removes the root of the heap
+    private void removeFirst() {
+        int last = --size;
+        long tick = due[last];
+        byte kind = kinds[last];
+        int i = 0;
+        // Sift down
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= last) {
+                break;
+            }
+            if (child + 1 < last && due[child + 1] < due[child]) {
+                child++;
+            }
+            if (due[child] >= tick) {
+                break;
+            }
+            due[i] = due[child];
+            kinds[i] = kinds[child];
+            i = child;
+        }
+        due[i] = tick;
+        kinds[i] = kind;
+    }
+
+    // Stretches a curve interval by the spawn pressure
+    private int scaled(int interval) {
+        return (interval * FULL_PRESSURE + pressure - 1) / pressure;
+    }
+
+    // Ticks until the next prize ball, geometrically distributed like per-tick rolls
+    private int prizeGap(GameRandom random) {
+        if (prizeChance >= 1) {
+            return 1;
+        }
+        double u = 1 - random.nextDouble(); // in (0, 1]
+        double gap = StrictMath.log(u) / StrictMath.log1p(-prizeChance);
+        return (int) Math.min(Integer.MAX_VALUE, 1 + gap);
+    }
+
+    /**
+     * @return interval of the latest normal ball, in ticks
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    public int getPressure() {
+        return pressure;
+    }
+
+    /**
+     * Sets the spawn pressure, from MIN_PRESSURE to FULL_PRESSURE, taking effect from the
+     * next normal ball on.
+     */
+    public void setPressure(int pressure) {
+        this.pressure = Math.max(MIN_PRESSURE, Math.min(FULL_PRESSURE, pressure));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the due tick of the queue entry at the index, in heap order
+     */
+    public long getDue(int index) {
+        return due[index];
+    }
+
+    /**
+     * @return the kind of the queue entry at the index, in heap order
+     */
+    public byte getKind(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * Empties the queue without scheduling anything, for restoring saved entries with
+     * schedule().
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sets the interval of the latest normal ball, for restoring a saved game.
+     */
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+}
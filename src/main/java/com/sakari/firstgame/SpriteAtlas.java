@@ -0,0 +1,65 @@
+package com.sakari.firstgame;
+
+/**
+ * Layout of the ball sprite atlas: one white circle per radius bucket, side by side in a
+ * single row. A ball is drawn from the smallest bucket at least its size, scaled down to
+ * its exact radius, so every circle keeps a crisp edge; balls larger than the biggest
+ * bucket are scaled up from it. The layout is pure arithmetic, the Android side
+ * rasterizes the circles into a bitmap once at startup.
+ */
+public final class SpriteAtlas {
+    public static final int[] BUCKET_RADII = {4, 8, 16, 32, 64, 128}; // circle radius of each bucket, in pixels
+    public static final int PADDING = 1; // empty pixels around each circle, keeps filtering inside the cell
+
+    private static final int[] CELL_LEFT = new int[BUCKET_RADII.length];
+    public static final int WIDTH; // atlas bitmap width
+    public static final int HEIGHT; // atlas bitmap height
+
+    static {
+        int left = 0;
+        for (int b = 0; b < BUCKET_RADII.length; b++) {
+            CELL_LEFT[b] = left;
+            left += cellSize(b);
+        }
+        WIDTH = left;
+        HEIGHT = cellSize(BUCKET_RADII.length - 1);
+    }
+
+    private SpriteAtlas() {
+    }
+
+    /**
+     * Returns the bucket used for a ball of the given radius.
+     */
+    public static int bucketFor(float radius) {
+        for (int b = 0; b < BUCKET_RADII.length - 1; b++) {
+            if (radius <= BUCKET_RADII[b]) {
+                return b;
+            }
+        }
+        return BUCKET_RADII.length - 1;
+    }
+
+    /**
+     * Side length of a bucket's square cell, padding included.
+     */
+    public static int cellSize(int bucket) {
+        return 2 * (BUCKET_RADII[bucket] + PADDING);
+    }
+
+    public static int cellLeft(int bucket) {
+        return CELL_LEFT[bucket];
+    }
+
+    public static int cellTop(int bucket) {
+        return 0;
+    }
+
+    public static float centerX(int bucket) {
+        return CELL_LEFT[bucket] + BUCKET_RADII[bucket] + PADDING;
+    }
+
+    public static float centerY(int bucket) {
+        return BUCKET_RADII[bucket] + PADDING;
+    }
+}
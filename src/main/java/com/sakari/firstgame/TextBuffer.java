@@ -0,0 +1,80 @@
+package com.sakari.firstgame;
+
+import java.util.Arrays;
+
+/**
+ * Reusable character buffer for text that changes every frame, such as the score.
+ * Appending numbers writes digits straight into the buffer, so building text this way
+ * creates no String objects.
+ */
+public class TextBuffer {
+    private char[] chars; // text content, valid up to length
+    private int length; // number of characters in use
+
+    public TextBuffer(int capacity) {
+        chars = new char[Math.max(1, capacity)];
+    }
+
+    public TextBuffer clear() {
+        length = 0;
+        return this;
+    }
+
+    public TextBuffer append(String text) {
+        int count = text.length();
+        ensureCapacity(length + count);
+        text.getChars(0, count, chars, length);
+        length += count;
+        return this;
+    }
+
+    public TextBuffer append(char c) {
+        ensureCapacity(length + 1);
+        chars[length++] = c;
+        return this;
+    }
+
+    public TextBuffer append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append("-9223372036854775808");
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(length + digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * The backing array. Only the first length() characters are valid, and the array may
+     * be replaced when the buffer grows.
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.sakari.firstgame;
+
+/**
+ * Maps between world units, screen pixels and the pixels of the frame buffer. The world
+ * is always WORLD_SHORT_SIDE units across the short side of the screen, and as long on
+ * the long side as the screen shape asks, so the same game plays out the same on every
+ * resolution: ball speeds, sizes and collisions are all in world units.
+ *
+ * Frames are drawn in world units too, scaled to a frame buffer that may be smaller than
+ * the screen; the display hardware stretches the buffer over the screen. The scale of
+ * the frame is the render scale, in frame pixels per screen pixel, times the resolution
+ * scale of the quality level. By default the frame is no larger than the world, so
+ * screens with more pixels than that do not fill more of them per frame.
+ */
+public class Viewport {
+    public static final int WORLD_SHORT_SIDE = 1080; // world units across the short side of the screen
+
+    private final int screenWidth; // screen width in pixels
+    private final int screenHeight; // screen height in pixels
+    private final int worldWidth; // world width in units
+    private final int worldHeight; // world height in units
+    private final float unitsPerScreenPixel; // world units per screen pixel
+    private float renderScale; // frame pixels per screen pixel at full quality
+    private float frameScaleX = 1; // frame pixels per world unit on X axis
+    private float frameScaleY = 1; // frame pixels per world unit on Y axis
+
+    public Viewport(int screenWidth, int screenHeight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        unitsPerScreenPixel = (float) WORLD_SHORT_SIDE / Math.min(screenWidth, screenHeight);
+        worldWidth = Math.round(screenWidth * unitsPerScreenPixel);
+        worldHeight = Math.round(screenHeight * unitsPerScreenPixel);
+        renderScale = Math.min(1, unitsPerScreenPixel);
+        setFrameSize(frameWidth(1), frameHeight(1));
+    }
+
+    /**
+     * Sets the frame pixels per screen pixel at full quality, 1 for full resolution.
+     */
+    public void setRenderScale(float renderScale) {
+        this.renderScale = Math.max(0.1f, Math.min(1, renderScale));
+    }
+
+    public float getRenderScale() {
+        return renderScale;
+    }
+
+    /**
+     * @param resolutionScale Resolution scale of the quality level
+     * @return width of the frame buffer to ask for, in pixels
+     */
+    public int frameWidth(float resolutionScale) {
+        return Math.max(1, Math.round(screenWidth * renderScale * resolutionScale));
+    }
+
+    /**
+     * @param resolutionScale Resolution scale of the quality level
+     * @return height of the frame buffer to ask for, in pixels
+     */
+    public int frameHeight(float resolutionScale) {
+        return Math.max(1, Math.round(screenHeight * renderScale * resolutionScale));
+    }
+
+    /**
+     * Takes the size of the frame buffer actually drawn on.
+     * @return true if the size differs from the previous one
+     */
+    public boolean setFrameSize(int width, int height) {
+        float scaleX = (float) width / worldWidth;
+        float scaleY = (float) height / worldHeight;
+        boolean changed = scaleX != frameScaleX || scaleY != frameScaleY;
+        frameScaleX = scaleX;
+        frameScaleY = scaleY;
+        return changed;
+    }
+
+    public float getFrameScaleX() {
+        return frameScaleX;
+    }
+
+    public float getFrameScaleY() {
+        return frameScaleY;
+    }
+
+    public float toWorldX(float screenX) {
+        return screenX * unitsPerScreenPixel;
+    }
+
+    public float toWorldY(float screenY) {
+        return screenY * unitsPerScreenPixel;
+    }
+
+    // World edges to frame pixel edges and back, rounded outwards so that an area keeps
+    // covering everything it covered
+
+    public int toFrameLeft(float worldX) {
+        return (int) Math.floor(worldX * frameScaleX);
+    }
+
+    public int toFrameTop(float worldY) {
+        return (int) Math.floor(worldY * frameScaleY);
+    }
+
+    public int toFrameRight(float worldX) {
+        return (int) Math.ceil(worldX * frameScaleX);
+    }
+
+    public int toFrameBottom(float worldY) {
+        return (int) Math.ceil(worldY * frameScaleY);
+    }
+
+    public int toWorldLeft(int frameX) {
+        return (int) Math.floor(frameX / frameScaleX);
+    }
+
+    public int toWorldTop(int frameY) {
+        return (int) Math.floor(frameY / frameScaleY);
+    }
+
+    public int toWorldRight(int frameX) {
+        return (int) Math.ceil(frameX / frameScaleX);
+    }
+
+    public int toWorldBottom(int frameY) {
+        return (int) Math.ceil(frameY / frameScaleY);
+    }
+
+    public int getWorldWidth() {
+        return worldWidth;
+    }
+
+    public int getWorldHeight() {
+        return worldHeight;
+    }
+}
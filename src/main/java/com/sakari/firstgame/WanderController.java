@@ -0,0 +1,31 @@
+package com.sakari.firstgame;
+
+/**
+ * Scripted controller that presses a random spot of the screen for a while, then lets go
+ * or moves on to another spot, like a player who does not look at the balls at all.
+ * Useful as a baseline policy for batch runs. Every cat of the world wanders on its own.
+ */
+public class WanderController implements Controller {
+    private final GameRandom random; // own generator, keeps the world's sequence intact
+    private final int[] ticksLeft = new int[GameWorld.MAX_CATS]; // ticks to the next decision, per cat
+
+    public WanderController(long seed) {
+        random = new GameRandom(seed);
+    }
+
+    @Override
+    public void control(GameWorld world) {
+        for (int cat = 0; cat < world.getCatCount(); cat++) {
+            if (--ticksLeft[cat] > 0) {
+                continue;
+            }
+            ticksLeft[cat] = 10 + random.nextInt(90);
+            if (random.nextInt(4) == 0) {
+                world.releaseTouch(cat);
+            } else {
+                world.setTouch(cat, random.nextInt(world.getWidth()),
+                        random.nextInt(world.getHeight()), 1);
+            }
+        }
+    }
+}
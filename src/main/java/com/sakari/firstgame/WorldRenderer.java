@@ -0,0 +1,417 @@
+package com.sakari.firstgame;
+
+/**
+ * Draws a WorldSnapshot onto a RenderTarget. Holds no Android types, so the complete
+ * frame can also be produced headless. All per-frame text goes through reused
+ * buffers, and the score text is only rebuilt when the shown value changes.
+ *
+ * Besides whole frames the renderer can repaint only what changed: collectDirty()
+ * compares where everything is drawn now with where it was drawn in the previous frame,
+ * and renderDirty() repaints just those areas. The score, energy bar and metrics
+ * overlay only become dirty when their shown values change.
+ */
+public class WorldRenderer {
+    public static final int SCORE_TEXT_SIZE = 50; // font size of score text, in pixels
+    public static final int END_TEXT_SIZE = 100; // font size of game over text, in pixels
+    public static final int BACKGROUND_COLOR = 0xff000000; // black
+    public static final int ENERGY_COLOR = 0xff00ff00; // green
+    public static final int SCORE_COLOR = 0xffff0000; // red
+    public static final int END_TEXT_COLOR = 0xffff00ff; // magenta
+    public static final int OVERLAY_TEXT_SIZE = 30; // font size of metrics overlay, in pixels
+    public static final int OVERLAY_COLOR = 0xffffffff; // white
+    public static final int OVERLAY_REFRESH_FRAMES = 25; // frames between overlay updates by default
+    private static final int DIRTY_MAX_RECTS = 8; // dirty rectangles kept before merging them
+    private static final float DIRTY_MARGIN_PIXELS = 2; // frame pixels added around moving things for edge smoothing
+
+    private static final char[] END_TEXT = "RIP, meow".toCharArray();
+    private static final String SCORE_PREFIX = "Score: ";
+
+    private int screenWidth; // Screen width
+    private int screenHeight; // Screen height
+    private int scoreX; // score text X coordinate
+    private int scoreY; // score text Y coordinate
+    private int energyBarThickness; // hit points bar thickness
+    private final TextBuffer scoreText; // "Score: n", rebuilt only when n changes
+    private long shownScore; // score currently held in scoreText
+    private FrameMetrics metrics; // source of the metrics overlay, if any
+    private volatile boolean metricsOverlay; // whether the metrics overlay is shown, toggled from the UI thread
+    private int overlayFrames; // frames since the overlay was updated
+    private int overlayRefreshFrames = OVERLAY_REFRESH_FRAMES; // frames between overlay updates
+    private final FrameMetrics.Snapshot overlaySnapshot; // reused by the overlay
+    private final TextBuffer[] overlayLines; // overlay text, one buffer per line
+    private final BallBatch ballBatch; // balls of the frame as atlas quads
+    private boolean batchedBalls; // whether balls are drawn as one batch instead of one circle each
+    private boolean scoreChanged; // score text differs from the previous frame
+    private int previousScoreLength; // characters in the score text of the previous frame
+    private boolean overlayChanged; // overlay text or visibility differs from the previous frame
+    private boolean shownOverlay; // overlay visibility in the previous frame
+    private final DirtyRegion dirty; // areas to repaint in the current frame
+    private float[] drawnBounds; // left, top, right, bottom of everything drawn in the previous frame
+    private int[] drawnColors; // color of each drawn ball, a moved-in ball may differ only in color
+    private int drawnCount; // entries in drawnBounds
+    private float[] frameBounds; // the same for the current frame
+    private int[] frameColors;
+    private float drawnEnergy; // energy bar length in the previous frame
+    private boolean drawnGameOver; // game over screen in the previous frame
+    private boolean fullRedraw; // next dirty frame has to repaint everything
+    private float dirtyMargin = DIRTY_MARGIN_PIXELS; // DIRTY_MARGIN_PIXELS in world units
+
+    public WorldRenderer(int screenWidth, int screenHeight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        scoreX = SCORE_TEXT_SIZE / 2; // division in order to adjust location not outside screen
+        scoreY = SCORE_TEXT_SIZE + SCORE_TEXT_SIZE / 4; // division makes sure the text is within screen
+        energyBarThickness = 5;
+        scoreText = new TextBuffer(32);
+        scoreText.append(SCORE_PREFIX).append(0);
+        shownScore = 0;
+        overlaySnapshot = new FrameMetrics.Snapshot();
+        overlayLines = new TextBuffer[4];
+        for (int i = 0; i < overlayLines.length; i++) {
+            overlayLines[i] = new TextBuffer(64);
+        }
+        ballBatch = new BallBatch();
+        batchedBalls = true;
+        dirty = new DirtyRegion(DIRTY_MAX_RECTS);
+        drawnBounds = new float[0];
+        drawnColors = new int[0];
+        frameBounds = new float[0];
+        frameColors = new int[0];
+        fullRedraw = true;
+    }
+
+    public void setMetrics(FrameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Shows or hides frame metrics below the score.
+     */
+    public void setMetricsOverlay(boolean visible) {
+        if (visible && !metricsOverlay) {
+            overlayFrames = overlayRefreshFrames;
+        }
+        metricsOverlay = visible;
+    }
+
+    public boolean isMetricsOverlay() {
+        return metricsOverlay;
+    }
+
+    /**
+     * Tells how large the world is drawn, so that the margin kept around moving things
+     * for edge smoothing covers the same frame pixels at any scale.
+     * @param pixelsPerUnit Frame pixels per world unit, the smaller of the two axes
+     */
+    public void setFrameScale(float pixelsPerUnit) {
+        dirtyMargin = DIRTY_MARGIN_PIXELS / pixelsPerUnit;
+    }
+
+    /**
+     * Sets how many frames the metrics overlay text is kept before it is rebuilt.
+     */
+    public void setOverlayRefreshFrames(int frames) {
+        overlayRefreshFrames = Math.max(1, frames);
+    }
+
+    /**
+     * Chooses between drawing all balls in batches from the sprite atlas, the default, and
+     * drawing each ball as a circle of its own.
+     */
+    public void setBatchedBalls(boolean batched) {
+        batchedBalls = batched;
+    }
+
+    public boolean isBatchedBalls() {
+        return batchedBalls;
+    }
+
+    /**
+     * Checks if a screen location is on the score text, which toggles the overlay.
+     */
+    public boolean isOnScore(float x, float y) {
+        return x < SCORE_TEXT_SIZE * 8 && y < SCORE_TEXT_SIZE * 2;
+    }
+
+    /**
+     * Draws one frame.
+     * @param world Snapshot of the world to draw
+     * @param target Surface to draw on
+     * @param alpha How far the simulation has progressed towards the next tick, 0..1
+     */
+    public void render(WorldSnapshot world, RenderTarget target, float alpha) {
+        updateHud(world);
+        target.clear(BACKGROUND_COLOR);
+        drawScene(world, target, alpha, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        // Whole frames keep no bounds, so the next dirty frame starts from scratch
+        fullRedraw = true;
+    }
+
+    /**
+     * Makes the next dirty frame repaint the whole screen, for when the surface content
+     * has been lost or was not drawn by this renderer.
+     */
+    public void invalidate() {
+        fullRedraw = true;
+    }
+
+    /**
+     * Works out which areas of the screen change in the next frame. Must be followed by
+     * renderDirty() with the same snapshot, or by invalidate() if the frame is not drawn.
+     * @param world Snapshot of the world to draw
+     * @param alpha How far the simulation has progressed towards the next tick, 0..1
+     * @return the areas to repaint, empty if the frame would look just like the previous one
+     */
+    public DirtyRegion collectDirty(WorldSnapshot world, float alpha) {
+        updateHud(world);
+        int count = world.ballCount + world.catCount;
+        if (frameColors.length < count) {
+            frameBounds = new float[count * 4 + 64];
+            frameColors = new int[count + 16];
+        }
+        float[] bounds = frameBounds;
+        float[] x = world.x;
+        float[] y = world.y;
+        float[] prevX = world.prevX;
+        float[] prevY = world.prevY;
+        for (int i = 0, b = 0; i < world.ballCount; i++, b += 4) {
+            float cx = prevX[i] + (x[i] - prevX[i]) * alpha;
+            float cy = prevY[i] + (y[i] - prevY[i]) * alpha;
+            float r = world.radius[i] + dirtyMargin;
+            bounds[b] = cx - r;
+            bounds[b + 1] = cy - r;
+            bounds[b + 2] = cx + r;
+            bounds[b + 3] = cy + r;
+            frameColors[i] = world.color[i];
+        }
+        for (int c = 0; c < world.catCount; c++) {
+            int b = (world.ballCount + c) * 4;
+            bounds[b] = catLeft(world, c, alpha) - dirtyMargin;
+            bounds[b + 1] = catTop(world, c, alpha) - dirtyMargin;
+            bounds[b + 2] = bounds[b] + world.catWidth + dirtyMargin * 2;
+            bounds[b + 3] = bounds[b + 1] + world.catHeight + dirtyMargin * 2;
+            frameColors[world.ballCount + c] = 0;
+        }
+
+        DirtyRegion region = dirty;
+        region.clear();
+        float energy = (float) world.catHits;
+        if (fullRedraw || world.gameOver != drawnGameOver) {
+            region.add(0, 0, screenWidth, screenHeight);
+        } else {
+            for (int i = 0; i < count; i++) {
+                int b = i * 4;
+                if (i < drawnCount && frameColors[i] == drawnColors[i]
+                        && bounds[b] == drawnBounds[b] && bounds[b + 1] == drawnBounds[b + 1]
+                        && bounds[b + 2] == drawnBounds[b + 2] && bounds[b + 3] == drawnBounds[b + 3]) {
+                    continue;
+                }
+                region.add(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3]);
+                if (i < drawnCount) {
+                    region.add(drawnBounds[b], drawnBounds[b + 1], drawnBounds[b + 2], drawnBounds[b + 3]);
+                }
+            }
+            for (int i = count; i < drawnCount; i++) {
+                int b = i * 4;
+                region.add(drawnBounds[b], drawnBounds[b + 1], drawnBounds[b + 2], drawnBounds[b + 3]);
+            }
+            if (scoreChanged) {
+                // No character is wider than the font size
+                int length = Math.max(previousScoreLength, scoreText.length());
+                region.add(0, 0, scoreX + length * SCORE_TEXT_SIZE, scoreY + SCORE_TEXT_SIZE / 2);
+            }
+            if (overlayChanged) {
+                region.add(0, scoreY, screenWidth,
+                        scoreY + (overlayLines.length + 1) * OVERLAY_TEXT_SIZE * 1.2f);
+            }
+            if (energy != drawnEnergy) {
+                addEnergyArea(region, Math.max(energy, drawnEnergy));
+            }
+        }
+        region.clip(0, 0, screenWidth, screenHeight);
+
+        // The current frame becomes the previous one
+        float[] swapBounds = drawnBounds;
+        drawnBounds = frameBounds;
+        frameBounds = swapBounds;
+        int[] swapColors = drawnColors;
+        drawnColors = frameColors;
+        frameColors = swapColors;
+        drawnCount = count;
+        drawnEnergy = energy;
+        drawnGameOver = world.gameOver;
+        fullRedraw = false;
+        return region;
+    }
+
+    /**
+     * Repaints the areas found by the preceding collectDirty() call. The surface may hand
+     * out a larger area than was asked for; then all of it is repainted.
+     * @param world Snapshot passed to collectDirty()
+     * @param target Surface to draw on
+     * @param alpha Value passed to collectDirty()
+     * @param left Left edge of the area the surface has to have repainted
+     * @param top Top edge of that area
+     * @param right Right edge of that area, exclusive
+     * @param bottom Bottom edge of that area, exclusive
+     */
+    public void renderDirty(WorldSnapshot world, RenderTarget target, float alpha,
+                            int left, int top, int right, int bottom) {
+        DirtyRegion region = dirty;
+        if (region.isEmpty() || left < region.getBoundsLeft() || top < region.getBoundsTop()
+                || right > region.getBoundsRight() || bottom > region.getBoundsBottom()) {
+            region.set(left, top, right, bottom);
+        }
+        for (int i = 0; i < region.size(); i++) {
+            int l = region.getLeft(i);
+            int t = region.getTop(i);
+            int r = region.getRight(i);
+            int b = region.getBottom(i);
+            target.clipRect(l, t, r, b);
+            target.clear(BACKGROUND_COLOR);
+            drawScene(world, target, alpha, l, t, r, b);
+            target.restoreClip();
+        }
+    }
+
+    // Draws everything that reaches into the given area, in the usual order
+    private void drawScene(WorldSnapshot world, RenderTarget target, float alpha,
+                           float left, float top, float right, float bottom) {
+        if (batchedBalls) {
+            drawBallBatches(world, target, alpha, left, top, right, bottom);
+        } else {
+            drawBallCircles(world, target, alpha, left, top, right, bottom);
+        }
+        for (int c = 0; c < world.catCount; c++) {
+            float catLeft = catLeft(world, c, alpha);
+            float catTop = catTop(world, c, alpha);
+            if (catLeft < right && catLeft + world.catWidth > left
+                    && catTop < bottom && catTop + world.catHeight > top) {
+                target.drawImage(RenderTarget.IMAGE_CAT, catLeft, catTop);
+            }
+        }
+        drawEnergy(world, target);
+        if (world.gameOver) {
+            target.drawImage(RenderTarget.IMAGE_END_SPLASH, 0, 0, screenWidth, screenHeight);
+            target.drawText(END_TEXT, 0, END_TEXT.length, screenWidth / 4, screenHeight / 2,
+                    RenderTarget.TEXT_END);
+        }
+        target.drawText(scoreText.getChars(), 0, scoreText.length(), scoreX, scoreY,
+                RenderTarget.TEXT_SCORE);
+        if (shownOverlay) {
+            drawMetrics(target);
+        }
+    }
+
+    private static float catLeft(WorldSnapshot world, int cat, float alpha) {
+        return world.catPrevX[cat] + (world.catX[cat] - world.catPrevX[cat]) * alpha;
+    }
+
+    private static float catTop(WorldSnapshot world, int cat, float alpha) {
+        return world.catPrevY[cat] + (world.catY[cat] - world.catPrevY[cat]) * alpha;
+    }
+
+    // Brings the score and overlay text up to date, once per frame
+    private void updateHud(WorldSnapshot world) {
+        long score = (long) world.points;
+        scoreChanged = score != shownScore;
+        previousScoreLength = scoreText.length();
+        if (scoreChanged) {
+            scoreText.clear().append(SCORE_PREFIX).append(score);
+            shownScore = score;
+        }
+        boolean overlay = metricsOverlay && metrics != null;
+        overlayChanged = overlay != shownOverlay;
+        shownOverlay = overlay;
+        if (overlay && ++overlayFrames >= overlayRefreshFrames) {
+            overlayFrames = 0;
+            overlayChanged = true;
+            FrameMetrics.Snapshot snapshot = overlaySnapshot;
+            metrics.snapshot(snapshot);
+            FrameMetrics.Snapshot.appendStats(overlayLines[0].clear().append("update us "), snapshot.update);
+            FrameMetrics.Snapshot.appendStats(overlayLines[1].clear().append("draw us "), snapshot.draw);
+            FrameMetrics.Snapshot.appendStats(overlayLines[2].clear().append("oversleep us "), snapshot.overshoot);
+            overlayLines[3].clear().append("steps ").append(snapshot.steps.p50).append('/')
+                    .append(snapshot.steps.max).append(" slow ").append(snapshot.slowFrames)
+                    .append(" balls ").append(snapshot.liveBalls)
+                    .append(" heap ").append(snapshot.heapUsed / 1024).append('k');
+        }
+    }
+
+    private void drawBallCircles(WorldSnapshot world, RenderTarget target, float alpha,
+                                 float left, float top, float right, float bottom) {
+        float[] x = world.x;
+        float[] y = world.y;
+        float[] prevX = world.prevX;
+        float[] prevY = world.prevY;
+        for (int i = 0, count = world.ballCount; i < count; i++) {
+            float cx = prevX[i] + (x[i] - prevX[i]) * alpha;
+            float cy = prevY[i] + (y[i] - prevY[i]) * alpha;
+            float r = world.radius[i];
+            if (cx - r < right && cx + r > left && cy - r < bottom && cy + r > top) {
+                target.drawCircle(cx, cy, r, world.color[i]);
+            }
+        }
+    }
+
+    private void drawBallBatches(WorldSnapshot world, RenderTarget target, float alpha,
+                                 float left, float top, float right, float bottom) {
+        float[] x = world.x;
+        float[] y = world.y;
+        float[] prevX = world.prevX;
+        float[] prevY = world.prevY;
+        BallBatch batch = ballBatch;
+        batch.clear();
+        for (int i = 0, count = world.ballCount; i < count; i++) {
+            float cx = prevX[i] + (x[i] - prevX[i]) * alpha;
+            float cy = prevY[i] + (y[i] - prevY[i]) * alpha;
+            float r = world.radius[i];
+            if (cx - r >= right || cx + r <= left || cy - r >= bottom || cy + r <= top) {
+                continue;
+            }
+            if (batch.isFull()) {
+                target.drawBalls(batch);
+                batch.clear();
+            }
+            batch.add(cx, cy, r, world.color[i]);
+        }
+        if (batch.size() > 0) {
+            target.drawBalls(batch);
+        }
+    }
+
+    private void drawMetrics(RenderTarget target) {
+        for (int i = 0; i < overlayLines.length; i++) {
+            TextBuffer line = overlayLines[i];
+            target.drawText(line.getChars(), 0, line.length(), scoreX,
+                    scoreY + (i + 1) * OVERLAY_TEXT_SIZE * 1.2f, RenderTarget.TEXT_OVERLAY);
+        }
+    }
+
+    private void drawEnergy(WorldSnapshot world, RenderTarget target) {
+        int eX, eY;
+        float catHits = (float) world.catHits;
+        if (screenWidth > screenHeight) {
+            eX = energyBarThickness;
+            eY = screenHeight - energyBarThickness;
+            target.drawRect(eX, eY, eX + catHits, eY + energyBarThickness, ENERGY_COLOR);
+        } else {
+            eX = screenWidth - energyBarThickness;
+            eY = energyBarThickness;
+            target.drawRect(eX, eY, eX + energyBarThickness, eY + catHits, ENERGY_COLOR);
+        }
+    }
+
+    private void addEnergyArea(DirtyRegion region, float length) {
+        if (screenWidth > screenHeight) {
+            int eX = energyBarThickness;
+            int eY = screenHeight - energyBarThickness;
+            region.add(eX, eY, eX + length, eY + energyBarThickness);
+        } else {
+            int eX = screenWidth - energyBarThickness;
+            int eY = energyBarThickness;
+            region.add(eX, eY, eX + energyBarThickness, eY + length);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.sakari.firstgame;
+
+/**
+ * Copy of everything the renderer needs from a GameWorld at the end of a tick. The
+ * simulation thread fills a snapshot and hands it to the render thread through a
+ * SnapshotExchange, so drawing never reads the live world. Buffers only grow, so
+ * capturing allocates nothing once they have reached the peak ball count.
+ */
+public class WorldSnapshot {
+    public float[] x = new float[0]; // ball X coordinates
+    public float[] y = new float[0]; // ball Y coordinates
+    public float[] prevX = new float[0]; // ball X coordinates one tick earlier
+    public float[] prevY = new float[0]; // ball Y coordinates one tick earlier
+    public float[] radius = new float[0]; // ball radii
+    public int[] color = new int[0]; // ball colors
+    public int ballCount; // balls in the snapshot
+    public final int[] catX = new int[GameWorld.MAX_CATS]; // cat top-left corners
+    public final int[] catY = new int[GameWorld.MAX_CATS];
+    public final int[] catPrevX = new int[GameWorld.MAX_CATS]; // cat top-left corners one tick earlier
+    public final int[] catPrevY = new int[GameWorld.MAX_CATS];
+    public int catCount; // cats in the snapshot
+    public float catWidth, catHeight; // cat size, the same for every cat
+    public double points; // score
+    public double catHits; // remaining energy
+    public boolean gameOver; // whether the game has ended
+    public long tick; // world tick the snapshot was taken at
+    public long publishNanos; // System.nanoTime when the tick was published
+
+    /**
+     * Copies the current state of the world into this snapshot.
+     */
+    public void capture(GameWorld world) {
+        capture(world, 1);
+    }
+
+    /**
+     * Copies the current state of the world into this snapshot, with flashing balls
+     * changing color only every flashPeriod ticks. The world itself flashes every tick;
+     * only what is drawn changes less often.
+     */
+    public void capture(GameWorld world, int flashPeriod) {
+        BallPool balls = world.getBalls();
+        int count = balls.size();
+        if (x.length < count) {
+            int capacity = balls.capacity();
+            x = new float[capacity];
+            y = new float[capacity];
+            prevX = new float[capacity];
+            prevY = new float[capacity];
+            radius = new float[capacity];
+            color = new int[capacity];
+        }
+        System.arraycopy(balls.x, 0, x, 0, count);
+        System.arraycopy(balls.y, 0, y, 0, count);
+        System.arraycopy(balls.prevX, 0, prevX, 0, count);
+        System.arraycopy(balls.prevY, 0, prevY, 0, count);
+        System.arraycopy(balls.radius, 0, radius, 0, count);
+        System.arraycopy(balls.color, 0, color, 0, count);
+        if (flashPeriod > 1) {
+            long flashTick = world.getTick() - world.getTick() % flashPeriod;
+            for (int i = 0; i < count; i++) {
+                if (balls.isCollectible(i)) {
+                    color[i] = BallPalette.flash(flashTick, i);
+                }
+            }
+        }
+        ballCount = count;
+        catCount = world.getCatCount();
+        for (int c = 0; c < catCount; c++) {
+            CharacterSprite cat = world.getCat(c);
+            catX[c] = cat.getX();
+            catY[c] = cat.getY();
+            catPrevX[c] = cat.getPrevX();
+            catPrevY[c] = cat.getPrevY();
+        }
+        catWidth = world.getCharacterSprite().getWidth();
+        catHeight = world.getCharacterSprite().getHeight();
+        points = world.getPoints();
+        catHits = world.getCatHits();
+        gameOver = world.isGameOver();
+        tick = world.getTick();
+    }
+}
@@ -0,0 +1,24 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The autopilot steering a world without a player. Whole headless games with it are
+ * tested next to the headless tools, in HeadlessToolsTest.
+ */
+public class AutopilotControllerTest {
+
+    @Test
+    public void autopilot_steersEveryCat() {
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 9, new GameRules().setCats(3));
+        for (int i = 0; i < 200; i++) {
+            world.addBall(i % 10 == 0);
+        }
+        new AutopilotController().control(world);
+        for (int c = 0; c < 3; c++) {
+            assertTrue(world.isTouching(c));
+        }
+    }
+}
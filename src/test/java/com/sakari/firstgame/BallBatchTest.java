@@ -0,0 +1,168 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that drawing balls in atlas batches puts the same circles on screen as drawing
+ * them one by one. Each quad of a batch is decoded back into the circle it shows.
+ */
+public class BallBatchTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Test
+    public void batchedBalls_drawSameCirclesAsSingleCircles() {
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 124, 117, 99);
+        for (int i = 0; i < 300; i++) {
+            world.addBall(i % 7 == 0);
+        }
+        for (int i = 0; i < 200; i++) {
+            world.step();
+        }
+        WorldSnapshot snapshot = new WorldSnapshot();
+        snapshot.capture(world);
+        assertTrue(snapshot.ballCount > 0);
+
+        assertSameCircles(snapshot, 0.3f);
+    }
+
+    @Test
+    public void batchedBalls_splitLargeFramesIntoSeveralBatches() {
+        WorldSnapshot snapshot = new WorldSnapshot();
+        GameRandom random = new GameRandom(5);
+        int count = BallBatch.MAX_BALLS * 2 + 10;
+        snapshot.x = new float[count];
+        snapshot.y = new float[count];
+        snapshot.prevX = new float[count];
+        snapshot.prevY = new float[count];
+        snapshot.radius = new float[count];
+        snapshot.color = new int[count];
+        for (int i = 0; i < count; i++) {
+            snapshot.x[i] = random.nextFloat() * WIDTH;
+            snapshot.y[i] = random.nextFloat() * HEIGHT;
+            snapshot.prevX[i] = snapshot.x[i] - 3;
+            snapshot.prevY[i] = snapshot.y[i] + 3;
+            snapshot.radius[i] = random.nextFloat() * 300;
+            snapshot.color[i] = random.nextInt(Integer.MAX_VALUE) | 0xff000000;
+        }
+        snapshot.ballCount = count;
+
+        RecordingTarget batched = render(snapshot, true, 0.5f);
+        assertEquals(3, batched.batches);
+        assertSameCircles(snapshot, 0.5f);
+    }
+
+    @Test
+    public void atlas_bucketHoldsRadius() {
+        assertEquals(0, SpriteAtlas.bucketFor(0));
+        assertEquals(0, SpriteAtlas.bucketFor(4));
+        assertEquals(1, SpriteAtlas.bucketFor(4.5f));
+        assertEquals(SpriteAtlas.BUCKET_RADII.length - 1, SpriteAtlas.bucketFor(1000));
+        int last = SpriteAtlas.BUCKET_RADII.length - 1;
+        assertEquals(SpriteAtlas.WIDTH, SpriteAtlas.cellLeft(last) + SpriteAtlas.cellSize(last));
+    }
+
+    private static void assertSameCircles(WorldSnapshot snapshot, float alpha) {
+        List<float[]> single = render(snapshot, false, alpha).circles;
+        List<float[]> batched = render(snapshot, true, alpha).circles;
+        assertEquals(single.size(), batched.size());
+        for (int i = 0; i < single.size(); i++) {
+            float[] expected = single.get(i);
+            float[] actual = batched.get(i);
+            for (int k = 0; k < 3; k++) {
+                assertEquals("ball " + i + " value " + k, expected[k], actual[k],
+                        1e-3f * Math.max(1, Math.abs(expected[k])));
+            }
+            assertEquals("ball " + i + " color", Float.floatToIntBits(expected[3]),
+                    Float.floatToIntBits(actual[3]));
+        }
+    }
+
+    private static RecordingTarget render(WorldSnapshot snapshot, boolean batched, float alpha) {
+        WorldRenderer renderer = new WorldRenderer(WIDTH, HEIGHT);
+        renderer.setBatchedBalls(batched);
+        RecordingTarget target = new RecordingTarget();
+        renderer.render(snapshot, target, alpha);
+        return target;
+    }
+
+    // Keeps every ball drawn as {cx, cy, radius, color bits}
+    private static class RecordingTarget implements RenderTarget {
+        final List<float[]> circles = new ArrayList<>();
+        int batches;
+
+        @Override
+        public void clear(int color) {
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, int color) {
+            circles.add(new float[] {cx, cy, radius, Float.intBitsToFloat(color)});
+        }
+
+        @Override
+        public void drawBalls(BallBatch batch) {
+            batches++;
+            float[] p = batch.vertices;
+            float[] t = batch.texCoords;
+            assertEquals(batch.size() * 6, batch.getIndexCount());
+            for (int i = 0; i < batch.size(); i++) {
+                int v = i * 8;
+                int bucket = bucketAt(t[v]);
+                assertEquals(SpriteAtlas.cellSize(bucket), t[v + 4] - t[v], 0);
+                float bucketRadius = SpriteAtlas.BUCKET_RADII[bucket];
+                float half = (p[v + 4] - p[v]) / 2;
+                float radius = half * bucketRadius / (bucketRadius + SpriteAtlas.PADDING);
+                int color = batch.colors[i * 4];
+                for (int c = 1; c < 4; c++) {
+                    assertEquals(color, batch.colors[i * 4 + c]);
+                }
+                // Quad indices must form the two triangles of this ball's corners
+                int corner = i * 4;
+                assertEquals(corner, batch.indices[i * 6] & 0xffff);
+                assertEquals(corner + 3, batch.indices[i * 6 + 5] & 0xffff);
+                circles.add(new float[] {(p[v] + p[v + 4]) / 2, (p[v + 1] + p[v + 5]) / 2, radius,
+                        Float.intBitsToFloat(color)});
+            }
+        }
+
+        private static int bucketAt(float u) {
+            for (int b = 0; b < SpriteAtlas.BUCKET_RADII.length; b++) {
+                if (SpriteAtlas.cellLeft(b) == u) {
+                    return b;
+                }
+            }
+            fail("texture coordinate outside every cell: " + u);
+            return -1;
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, int color) {
+        }
+
+        @Override
+        public void drawImage(int image, float left, float top) {
+        }
+
+        @Override
+        public void drawImage(int image, float left, float top, float right, float bottom) {
+        }
+
+        @Override
+        public void drawText(char[] text, int start, int count, float x, float y, int style) {
+        }
+
+        @Override
+        public void clipRect(int left, int top, int right, int bottom) {
+        }
+
+        @Override
+        public void restoreClip() {
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Property tests of the batch ball integrator against the original per-ball movement in
+ * BallPool.update(), over many randomly generated balls.
+ */
+public class BallIntegratorTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int CASES = 20000;
+
+    @Test
+    public void interiorMotion_matchesOriginalMovement() {
+        GameRandom random = new GameRandom(1);
+        BallPool original = new BallPool();
+        BallPool batch = new BallPool();
+        for (int n = 0; n < CASES; n++) {
+            // Whole velocities and positions clear of the walls, as balls spawn
+            int r = 1 + random.nextInt(65);
+            int v = 15;
+            addBall(original, r + v + 1 + random.nextInt(WIDTH - 2 * (r + v + 1)),
+                    r + v + 1 + random.nextInt(HEIGHT - 2 * (r + v + 1)),
+                    random.nextInt(2 * v) - v, random.nextInt(2 * v) - v, r, random.nextInt(2) == 0);
+            copyLast(original, batch);
+        }
+        for (int i = 0; i < original.size(); i++) {
+            original.update(i, WIDTH, HEIGHT);
+        }
+        BallIntegrator.integrate(batch, WIDTH, HEIGHT);
+        for (int i = 0; i < original.size(); i++) {
+            assertEquals(original.x[i], batch.x[i], 0);
+            assertEquals(original.y[i], batch.y[i], 0);
+            assertEquals(original.vx[i], batch.vx[i], 0);
+            assertEquals(original.vy[i], batch.vy[i], 0);
+            assertEquals(original.radius[i], batch.radius[i], 0);
+        }
+    }
+
+    @Test
+    public void wallHits_bounceLikeOriginalAndStayInside() {
+        GameRandom random = new GameRandom(2);
+        BallPool original = new BallPool();
+        BallPool batch = new BallPool();
+        for (int n = 0; n < CASES; n++) {
+            float r = 1 + random.nextFloat() * 100;
+            float vx = (random.nextFloat() - 0.5f) * 60;
+            float vy = (random.nextFloat() - 0.5f) * 60;
+            // Anywhere from just inside to a full velocity step past each wall
+            float x = r + random.nextFloat() * (WIDTH - 2 * r);
+            float y = r + random.nextFloat() * (HEIGHT - 2 * r);
+            addBall(original, x, y, vx, vy, r, random.nextInt(2) == 0);
+            copyLast(original, batch);
+        }
+        for (int i = 0; i < original.size(); i++) {
+            original.update(i, WIDTH, HEIGHT);
+        }
+        float[] startX = new float[batch.size()];
+        float[] startY = new float[batch.size()];
+        float[] startVx = batch.vx.clone();
+        float[] startVy = batch.vy.clone();
+        float[] startR = batch.radius.clone();
+        System.arraycopy(batch.x, 0, startX, 0, batch.size());
+        System.arraycopy(batch.y, 0, startY, 0, batch.size());
+        BallIntegrator.integrate(batch, WIDTH, HEIGHT);
+
+        for (int i = 0; i < batch.size(); i++) {
+            float r = startR[i];
+            // Speed is kept exactly, only the direction flips
+            assertEquals(Math.abs(startVx[i]), Math.abs(batch.vx[i]), 0);
+            assertEquals(Math.abs(startVy[i]), Math.abs(batch.vy[i]), 0);
+            // Balls always end inside the area, unlike with the one pixel nudge
+            assertTrue(batch.x[i] >= r && batch.x[i] <= WIDTH - r);
+            assertTrue(batch.y[i] >= r && batch.y[i] <= HEIGHT - r);
+            // A ball that went through a wall bounces, as in the original
+            float px = startX[i] + startVx[i];
+            if (px < r) {
+                assertTrue(batch.vx[i] >= 0);
+                assertEquals(2 * r - px, batch.x[i], 1e-3f);
+            } else if (px > WIDTH - r) {
+                assertTrue(batch.vx[i] <= 0);
+                assertEquals(2 * (WIDTH - r) - px, batch.x[i], 1e-3f);
+            } else {
+                assertEquals(startVx[i], batch.vx[i], 0);
+                assertEquals(px, batch.x[i], 0);
+            }
+            float py = startY[i] + startVy[i];
+            if (py < r) {
+                assertTrue(batch.vy[i] >= 0);
+            } else if (py > HEIGHT - r) {
+                assertTrue(batch.vy[i] <= 0);
+            } else {
+                assertEquals(startVy[i], batch.vy[i], 0);
+            }
+            // Growth happens exactly as before
+            assertEquals(original.radius[i], batch.radius[i], 0);
+        }
+    }
+
+    @Test
+    public void longRun_keepsBallsInsideAndMoving() {
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 124, 117, 8);
+        for (int i = 0; i < 500; i++) {
+            world.addBall(false);
+        }
+        BallPool balls = world.getBalls();
+        float[] speed = new float[balls.size()];
+        for (int i = 0; i < speed.length; i++) {
+            speed[i] = Math.abs(balls.vx[i]) + Math.abs(balls.vy[i]);
+        }
+        for (int tick = 0; tick < 5000; tick++) {
+            BallIntegrator.integrate(balls, WIDTH, HEIGHT);
+        }
+        for (int i = 0; i < speed.length; i++) {
+            float r = balls.radius[i];
+            assertTrue(balls.x[i] >= r && balls.x[i] <= WIDTH - r);
+            assertTrue(balls.y[i] >= r && balls.y[i] <= HEIGHT - r);
+            assertEquals(speed[i], Math.abs(balls.vx[i]) + Math.abs(balls.vy[i]), 0);
+        }
+    }
+
+    private static void addBall(BallPool pool, float x, float y, float vx, float vy, float r,
+                                boolean collectible) {
+        int i = pool.acquire();
+        pool.x[i] = x;
+        pool.y[i] = y;
+        pool.vx[i] = vx;
+        pool.vy[i] = vy;
+        pool.radius[i] = r;
+        if (collectible) {
+            pool.flags[i] |= BallPool.FLAG_COLLECTIBLE;
+            pool.growth[i] = BallPool.COLLECTIBLE_GROWTH;
+        }
+    }
+
+    private static void copyLast(BallPool from, BallPool to) {
+        int i = from.size() - 1;
+        addBall(to, from.x[i], from.y[i], from.vx[i], from.vy[i], from.radius[i],
+                from.isCollectible(i));
+    }
+}
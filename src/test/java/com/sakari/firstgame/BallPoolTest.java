@@ -0,0 +1,58 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Acquire and release of pooled balls, and the pool size limit.
+ */
+public class BallPoolTest {
+
+    @Test
+    public void acquire_stopsAtMaxCapacity() {
+        BallPool pool = new BallPool(4, 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, pool.acquire());
+        }
+        assertEquals(-1, pool.acquire());
+        assertEquals(10, pool.size());
+        assertEquals(10, pool.capacity());
+
+        // A released slot can be taken again
+        new BallThing(pool, 3).setAlive(false);
+        assertEquals(1, pool.releaseDead());
+        assertEquals(9, pool.acquire());
+    }
+
+    @Test
+    public void releaseDead_keepsLiveBalls() {
+        BallPool pool = new BallPool();
+        for (int i = 0; i < 20; i++) {
+            pool.x[pool.acquire()] = i;
+        }
+        BallThing ball = new BallThing(pool, 0);
+        for (int i = 0; i < 20; i += 3) {
+            ball.at(i).setAlive(false);
+        }
+        assertEquals(7, pool.releaseDead());
+        assertEquals(13, pool.size());
+        float sum = 0;
+        for (int i = 0; i < pool.size(); i++) {
+            assertTrue(pool.isAlive(i));
+            assertTrue(pool.x[i] % 3 != 0);
+            sum += pool.x[i];
+        }
+        assertEquals(190 - (0 + 3 + 6 + 9 + 12 + 15 + 18), sum, 0);
+    }
+
+    @Test
+    public void gameWorld_skipsSpawnsWhenFull() {
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 3, new GameRules().setMaxBalls(50));
+        for (int i = 0; i < 80; i++) {
+            world.addBall(i % 2 == 0);
+        }
+        assertEquals(50, world.getBalls().size());
+        assertEquals(50, world.getBalls().capacity());
+    }
+}
@@ -0,0 +1,183 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Paints frames into a small software framebuffer and checks that repainting only the
+ * dirty areas of each frame leaves exactly the same pixels as repainting every frame
+ * whole.
+ */
+public class DirtyRedrawTest {
+    private static final int WIDTH = 360;
+    private static final int HEIGHT = 640;
+    private static final int CAT = 24;
+
+    @Test
+    public void dirtyFrames_matchFullFrames() {
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, CAT, CAT, 11);
+        for (int i = 0; i < 6; i++) {
+            world.addBall(i % 3 == 0);
+        }
+        GameRandom script = new GameRandom(3);
+        WorldSnapshot snapshot = new WorldSnapshot();
+        WorldRenderer full = new WorldRenderer(WIDTH, HEIGHT);
+        WorldRenderer incremental = new WorldRenderer(WIDTH, HEIGHT);
+        full.setBatchedBalls(false);
+        incremental.setBatchedBalls(false);
+        RasterTarget fullPixels = new RasterTarget();
+        RasterTarget dirtyPixels = new RasterTarget();
+        long dirtyArea = 0;
+        int frames = 0;
+
+        for (int tick = 0; tick < 300 && !world.isGameOver(); tick++) {
+            if (script.nextInt(20) == 0) {
+                world.setTouch(script.nextInt(WIDTH), script.nextInt(HEIGHT));
+            }
+            world.step();
+            snapshot.capture(world);
+            // A couple of frames per tick, as the render thread draws between ticks
+            for (float alpha = 0.25f; alpha <= 1; alpha += 0.5f) {
+                full.render(snapshot, fullPixels, alpha);
+                DirtyRegion region = incremental.collectDirty(snapshot, alpha);
+                if (!region.isEmpty()) {
+                    incremental.renderDirty(snapshot, dirtyPixels, alpha,
+                            region.getBoundsLeft(), region.getBoundsTop(),
+                            region.getBoundsRight(), region.getBoundsBottom());
+                    dirtyArea += region.getArea();
+                }
+                frames++;
+                assertArrayEquals("frame " + frames, fullPixels.pixels, dirtyPixels.pixels);
+            }
+        }
+        assertTrue("dirty frames repainted the whole screen",
+                dirtyArea < (long) frames * WIDTH * HEIGHT / 2);
+    }
+
+    @Test
+    public void unchangedFrame_hasNothingDirty() {
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, CAT, CAT, 5);
+        world.step();
+        WorldSnapshot snapshot = new WorldSnapshot();
+        snapshot.capture(world);
+        WorldRenderer renderer = new WorldRenderer(WIDTH, HEIGHT);
+        assertEquals((long) WIDTH * HEIGHT, renderer.collectDirty(snapshot, 1).getArea());
+        assertTrue(renderer.collectDirty(snapshot, 1).isEmpty());
+    }
+
+    @Test
+    public void region_mergesOverlapsAndStaysSmall() {
+        DirtyRegion region = new DirtyRegion(4);
+        region.add(0, 0, 10, 10);
+        region.add(5, 5, 20, 20);
+        assertEquals(1, region.size());
+        assertEquals(400, region.getArea());
+        for (int i = 0; i < 10; i++) {
+            region.add(100 + i * 50, 100, 110 + i * 50, 110);
+        }
+        assertEquals(4, region.size());
+        for (int i = 0; i < region.size(); i++) {
+            for (int j = i + 1; j < region.size(); j++) {
+                boolean overlap = region.getLeft(i) < region.getRight(j) && region.getLeft(j) < region.getRight(i)
+                        && region.getTop(i) < region.getBottom(j) && region.getTop(j) < region.getBottom(i);
+                assertFalse(overlap);
+            }
+        }
+        region.clip(0, 0, 50, 50);
+        assertEquals(1, region.size());
+    }
+
+    // Paints every call as flat pixels; images and text become solid boxes
+    private static class RasterTarget implements RenderTarget {
+        final int[] pixels = new int[WIDTH * HEIGHT];
+        int clipLeft, clipTop, clipRight = WIDTH, clipBottom = HEIGHT;
+
+        @Override
+        public void clear(int color) {
+            fill(clipLeft, clipTop, clipRight, clipBottom, color);
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, int color) {
+            int l = Math.max(clipLeft, (int) Math.floor(cx - radius));
+            int r = Math.min(clipRight, (int) Math.ceil(cx + radius));
+            int t = Math.max(clipTop, (int) Math.floor(cy - radius));
+            int b = Math.min(clipBottom, (int) Math.ceil(cy + radius));
+            for (int y = t; y < b; y++) {
+                for (int x = l; x < r; x++) {
+                    float dx = x + 0.5f - cx;
+                    float dy = y + 0.5f - cy;
+                    if (dx * dx + dy * dy <= radius * radius) {
+                        pixels[y * WIDTH + x] = color;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void drawBalls(BallBatch batch) {
+            fail("balls are drawn as circles in this test");
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, int color) {
+            fill(Math.round(left), Math.round(top), Math.round(right), Math.round(bottom), color);
+        }
+
+        @Override
+        public void drawImage(int image, float left, float top) {
+            drawRect(left, top, left + CAT, top + CAT, 0xff808000 + image);
+        }
+
+        @Override
+        public void drawImage(int image, float left, float top, float right, float bottom) {
+            drawRect(left, top, right, bottom, 0xff808000 + image);
+        }
+
+        @Override
+        public void drawText(char[] text, int start, int count, float x, float y, int style) {
+            int size = style == TEXT_SCORE ? WorldRenderer.SCORE_TEXT_SIZE : WorldRenderer.END_TEXT_SIZE;
+            int hash = Arrays.hashCode(Arrays.copyOfRange(text, start, start + count));
+            drawRect(x, y - size * 0.8f, x + count * size * 0.6f, y + size / 4, 0xff000000 | hash);
+        }
+
+        @Override
+        public void clipRect(int left, int top, int right, int bottom) {
+            clipLeft = left;
+            clipTop = top;
+            clipRight = right;
+            clipBottom = bottom;
+        }
+
+        @Override
+        public void restoreClip() {
+            clipLeft = 0;
+            clipTop = 0;
+            clipRight = WIDTH;
+            clipBottom = HEIGHT;
+        }
+
+        private void fill(int l, int t, int r, int b, int color) {
+            if (r < l) {
+                int swap = l;
+                l = r;
+                r = swap;
+            }
+            if (b < t) {
+                int swap = t;
+                t = b;
+                b = swap;
+            }
+            l = Math.max(l, clipLeft);
+            t = Math.max(t, clipTop);
+            r = Math.min(r, clipRight);
+            b = Math.min(b, clipBottom);
+            for (int y = t; y < b; y++) {
+                Arrays.fill(pixels, y * WIDTH + l, Math.max(y * WIDTH + l, y * WIDTH + r), color);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the rectangles of a dirty region never overlap, however they were added,
+ * and still cover everything added.
+ */
+public class DirtyRegionTest {
+
+    @Test
+    public void add_mergesTransitively() {
+        DirtyRegion region = new DirtyRegion(8);
+        region.add(0, 20, 10, 30);
+        region.add(5, 0, 15, 10);
+        // Overlaps only the second, but grown by it reaches the first as well
+        region.add(12, 5, 20, 25);
+        assertEquals(1, region.size());
+        assertRect(region, 0, 0, 0, 20, 30);
+        assertNoOverlaps(region);
+    }
+
+    @Test
+    public void add_keepsApartRectanglesApart() {
+        DirtyRegion region = new DirtyRegion(8);
+        region.add(0, 0, 10, 10);
+        region.add(10, 0, 20, 10); // touching is not overlapping
+        region.add(30.5f, 40.2f, 35.1f, 45.9f);
+        assertEquals(3, region.size());
+        assertEquals(100 + 100 + 6 * 6, region.getArea());
+        assertNoOverlaps(region);
+    }
+
+    @Test
+    public void add_foldsOnceFull() {
+        DirtyRegion region = new DirtyRegion(3);
+        region.add(0, 0, 10, 10);
+        region.add(100, 0, 110, 10);
+        region.add(200, 0, 210, 10);
+        // Closest to the first: growing it is cheapest, and the result overlaps nothing
+        region.add(12, 0, 20, 10);
+        assertEquals(3, region.size());
+        assertEquals(200 + 100 + 100, region.getArea());
+
+        // Folding into the cheapest one can reach another, which is merged in turn
+        region = new DirtyRegion(3);
+        region.add(0, 0, 10, 10);
+        region.add(12, 5, 14, 200);
+        region.add(500, 0, 510, 10);
+        region.add(15, 0, 20, 4);
+        assertEquals(2, region.size());
+        assertNoOverlaps(region);
+        assertEquals(0, region.getBoundsLeft());
+        assertEquals(510, region.getBoundsRight());
+        assertEquals(200, region.getBoundsBottom());
+        assertEquals(20 * 200 + 10 * 10, region.getArea());
+    }
+
+    @Test
+    public void clip_limitsAndDropsRectangles() {
+        DirtyRegion region = new DirtyRegion(8);
+        region.add(-10, -10, 20, 20);
+        region.add(50, 50, 60, 60);
+        region.add(200, 0, 220, 10);
+        region.clip(0, 0, 100, 100);
+        assertEquals(2, region.size());
+        assertEquals(20 * 20 + 10 * 10, region.getArea());
+        assertEquals(0, region.getBoundsLeft());
+        assertEquals(0, region.getBoundsTop());
+        assertEquals(60, region.getBoundsRight());
+
+        region.clip(70, 70, 100, 100);
+        assertTrue(region.isEmpty());
+    }
+
+    private static void assertRect(DirtyRegion region, int i, int l, int t, int r, int b) {
+        assertEquals(l, region.getLeft(i));
+        assertEquals(t, region.getTop(i));
+        assertEquals(r, region.getRight(i));
+        assertEquals(b, region.getBottom(i));
+    }
+
+    private static void assertNoOverlaps(DirtyRegion region) {
+        for (int i = 0; i < region.size(); i++) {
+            for (int j = i + 1; j < region.size(); j++) {
+                boolean overlap = region.getLeft(i) < region.getRight(j)
+                        && region.getLeft(j) < region.getRight(i)
+                        && region.getTop(i) < region.getBottom(j)
+                        && region.getTop(j) < region.getBottom(i);
+                assertFalse("rectangles " + i + " and " + j + " overlap", overlap);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The event stream of a game: readers of the ring buffer and the score derived from the
+ * events. The binary event log is tested next to it, in GameEventLogTest.
+ */
+public class GameEventsTest {
+
+    @Test
+    public void reader_countsOverwrittenEventsAsLost() {
+        GameEvents events = new GameEvents(8);
+        GameEvents.Reader reader = events.newReader();
+        Sum sum = new Sum();
+        for (int i = 0; i < 20; i++) {
+            events.emit(GameEvents.SPAWN, i, -1, 0, i, 0);
+        }
+        assertEquals(8, reader.available());
+        assertEquals(8, reader.drainTo(sum));
+        assertEquals(12, reader.getLost());
+        // Only the latest eight events are left: 12 + 13 + ... + 19
+        assertEquals(124, sum.points, 0);
+        assertEquals(0, reader.drainTo(sum));
+    }
+
+    @Test
+    public void score_isTheSumOfTheEvents() {
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 21,
+                new GameRules().setCats(2).setStartEnergy(300));
+        GameEvents.Reader reader = world.getEvents().newReader();
+        Sum sum = new Sum();
+        sum.energy = 300;
+        AutopilotController autopilot = new AutopilotController();
+        while (!world.isGameOver()) {
+            autopilot.control(world);
+            world.step();
+            reader.drainTo(sum);
+            assertEquals(sum.points, world.getPoints(), 0);
+            assertEquals(sum.energy, world.getCatHits(), 0);
+        }
+        assertEquals(0, reader.getLost());
+        assertEquals(1, sum.deaths);
+        assertTrue(sum.collects > 0);
+        assertEquals(sum.collects, world.getScore().getCollects());
+        assertEquals(world.getScore().getCatPoints(0) + world.getScore().getCatPoints(1),
+                sum.collectPoints, 0);
+    }
+
+    // Adds up events the way a consumer of the stream would
+    private static class Sum implements GameEventListener {
+        static final int MAX_ENERGY = new GameRules().getMaxEnergy();
+        double points;
+        double energy;
+        double collectPoints;
+        long collects;
+        long deaths;
+
+        @Override
+        public void onEvent(byte type, long tick, int cat, int value, int points, int energy) {
+            this.points += points;
+            this.energy = Math.min(MAX_ENERGY, this.energy + energy);
+            if (type == GameEvents.COLLECT) {
+                collects++;
+                collectPoints += points;
+            } else if (type == GameEvents.DEATH) {
+                deaths++;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks reading and validating rules profiles, and that rules swapped in between games
+ * play out the same as a world built with them.
+ */
+public class GameRulesTest {
+
+    @Test
+    public void load_readsProfileOverDefaults() throws IOException {
+        GameRules rules = load("# low end\nmaxBalls = 400\ncatFriction=0.25\n");
+        assertEquals(400, rules.getMaxBalls());
+        assertEquals(0.25f, rules.getCatFriction(), 0);
+        assertEquals(new GameRules().getMaxBallRadius(), rules.getMaxBallRadius());
+
+        // A profile written out reads back to the same rules
+        assertEquals(rules.toProfile(), load(rules.toProfile()).toProfile());
+    }
+
+    @Test
+    public void load_rejectsBadProfiles() throws IOException {
+        assertRejected("maxBall=400\n", "Unknown rules key: maxBall");
+        assertRejected("maxBalls=many\n", "Bad value for maxBalls: many");
+        assertRejected("ballsDefaultEdible=yes\n", "Bad value for ballsDefaultEdible: yes");
+        // Every problem is listed, not only the first
+        assertRejected("prizeChance=2\ncats=0\n", "Invalid rules: prizeChance must be 0..1, "
+                + "cats must be 1.." + GameWorld.MAX_CATS);
+    }
+
+    @Test
+    public void reset_swapsRulesBetweenGames() {
+        GameRules dense = new GameRules().setMaxBallRadius(30).setMinimumBallCounter(2)
+                .setMaxBalls(50).setCatMaxVelocity(5).setEnergyGain(300);
+        GameWorld swapped = new GameWorld(1080, 1920, 124, 117, 1);
+        play(swapped, 500);
+        swapped.reset(9, dense);
+        GameWorld fresh = new GameWorld(1080, 1920, 124, 117, 9, dense);
+
+        play(swapped, 3000);
+        play(fresh, 3000);
+        InputReplayTest.assertSameState(fresh, swapped);
+        assertEquals(50, swapped.getBalls().getMaxCapacity());
+        assertEquals(dense.toProfile(), swapped.getRules().toProfile());
+
+        // The cats took the new speed limit too
+        swapped.getCat(0).addVelocity(100, -100);
+        assertEquals(5, swapped.getCat(0).getXVelocity(), 0);
+        assertEquals(-5, swapped.getCat(0).getYVelocity(), 0);
+    }
+
+    @Test
+    public void reset_keepsTheCats() {
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 1);
+        try {
+            world.reset(2, new GameRules().setCats(2));
+            fail("Changed the cat count");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, world.getCatCount());
+        }
+    }
+
+    @Test
+    public void replay_playsWithRecordedRules() {
+        GameWorld recorded = new GameWorld(1080, 1920, 124, 117, 3);
+        InputRecorder recorder = new InputRecorder();
+        recorded.setInputRecorder(recorder);
+        recorded.reset(4, new GameRules().setPrizeChance(0.02).setCatResponsivity(100));
+        play(recorded, 2000);
+        recorder.finish(recorded.getTick());
+
+        InputReplay replay = new InputReplay(recorder.toByteArray());
+        assertEquals(100, replay.getRules().getCatResponsivity());
+        InputReplayTest.assertSameState(recorded, replay.run());
+    }
+
+    // Steps with touches that sweep across the screen, the same for every world
+    private static void play(GameWorld world, int ticks) {
+        for (int i = 0; i < ticks && !world.isGameOver(); i++) {
+            world.setTouch((i * 37) % 1080, (i * 53) % 1920);
+            world.step();
+        }
+    }
+
+    private static GameRules load(String profile) throws IOException {
+        return GameRules.load(new ByteArrayInputStream(profile.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertRejected(String profile, String message) throws IOException {
+        try {
+            load(profile);
+            fail("Accepted " + profile);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a steady-state game tick allocates nothing: touch input, simulation,
+ * snapshot handoff and drawing alike, whole or dirty areas only. Runs the headless world
+ * with a renderer target that discards all drawing.
+ */
+public class HotPathAllocationTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Test
+    public void updateAndDraw_allocateNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 124, 117);
+        WorldRenderer renderer = new WorldRenderer(WIDTH, HEIGHT);
+        WorldRenderer dirtyRenderer = new WorldRenderer(WIDTH, HEIGHT);
+        NullTarget target = new NullTarget();
+        SnapshotExchange snapshots = new SnapshotExchange();
+        InputQueue inputs = new InputQueue(64, 20000000L);
+        world.getBalls().ensureCapacity(1024);
+        for (int i = 0; i < 200; i++) {
+            world.addBall(i % 10 == 0);
+        }
+        world.setTouch(WIDTH / 2, HEIGHT / 2);
+
+        // Warm up so that lazily grown buffers reach their steady size and code is compiled
+        for (int i = 0; i < 2000; i++) {
+            touch(inputs, world, i);
+            world.step();
+            snapshots.getWriteBuffer().capture(world);
+            snapshots.publish();
+            renderer.render(snapshots.latest(), target, 0.5f);
+            drawDirty(dirtyRenderer, snapshots.latest(), target);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 500; i++) {
+            touch(inputs, world, i);
+            world.step();
+            snapshots.getWriteBuffer().capture(world);
+            snapshots.publish();
+            renderer.render(snapshots.latest(), target, 0.5f);
+            drawDirty(dirtyRenderer, snapshots.latest(), target);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("no draw calls were made", target.calls > 0);
+        assertEquals("bytes allocated", 0, allocated);
+    }
+
+    // A few batched touch samples per tick, drained like the simulation thread does
+    private static void touch(InputQueue inputs, GameWorld world, int tick) {
+        long now = tick * 20000000L;
+        for (int k = 0; k < 4; k++) {
+            inputs.offer(InputQueue.TOUCH, WIDTH / 2 + k, HEIGHT / 2 - k, now - k * 4000000L);
+        }
+        inputs.drainTo(world, now);
+    }
+
+    private static void drawDirty(WorldRenderer renderer, WorldSnapshot snapshot, RenderTarget target) {
+        DirtyRegion region = renderer.collectDirty(snapshot, 0.5f);
+        if (!region.isEmpty()) {
+            renderer.renderDirty(snapshot, target, 0.5f, region.getBoundsLeft(), region.getBoundsTop(),
+                    region.getBoundsRight(), region.getBoundsBottom());
+        }
+    }
+
+    @Test
+    public void restart_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 124, 117, 1);
+        InputRecorder recorder = new InputRecorder();
+        world.setInputRecorder(recorder);
+
+        // Every game is played until its balls have spawned; the first ones grow the buffers
+        long allocated = 0;
+        for (int game = 0; game < 4; game++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            world.reset(game);
+            world.setTouch(WIDTH / 2, HEIGHT / 2);
+            for (int i = 0; i < 3000; i++) {
+                world.step();
+            }
+            allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        }
+        assertEquals("bytes allocated", 0, allocated);
+    }
+
+    @Test
+    public void autopilot_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        GameRules rules = new GameRules().setCats(2).setMaxBalls(300);
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 124, 117, 6, rules);
+        AutopilotController autopilot = new AutopilotController();
+        world.getBalls().ensureCapacity(300);
+
+        // The first rounds fill the pool up to the cap and grow the grid buffers with it
+        long allocated = 0;
+        for (int round = 0; round < 5; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 3000; i++) {
+                world.setCatHits(1000);
+                autopilot.control(world);
+                world.step();
+            }
+            allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        }
+        assertEquals("bytes allocated", 0, allocated);
+    }
+
+    @Test
+    public void disabledLogging_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        GameLog.setLevel(GameLog.NONE);
+        try {
+            // The first round warms up the code and the allocation counter itself
+            long allocated = 0;
+            for (int round = 0; round < 2; round++) {
+                long before = threads.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < 1000; i++) {
+                    GameLog.d("balls: ", i);
+                    GameLog.i("tick");
+                }
+                allocated = threads.getThreadAllocatedBytes(threadId) - before;
+            }
+            assertEquals(0, allocated);
+        } finally {
+            GameLog.setLevel(GameLog.INFO);
+        }
+    }
+
+    private static class NullTarget implements RenderTarget {
+        long calls;
+
+        @Override
+        public void clear(int color) {
+            calls++;
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, int color) {
+            calls++;
+        }
+
+        @Override
+        public void drawBalls(BallBatch batch) {
+            calls++;
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, int color) {
+            calls++;
+        }
+
+        @Override
+        public void drawImage(int image, float left, float top) {
+            calls++;
+        }
+
+        @Override
+        public void drawImage(int image, float left, float top, float right, float bottom) {
+            calls++;
+        }
+
+        @Override
+        public void drawText(char[] text, int start, int count, float x, float y, int style) {
+            calls++;
+        }
+
+        @Override
+        public void clipRect(int left, int top, int right, int bottom) {
+            calls++;
+        }
+
+        @Override
+        public void restoreClip() {
+            calls++;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Records a headless session with scripted touch input and checks that replaying the
+ * recording reproduces the game bit for bit.
+ */
+public class InputReplayTest {
+    private static final int TICKS = 3000;
+
+    @Test
+    public void replay_reproducesRecordedSession() {
+        GameWorld recorded = new GameWorld(1080, 1920, 124, 117, 42);
+        InputRecorder recorder = new InputRecorder();
+        recorded.setInputRecorder(recorder);
+        GameRandom script = new GameRandom(7);
+        for (int i = 0; i < TICKS && !recorded.isGameOver(); i++) {
+            int action = script.nextInt(10);
+            if (action == 0) {
+                recorded.releaseTouch();
+            } else if (action < 4) {
+                recorded.setTouch(script.nextInt(1080), script.nextInt(1920));
+            }
+            recorded.step();
+        }
+        recorder.finish(recorded.getTick());
+
+        GameWorld replayed = new InputReplay(recorder.toByteArray()).run();
+
+        assertEquals(recorded.getTick(), replayed.getTick());
+        assertSameState(recorded, replayed);
+    }
+
+    @Test
+    public void replay_reproducesAdaptiveSpawning() {
+        GameWorld recorded = new GameWorld(1080, 1920, 124, 117, 43);
+        InputRecorder recorder = new InputRecorder();
+        recorded.setInputRecorder(recorder);
+        recorded.setAdaptiveSpawns(true);
+        long budget = 20000000L;
+        for (int i = 0; i < TICKS && !recorded.isGameOver(); i++) {
+            // Frame times swing over and under budget, as on a busy device
+            recorded.reportFrameTime((i / 400) % 2 == 0 ? budget : budget / 10, budget);
+            recorded.step();
+        }
+        recorder.finish(recorded.getTick());
+        assertTrue(recorded.getSpawnScheduler().getPressure() < SpawnScheduler.FULL_PRESSURE);
+
+        GameWorld replayed = new InputReplay(recorder.toByteArray()).run();
+
+        assertEquals(recorded.getTick(), replayed.getTick());
+        assertSameState(recorded, replayed);
+    }
+
+    @Test
+    public void replay_reproducesBallCap() {
+        GameWorld recorded = new GameWorld(1080, 1920, 124, 117, 45);
+        InputRecorder recorder = new InputRecorder();
+        recorded.setInputRecorder(recorder);
+        for (int i = 0; i < TICKS && !recorded.isGameOver(); i++) {
+            // The quality scaler caps the balls for a while, then lifts the cap
+            if (i == 500) {
+                recorded.setBallCap(15);
+            } else if (i == 2000) {
+                recorded.setBallCap(QualityScaler.NO_CAP);
+            }
+            recorded.step();
+            if (i >= 1000 && i < 2000) {
+                assertTrue(recorded.getBalls().size() <= 15);
+            }
+        }
+        recorder.finish(recorded.getTick());
+
+        GameWorld replayed = new InputReplay(recorder.toByteArray()).run();
+
+        assertEquals(recorded.getTick(), replayed.getTick());
+        assertSameState(recorded, replayed);
+    }
+
+    @Test
+    public void replay_reproducesEveryCat() {
+        GameWorld recorded = new GameWorld(1080, 1920, 124, 117, 44, new GameRules().setCats(4));
+        InputRecorder recorder = new InputRecorder();
+        recorded.setInputRecorder(recorder);
+        WanderController controller = new WanderController(8);
+        for (int i = 0; i < TICKS && !recorded.isGameOver(); i++) {
+            controller.control(recorded);
+            recorded.step();
+        }
+        recorder.finish(recorded.getTick());
+
+        InputReplay replay = new InputReplay(recorder.toByteArray());
+        assertEquals(4, replay.getCats());
+        GameWorld replayed = replay.run();
+
+        assertEquals(recorded.getTick(), replayed.getTick());
+        assertSameState(recorded, replayed);
+    }
+
+    @Test
+    public void sameSeed_playsSameGame() {
+        GameWorld first = new GameWorld(720, 1280, 124, 117, 1234);
+        GameWorld second = new GameWorld(720, 1280, 124, 117, 1234);
+        for (int i = 0; i < TICKS; i++) {
+            first.step();
+            second.step();
+        }
+        assertSameState(first, second);
+    }
+
+    @Test
+    public void reset_playsSameGameAsNewWorld() {
+        GameWorld reused = new GameWorld(720, 1280, 124, 117, 99);
+        InputRecorder recorder = new InputRecorder();
+        reused.setInputRecorder(recorder);
+        reused.setTouch(100, 100);
+        for (int i = 0; i < TICKS; i++) {
+            reused.step();
+        }
+        reused.reset(1234);
+        GameWorld fresh = new GameWorld(720, 1280, 124, 117, 1234);
+        assertEquals(0, reused.getTick());
+        for (int i = 0; i < TICKS; i++) {
+            reused.step();
+            fresh.step();
+        }
+        assertSameState(fresh, reused);
+
+        // The recording restarted with the new game and replays it
+        recorder.finish(reused.getTick());
+        assertSameState(reused, new InputReplay(recorder.toByteArray()).run());
+    }
+
+    @Test
+    public void replay_collidesWithRecordedCatMask() {
+        // A round cat, solid only within the circle touching its edges
+        int[] argb = new int[124 * 117];
+        for (int y = 0; y < 117; y++) {
+            for (int x = 0; x < 124; x++) {
+                float dx = x + 0.5f - 62;
+                float dy = y + 0.5f - 58.5f;
+                argb[y * 124 + x] = dx * dx + dy * dy < 58 * 58 ? 0xff000000 : 0;
+            }
+        }
+        GameWorld recorded = new GameWorld(1080, 1920, 124, 117, 45);
+        recorded.setCatMask(new CollisionMask(124, 117, argb,
+                CollisionMask.DEFAULT_ALPHA_THRESHOLD));
+        InputRecorder recorder = new InputRecorder();
+        recorded.setInputRecorder(recorder);
+        recorded.setTouch(540, 960);
+        for (int i = 0; i < TICKS && !recorded.isGameOver(); i++) {
+            recorded.step();
+        }
+        recorder.finish(recorded.getTick());
+
+        InputReplay replay = new InputReplay(recorder.toByteArray());
+        assertNotNull(replay.getCatMask());
+        GameWorld replayed = replay.run();
+
+        assertEquals(recorded.getTick(), replayed.getTick());
+        assertSameState(recorded, replayed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replay_rejectsOtherData() {
+        new InputReplay(new byte[64]);
+    }
+
+    static void assertSameState(GameWorld expected, GameWorld actual) {
+        assertEquals(expected.getPoints(), actual.getPoints(), 0);
+        assertEquals(expected.getCatHits(), actual.getCatHits(), 0);
+        assertEquals(expected.isGameOver(), actual.isGameOver());
+        assertEquals(expected.getRandom().getState(), actual.getRandom().getState());
+        assertEquals(expected.getCatCount(), actual.getCatCount());
+        for (int c = 0; c < expected.getCatCount(); c++) {
+            assertEquals(expected.getCat(c).getX(), actual.getCat(c).getX());
+            assertEquals(expected.getCat(c).getY(), actual.getCat(c).getY());
+        }
+        BallPool a = expected.getBalls();
+        BallPool b = actual.getBalls();
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(Float.floatToIntBits(a.x[i]), Float.floatToIntBits(b.x[i]));
+            assertEquals(Float.floatToIntBits(a.y[i]), Float.floatToIntBits(b.y[i]));
+            assertEquals(Float.floatToIntBits(a.vx[i]), Float.floatToIntBits(b.vx[i]));
+            assertEquals(Float.floatToIntBits(a.vy[i]), Float.floatToIntBits(b.vy[i]));
+            assertEquals(Float.floatToIntBits(a.radius[i]), Float.floatToIntBits(b.radius[i]));
+            assertEquals(a.color[i], b.color[i]);
+            assertEquals(a.flags[i], b.flags[i]);
+        }
+    }
+}
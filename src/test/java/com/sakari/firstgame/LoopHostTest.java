@@ -0,0 +1,113 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a LoopHost through its states with real loop threads, checking that the loops
+ * only go round while running, keep their thread and their state across a pause, and
+ * are idle whenever a state change returns.
+ */
+public class LoopHostTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Test
+    public void loops_onlyRunWithForegroundAndSurface() throws InterruptedException {
+        LoopHost host = new LoopHost();
+        CountingLoop loop = new CountingLoop(host, 1000000);
+        host.add("counting", loop);
+        host.start();
+        assertEquals(LoopHost.PAUSED, host.getState());
+        host.setForeground(true);
+        assertEquals(LoopHost.SUSPENDED, host.getState());
+        Thread.sleep(20);
+        assertEquals(0, loop.rounds);
+
+        host.setSurface(true);
+        assertEquals(LoopHost.RUNNING, host.getState());
+        loop.awaitRounds(10);
+        host.setForeground(false);
+        assertEquals(LoopHost.PAUSED, host.getState());
+
+        // Nothing goes round while paused, and nothing was in a round when pause returned
+        int rounds = loop.rounds;
+        assertFalse(loop.inRound);
+        Thread.sleep(20);
+        assertEquals(rounds, loop.rounds);
+        Thread thread = loop.thread;
+
+        // Resuming goes on with the same thread and the same state
+        host.setForeground(true);
+        loop.awaitRounds(rounds + 10);
+        assertEquals(2, loop.runs);
+        assertSame(thread, loop.thread);
+        host.setSurface(false);
+        assertEquals(LoopHost.SUSPENDED, host.getState());
+        assertFalse(loop.inRound);
+
+        host.stop();
+        assertEquals(LoopHost.STOPPED, host.getState());
+        assertTrue(host.join(TIMEOUT_MILLIS));
+        host.setForeground(true);
+        host.setSurface(true);
+        assertEquals(LoopHost.STOPPED, host.getState());
+    }
+
+    @Test
+    public void pause_cutsSleepsShort() throws InterruptedException {
+        LoopHost host = new LoopHost();
+        // Each round waits a minute, so a pause that waited for it would time out
+        CountingLoop loop = new CountingLoop(host, 60000000000L);
+        host.add("sleeping", loop);
+        host.start();
+        host.setForeground(true);
+        host.setSurface(true);
+        loop.awaitRounds(1);
+
+        long start = System.nanoTime();
+        host.setForeground(false);
+        assertTrue(System.nanoTime() - start < TIMEOUT_MILLIS * 1000000L);
+        assertFalse(loop.inRound);
+        host.stop();
+        assertTrue(host.join(TIMEOUT_MILLIS));
+    }
+
+    private static class CountingLoop implements LoopHost.Loop {
+        private final LoopHost host;
+        private final long sleepNanos; // wait in each round
+        volatile int rounds; // rounds begun
+        volatile int runs; // calls to onRun
+        volatile boolean inRound; // a round is going on
+        volatile Thread thread; // thread of the latest round
+
+        CountingLoop(LoopHost host, long sleepNanos) {
+            this.host = host;
+            this.sleepNanos = sleepNanos;
+        }
+
+        @Override
+        public void onRun() {
+            runs++;
+        }
+
+        @Override
+        public void round() {
+            inRound = true;
+            rounds++;
+            thread = Thread.currentThread();
+            host.sleep(sleepNanos);
+            inRound = false;
+        }
+
+        void awaitRounds(int count) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (rounds < count) {
+                if (System.currentTimeMillis() > end) {
+                    fail("Only " + rounds + " rounds");
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+}
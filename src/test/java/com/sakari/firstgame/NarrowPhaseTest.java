@@ -0,0 +1,214 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the swept contact tests on movements that end clear of each other but passed
+ * through on the way, which a check at the end of the tick alone misses, and the contact
+ * events the world derives from them.
+ */
+public class NarrowPhaseTest {
+
+    @Test
+    public void sweepCircleBox_findsBallPassingThrough() {
+        // A small ball crosses a thin box within one tick and ends up past it
+        assertFalse(NarrowPhase.circleTouchesBox(140, 50, 2, 100, 0, 110, 100));
+        float t = NarrowPhase.sweepCircleBox(60, 50, 80, 0, 2, 100, 0, 110, 100);
+        assertEquals((100 - 2 - 60) / 80f, t, 1e-6f);
+
+        // Touching at the start, moving away, and passing beside
+        assertEquals(0, NarrowPhase.sweepCircleBox(99, 50, -80, 0, 2, 100, 0, 110, 100), 0);
+        assertEquals(NarrowPhase.NO_HIT,
+                NarrowPhase.sweepCircleBox(60, 50, -80, 0, 2, 100, 0, 110, 100), 0);
+        assertEquals(NarrowPhase.NO_HIT,
+                NarrowPhase.sweepCircleBox(60, 103, 80, 0, 2, 100, 0, 110, 100), 0);
+    }
+
+    @Test
+    public void sweepCircleBox_roundsTheCorners() {
+        // Diagonally past the top left corner: the square corner of the grown box is hit,
+        // the rounded one only when the path comes within the radius of the corner
+        assertEquals(NarrowPhase.NO_HIT,
+                NarrowPhase.sweepCircleBox(84, 10, 20, -20, 4, 100, 0, 110, 100), 0);
+        float t = NarrowPhase.sweepCircleBox(80, -20, 20, 20, 4, 100, 0, 110, 100);
+        assertTrue(t > 0 && t <= 1);
+        float x = 80 + 20 * t - 100;
+        float y = -20 + 20 * t;
+        assertEquals(16, x * x + y * y, 1e-3f);
+    }
+
+    @Test
+    public void sweepCircleCircle_findsCrossingBalls() {
+        // Start 30 apart and cross over to 10 apart on the other side
+        float t = NarrowPhase.sweepCircleCircle(30, 0, -40, 0, 2);
+        assertEquals(28 / 40f, t, 1e-6f);
+        assertEquals(NarrowPhase.NO_HIT, NarrowPhase.sweepCircleCircle(30, 0, 40, 0, 2), 0);
+        assertEquals(NarrowPhase.NO_HIT, NarrowPhase.sweepCircleCircle(30, 5, -60, 0, 2), 0);
+        assertEquals(0, NarrowPhase.sweepCircleCircle(1, 1, 40, 0, 2), 0);
+    }
+
+    @Test
+    public void mask_collidesOnlyWithSolidPixels() {
+        // A ring 130 pixels wide, so rows span three longs, with a hole in the middle
+        int size = 130;
+        int[] argb = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float dx = x + 0.5f - 65;
+                float dy = y + 0.5f - 65;
+                float distSq = dx * dx + dy * dy;
+                boolean solid = distSq < 60 * 60 && distSq > 30 * 30;
+                argb[y * size + x] = solid ? 0xff000000 : 0x00ffffff;
+            }
+        }
+        CollisionMask mask = new CollisionMask(size, size, argb,
+                CollisionMask.DEFAULT_ALPHA_THRESHOLD);
+
+        assertTrue(mask.isSolid(65 + 45, 65));
+        assertFalse(mask.touchesCircle(65, 65, 10)); // in the hole
+        assertTrue(mask.touchesCircle(65, 65, 35)); // reaches the ring
+        assertFalse(mask.touchesCircle(4, 4, 3)); // in a corner outside the ring
+        assertTrue(mask.touchesCircle(64, 20, 1)); // on the ring, across a long boundary
+
+        // Along the middle row within the hole misses, across the ring hits
+        assertEquals(NarrowPhase.NO_HIT, mask.sweepCircle(40, 65, 50, 0, 2), 0);
+        assertTrue(mask.sweepCircle(-10, 65, 40, 0, 2) >= 0);
+    }
+
+    @Test
+    public void world_sweepsFastBallsAndReportsContacts() {
+        GameWorld world = new GameWorld(1080, 1920, 10, 10, 5);
+        GameEvents.Reader reader = world.getEvents().newReader();
+        Recorder events = new Recorder();
+        CharacterSprite cat = world.getCat(0);
+        cat.restore(500, 500, 500, 500, 0, 0);
+
+        // Crosses the 8 pixel hit box from one side to the other in a single tick
+        BallPool balls = world.getBalls();
+        int i = balls.acquire();
+        balls.x[i] = 480;
+        balls.y[i] = 504;
+        balls.radius[i] = 1;
+        balls.vx[i] = 40;
+        world.step();
+        assertEquals(520, balls.x[i], 0);
+        reader.drainTo(events);
+        assertEquals(1, events.count(GameEvents.CONTACT_BEGIN));
+        assertEquals(1, events.count(GameEvents.HIT));
+
+        world.step();
+        reader.drainTo(events);
+        assertEquals(1, events.count(GameEvents.CONTACT_END));
+        assertEquals(1, world.getScore().getContacts());
+    }
+
+    @Test
+    public void world_bouncesBallsThatCrossEachOther() {
+        GameWorld world = new GameWorld(1080, 1920, 10, 10, 5);
+        world.setBallCollisions(true);
+        BallPool balls = world.getBalls();
+        int a = ball(balls, 500, 20);
+        int b = ball(balls, 530, -20);
+        world.step();
+
+        // They met 70% into the tick and went back the way they came for the rest of it
+        assertEquals(-20, balls.vx[a], 1e-4f);
+        assertEquals(20, balls.vx[b], 1e-4f);
+        assertEquals(508, balls.x[a], 1e-3f);
+        assertEquals(522, balls.x[b], 1e-3f);
+    }
+
+    @Test
+    public void world_bouncesBallsThatCrossAtCellEdge() {
+        GameWorld world = new GameWorld(1080, 1920, 10, 10, 5);
+        world.setBallCollisions(true);
+        BallPool balls = world.getBalls();
+        float edge = world.getGrid().getCellSize();
+        int a = ball(balls, edge - 15, 20);
+        int b = ball(balls, edge + 15, -20);
+        world.step();
+
+        // They end the tick in different cells, yet met on the way and bounced back
+        assertEquals(-20, balls.vx[a], 1e-4f);
+        assertEquals(20, balls.vx[b], 1e-4f);
+        assertEquals(edge - 7, balls.x[a], 1e-3f);
+        assertEquals(edge + 7, balls.x[b], 1e-3f);
+    }
+
+    @Test
+    public void world_keepsRewoundBallsInsideTheWalls() {
+        GameWorld world = new GameWorld(1080, 1920, 10, 10, 5);
+        world.setBallCollisions(true);
+        BallPool balls = world.getBalls();
+        // They cross a little before half the tick; bounced there, b would go 1 past the wall
+        int a = ball(balls, 1040, 38);
+        int b = ball(balls, 1078, -38);
+        world.step();
+
+        assertEquals(38, balls.vx[b], 1e-4f);
+        assertEquals(1079, balls.x[b], 1e-3f);
+        assertTrue(balls.x[a] < 1060);
+        // Every cell holding a ball has its rewound position
+        SpatialGrid grid = world.getGrid();
+        int[] items = grid.getCellItems();
+        for (int k = 0; k < grid.cellEnd(grid.getCellCount() - 1); k++) {
+            assertEquals(balls.x[items[k]], grid.getItemX()[k], 0);
+        }
+    }
+
+    @Test
+    public void contacts_beginAndEndInPairs() {
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 11, new GameRules().setCats(3));
+        GameEvents.Reader reader = world.getEvents().newReader();
+        Recorder events = new Recorder();
+        AutopilotController autopilot = new AutopilotController();
+        for (int tick = 0; tick < 4000 && !world.isGameOver(); tick++) {
+            autopilot.control(world);
+            world.step();
+            Arrays.fill(events.hits, 0);
+            reader.drainTo(events);
+            // Every contact going on was hit this tick, exactly once
+            for (int c = 0; c < world.getCatCount(); c++) {
+                assertTrue(events.open[c] >= 0);
+                assertEquals(events.open[c], events.hits[c]);
+            }
+        }
+        assertTrue(events.count(GameEvents.CONTACT_BEGIN) > 0);
+        assertEquals(0, reader.getLost());
+    }
+
+    private static int ball(BallPool balls, float x, float vx) {
+        int i = balls.acquire();
+        balls.x[i] = x;
+        balls.y[i] = 1000;
+        balls.radius[i] = 1;
+        balls.vx[i] = vx;
+        return i;
+    }
+
+    private static class Recorder implements GameEventListener {
+        final int[] counts = new int[8];
+        final int[] open = new int[GameWorld.MAX_CATS]; // contacts begun and not ended, per cat
+        final int[] hits = new int[GameWorld.MAX_CATS]; // hits since last cleared, per cat
+
+        @Override
+        public void onEvent(byte type, long tick, int cat, int value, int points, int energy) {
+            counts[type]++;
+            if (type == GameEvents.CONTACT_BEGIN) {
+                open[cat]++;
+            } else if (type == GameEvents.CONTACT_END) {
+                open[cat]--;
+            } else if (type == GameEvents.HIT) {
+                hits[cat]++;
+            }
+        }
+
+        int count(byte type) {
+            return counts[type];
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds the quality scaler synthetic frame-time traces of devices whose drawing costs
+ * depend on the quality level, and checks where it settles and how often it changes.
+ */
+public class QualityScalerTest {
+    private static final long BUDGET = 20000000L; // 50 frames per second
+    private static final long MILLI = 1000000L;
+
+    @Test
+    public void fastDevice_keepsFullQuality() {
+        QualityScaler scaler = new QualityScaler(BUDGET);
+        assertEquals(0, run(scaler, new long[] {4, 4, 5, 5, 6}, 10000));
+        assertEquals(QualityScaler.FULL, scaler.getLevel());
+    }
+
+    @Test
+    public void slowDevice_settlesOnAffordableLevel() {
+        QualityScaler scaler = new QualityScaler(BUDGET);
+        // Levels 3 and 4 are over budget, level 2 fits but leaves no room to rise
+        long[] drawMillis = {8, 10, 14, 19, 23};
+        run(scaler, drawMillis, 300);
+        assertEquals(2, scaler.getLevel());
+        assertEquals(0, run(scaler, drawMillis, 100000));
+        assertEquals(2, scaler.getLevel());
+    }
+
+    @Test
+    public void levelJustOutOfReach_isRetriedLessAndLessOften() {
+        QualityScaler scaler = new QualityScaler(BUDGET);
+        // Level 2 leaves plenty of room, but level 3 is over budget
+        long[] drawMillis = {6, 8, 10, 19, 23};
+        int changes = run(scaler, drawMillis, 200000);
+        assertEquals(2, scaler.getLevel());
+        // Retrying every UPGRADE_WINDOWS windows would be some 2600 changes, backing off
+        // to MAX_UPGRADE_WINDOWS leaves about one try every 77 seconds
+        assertTrue("changes " + changes, changes < 120);
+        assertEquals(QualityScaler.MAX_UPGRADE_WINDOWS, scaler.getUpgradeWindows(2));
+    }
+
+    @Test
+    public void spikes_doNotDropQuality() {
+        QualityScaler scaler = new QualityScaler(BUDGET);
+        for (int frame = 0; frame < 30000; frame++) {
+            // A garbage collection pause every couple of seconds
+            long draw = frame % 100 == 0 ? 60 * MILLI : 9 * MILLI;
+            assertFalse(scaler.report(5 * MILLI, draw));
+        }
+        assertEquals(QualityScaler.FULL, scaler.getLevel());
+    }
+
+    @Test
+    public void slowSimulation_dropsQualityToo() {
+        QualityScaler scaler = new QualityScaler(BUDGET);
+        for (int frame = 0; frame < QualityScaler.WINDOW; frame++) {
+            scaler.report(BUDGET, 5 * MILLI);
+        }
+        assertEquals(QualityScaler.FULL - 1, scaler.getLevel());
+    }
+
+    @Test
+    public void recovers_onceLoadGoesAway() {
+        QualityScaler scaler = new QualityScaler(BUDGET);
+        run(scaler, new long[] {30, 30, 30, 30, 30}, 10 * QualityScaler.WINDOW);
+        assertEquals(0, scaler.getLevel());
+        assertTrue(QualityScaler.getBallCap(0) < QualityScaler.NO_CAP);
+
+        // Each level needs UPGRADE_WINDOWS calm windows to rise from
+        int frames = QualityScaler.FULL * QualityScaler.UPGRADE_WINDOWS * QualityScaler.WINDOW;
+        run(scaler, new long[] {5, 5, 5, 5, 5}, frames - 1);
+        assertEquals(QualityScaler.FULL - 1, scaler.getLevel());
+        run(scaler, new long[] {5, 5, 5, 5, 5}, 1);
+        assertEquals(QualityScaler.FULL, scaler.getLevel());
+    }
+
+    // Reports frames drawn at the cost of the current level; returns the level changes
+    private static int run(QualityScaler scaler, long[] drawMillis, int frames) {
+        int changes = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            long draw = drawMillis[scaler.getLevel()] * MILLI;
+            if (scaler.report(4 * MILLI, draw)) {
+                changes++;
+            }
+        }
+        return changes;
+    }
+}
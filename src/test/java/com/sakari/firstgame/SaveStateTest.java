@@ -0,0 +1,217 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of the save state format, in memory and through a mapped file, checked by
+ * playing on from the restored world.
+ */
+public class SaveStateTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Test
+    public void roundTrip_continuesSameGame() {
+        GameWorld original = playedWorld(1000, 77);
+        GameWorld restored = new GameWorld(WIDTH, HEIGHT, 124, 117, 5);
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.size(original));
+        SaveState.write(original, buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        SaveState.read(buffer, restored);
+
+        assertEquals(original.getTick(), restored.getTick());
+        assertEquals(original.getSeed(), restored.getSeed());
+        for (int i = 0; i < 2000; i++) {
+            original.step();
+            restored.step();
+        }
+        assertSameGame(original, restored);
+    }
+
+    @Test
+    public void roundTrip_keepsEveryCat() {
+        GameRules rules = new GameRules().setCats(3);
+        GameWorld original = new GameWorld(WIDTH, HEIGHT, 124, 117, 78, rules);
+        for (int i = 0; i < 1000; i++) {
+            for (int c = 0; c < 3; c++) {
+                original.setTouch(c, (i * 7 + c * 400) % WIDTH, (i * 3 + c * 600) % HEIGHT, 1);
+            }
+            original.step();
+        }
+        for (int c = 0; c < 3; c++) {
+            original.releaseTouch(c);
+        }
+        GameWorld restored = new GameWorld(WIDTH, HEIGHT, 124, 117, 5, rules);
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.size(original));
+        SaveState.write(original, buffer);
+        buffer.flip();
+        SaveState.read(buffer, restored);
+        for (int i = 0; i < 1000; i++) {
+            original.step();
+            restored.step();
+        }
+        assertSameGame(original, restored);
+
+        // A single cat world takes the first cat only
+        GameWorld single = new GameWorld(WIDTH, HEIGHT, 124, 117, 5);
+        buffer.rewind();
+        SaveState.read(buffer, single);
+        assertEquals(1, single.getCatCount());
+    }
+
+    @Test
+    public void mappedFile_roundTripsTenThousandBalls() throws Exception {
+        GameRules rules = new GameRules().setMaxBalls(10000);
+        GameWorld original = new GameWorld(WIDTH, HEIGHT, 124, 117, 3, rules);
+        while (original.getBalls().size() < 10000) {
+            original.addBall(original.getBalls().size() % 10 == 0);
+        }
+        File file = File.createTempFile("save", ".cbss");
+        try {
+            SaveState.save(original, file);
+            assertEquals(SaveState.size(original), file.length());
+            GameWorld restored = new GameWorld(WIDTH, HEIGHT, 124, 117, 5, rules);
+            assertTrue(SaveState.load(file, restored));
+            assertSameGame(original, restored);
+        } finally {
+            file.delete();
+        }
+        assertFalse(SaveState.load(file, original));
+    }
+
+    @Test
+    public void otherSize_stretchesToFit() {
+        GameWorld original = playedWorld(1500, 8);
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.size(original));
+        SaveState.write(original, buffer);
+        buffer.flip();
+        // As after rotating the screen
+        GameWorld rotated = new GameWorld(HEIGHT, WIDTH, 124, 117, 5);
+        SaveState.read(buffer, rotated);
+
+        BallPool a = original.getBalls();
+        BallPool b = rotated.getBalls();
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.x[i] / WIDTH, b.x[i] / HEIGHT, 1e-5f);
+            assertEquals(a.y[i] / HEIGHT, b.y[i] / WIDTH, 1e-5f);
+        }
+        CharacterSprite cat = rotated.getCharacterSprite();
+        assertTrue(cat.getX() >= 0 && cat.getX() <= HEIGHT - cat.getWidth());
+        assertTrue(cat.getY() >= 0 && cat.getY() <= WIDTH - cat.getHeight());
+        for (int i = 0; i < 100; i++) {
+            rotated.step();
+        }
+    }
+
+    @Test
+    public void read_rejectsOtherData() {
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 124, 117, 5);
+        try {
+            SaveState.read(ByteBuffer.allocate(256), world);
+            fail("read an empty buffer");
+        } catch (IllegalArgumentException expected) {
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.size(world));
+        SaveState.write(world, buffer);
+        buffer.flip();
+        buffer.putInt(SaveState.HEADER_BYTES - 4, 3); // three balls that are not there
+        try {
+            SaveState.read(buffer, world);
+            fail("read a truncated state");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void roundTrip_keepsSwappedRules() {
+        GameWorld original = new GameWorld(WIDTH, HEIGHT, 124, 117, 9);
+        GameRules rules = new GameRules().setMaxBalls(60).setMaxBallRadius(40);
+        original.reset(21, rules);
+        for (int i = 0; i < 800; i++) {
+            original.step();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.size(original));
+        SaveState.write(original, buffer);
+        buffer.flip();
+
+        // The restored world was built with the default rules, and plays on with the saved ones
+        GameWorld restored = new GameWorld(WIDTH, HEIGHT, 124, 117, 5);
+        SaveState.read(buffer, restored);
+        assertEquals(original.getRules().toProfile(), restored.getRules().toProfile());
+        assertEquals(60, restored.getBalls().getMaxCapacity());
+        for (int i = 0; i < 1000; i++) {
+            original.step();
+            restored.step();
+        }
+        assertSameGame(original, restored);
+    }
+
+    @Test
+    public void read_rejectsUnknownSpawnKinds() {
+        GameWorld world = playedWorld(300, 4);
+        assertTrue(world.getSpawnScheduler().size() > 0);
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.size(world));
+        SaveState.write(world, buffer);
+        buffer.flip();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int profileLength = buffer.getInt(SaveState.HEADER_BYTES - 8);
+        int firstKind = SaveState.HEADER_BYTES + profileLength + world.getCatCount() * 6 * 4 + 8;
+        buffer.put(firstKind, (byte) 7);
+        GameWorld restored = new GameWorld(WIDTH, HEIGHT, 124, 117, 5);
+        try {
+            SaveState.read(buffer, restored);
+            fail("read an unknown spawn kind");
+        } catch (IllegalArgumentException expected) {
+        }
+        // Nothing of the broken state reached the world
+        assertEquals(0, restored.getTick());
+    }
+
+    private static GameWorld playedWorld(int ticks, long seed) {
+        GameWorld world = new GameWorld(WIDTH, HEIGHT, 124, 117, seed);
+        world.setBallCollisions(true);
+        world.setTouch(WIDTH / 3, HEIGHT / 2);
+        for (int i = 0; i < ticks; i++) {
+            world.step();
+        }
+        world.releaseTouch();
+        return world;
+    }
+
+    private static void assertSameGame(GameWorld expected, GameWorld actual) {
+        assertEquals(expected.getTick(), actual.getTick());
+        assertEquals(expected.getPoints(), actual.getPoints(), 0);
+        assertEquals(expected.getCatHits(), actual.getCatHits(), 0);
+        assertEquals(expected.isGameOver(), actual.isGameOver());
+        assertEquals(expected.isBallCollisions(), actual.isBallCollisions());
+        assertEquals(expected.getRandom().getState(), actual.getRandom().getState());
+        assertEquals(expected.getCatCount(), actual.getCatCount());
+        for (int c = 0; c < expected.getCatCount(); c++) {
+            CharacterSprite catA = expected.getCat(c);
+            CharacterSprite catB = actual.getCat(c);
+            assertEquals(catA.getX(), catB.getX());
+            assertEquals(catA.getY(), catB.getY());
+            assertEquals(catA.getXVelocity(), catB.getXVelocity(), 0);
+            assertEquals(catA.getYVelocity(), catB.getYVelocity(), 0);
+        }
+        BallPool a = expected.getBalls();
+        BallPool b = actual.getBalls();
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(Float.floatToIntBits(a.x[i]), Float.floatToIntBits(b.x[i]));
+            assertEquals(Float.floatToIntBits(a.prevY[i]), Float.floatToIntBits(b.prevY[i]));
+            assertEquals(Float.floatToIntBits(a.vy[i]), Float.floatToIntBits(b.vy[i]));
+            assertEquals(Float.floatToIntBits(a.growth[i]), Float.floatToIntBits(b.growth[i]));
+            assertEquals(a.color[i], b.color[i]);
+            assertEquals(a.flags[i], b.flags[i]);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Spawn timing of the scheduler: queue order, difficulty curves, prize rate, spawn
+ * pressure and the live ball cap.
+ */
+public class SpawnSchedulerTest {
+
+    @Test
+    public void poll_spawnsAtCurveIntervals() {
+        SpawnScheduler spawner = new SpawnScheduler(DifficultyCurves.constant(10), 0);
+        GameRandom random = new GameRandom(1);
+        spawner.reset(random);
+        spawner.schedule(15, SpawnScheduler.PRIZE);
+        spawner.schedule(5, SpawnScheduler.PRIZE);
+        StringBuilder spawns = new StringBuilder();
+        for (long tick = 1; tick <= 30; tick++) {
+            int kind;
+            while ((kind = spawner.poll(tick, random)) >= 0) {
+                spawns.append(tick).append(kind == SpawnScheduler.BALL ? "b " : "p ");
+            }
+        }
+        // Without a prize chance, queued prizes come once and are not followed by more
+        assertEquals("5p 10b 15p 20b 30b ", spawns.toString());
+    }
+
+    @Test
+    public void prizeGaps_averageThePerTickChance() {
+        SpawnScheduler spawner = new SpawnScheduler(DifficultyCurves.constant(Integer.MAX_VALUE), 0.005);
+        GameRandom random = new GameRandom(2);
+        spawner.reset(random);
+        int prizes = 0;
+        for (long tick = 1; tick <= 2000000; tick++) {
+            while (spawner.poll(tick, random) == SpawnScheduler.PRIZE) {
+                prizes++;
+            }
+        }
+        assertEquals(10000, prizes, 300);
+    }
+
+    @Test
+    public void classicCurve_rampsDownToMinimum() {
+        DifficultyCurve curve = DifficultyCurves.classic(100, 10);
+        assertEquals(100, curve.interval(0));
+        int previous = Integer.MAX_VALUE;
+        for (long tick = 0; tick < 10000; tick += 10) {
+            int interval = curve.interval(tick);
+            assertTrue(interval <= previous && interval >= 10);
+            previous = interval;
+        }
+        assertTrue(curve.interval(4900) > 10);
+        assertEquals(10, curve.interval(4950));
+
+        DifficultyCurve halving = DifficultyCurves.exponential(100, 10, 1000);
+        assertEquals(100, halving.interval(0));
+        assertEquals(55, halving.interval(1000));
+        assertEquals(10, halving.interval(100000));
+    }
+
+    @Test
+    public void overBudgetFrames_lowerPressureUntilTheyRecover() {
+        SpawnScheduler spawner = new SpawnScheduler(DifficultyCurves.constant(20), 0);
+        GameRandom random = new GameRandom(3);
+        spawner.reset(random);
+        long budget = 20000000L; // one step at 50 ticks per second
+        for (int i = 0; i < 1000; i++) {
+            spawner.adapt(budget, budget);
+        }
+        assertEquals(SpawnScheduler.MIN_PRESSURE, spawner.getPressure());
+        // A quarter of the pressure spawns at four times the interval
+        assertEquals(SpawnScheduler.BALL, spawner.poll(20, random));
+        assertEquals(-1, spawner.poll(99, random));
+        assertEquals(SpawnScheduler.BALL, spawner.poll(100, random));
+
+        // Loads between the thresholds keep the pressure where it is
+        for (int i = 0; i < 1000; i++) {
+            spawner.adapt(budget * 6 / 10, budget);
+        }
+        assertEquals(SpawnScheduler.MIN_PRESSURE, spawner.getPressure());
+        for (int i = 0; i < 10000; i++) {
+            spawner.adapt(budget / 10, budget);
+        }
+        assertEquals(SpawnScheduler.FULL_PRESSURE, spawner.getPressure());
+    }
+
+    @Test
+    public void longGame_staysWithinBallCap() {
+        GameRules rules = new GameRules().setMaxBalls(40).setDifficultyCurve(DifficultyCurves.constant(2));
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 4, rules);
+        int peak = 0;
+        for (int i = 0; i < 20000; i++) {
+            world.setCatHits(1000);
+            world.step();
+            peak = Math.max(peak, world.getBalls().size());
+        }
+        assertEquals(40, peak);
+        assertTrue(world.getPoints() > 0);
+    }
+}
@@ -0,0 +1,186 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the lock-free handoffs between the UI, simulation and render threads with a
+ * real producer thread on the other side.
+ */
+public class ThreadHandoffTest {
+    private static final int PUBLISHES = 200000;
+
+    @Test
+    public void snapshotExchange_deliversWholeSnapshotsInOrder() throws InterruptedException {
+        final SnapshotExchange exchange = new SnapshotExchange();
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= PUBLISHES; i++) {
+                    WorldSnapshot s = exchange.getWriteBuffer();
+                    // Every field derives from the tick, so a torn snapshot shows up
+                    s.tick = i;
+                    s.points = i * 2;
+                    s.catX[0] = i;
+                    s.catY[0] = -i;
+                    exchange.publish();
+                }
+            }
+        };
+        producer.start();
+        long previous = 0;
+        while (previous < PUBLISHES) {
+            WorldSnapshot s = exchange.latest();
+            assertTrue("tick went backwards", s.tick >= previous);
+            if (s.tick != 0) {
+                assertEquals(s.tick * 2, s.points, 0);
+                assertEquals(s.tick, s.catX[0]);
+                assertEquals(-s.tick, s.catY[0]);
+            }
+            previous = s.tick;
+        }
+        producer.join();
+    }
+
+    @Test
+    public void inputQueue_appliesEventsInOrder() throws InterruptedException {
+        final InputQueue queue = new InputQueue(64, 20000000L);
+        final int events = 100000;
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= events; i++) {
+                    while (!queue.offer(InputQueue.TOUCH, i, i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        };
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 1);
+        producer.start();
+        int received = 0;
+        float last = 0;
+        while (received < events) {
+            received += queue.drainTo(world);
+            float x = world.getTouchX();
+            assertTrue("touch went backwards", x >= last);
+            last = x;
+        }
+        producer.join();
+        assertEquals(events, last, 0);
+        assertEquals(0, queue.drainTo(world));
+    }
+
+    @Test
+    public void inputQueue_averagesSamplesOverTheTick() {
+        InputQueue queue = new InputQueue(64, 20000000L);
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 1);
+        long t0 = 1000000000L;
+        queue.drainTo(world, t0);
+        assertFalse(world.isTouching());
+
+        // Down at 100 for 5 ms, then at 200 for the remaining 15 ms of the tick
+        queue.offer(InputQueue.TOUCH, 100, 100, t0);
+        queue.offer(InputQueue.TOUCH, 200, 300, t0 + 5000000L);
+        assertEquals(2, queue.drainTo(world, t0 + 20000000L));
+        assertTrue(world.isTouching());
+        assertEquals(175, world.getTouchX(), 1e-3f);
+        assertEquals(250, world.getTouchY(), 1e-3f);
+        assertEquals(1, world.getTouchWeight(), 0);
+
+        // No new samples: the finger is still down where it was
+        queue.drainTo(world, t0 + 40000000L);
+        assertEquals(200, world.getTouchX(), 0);
+        assertEquals(1, world.getTouchWeight(), 0);
+
+        // Lifted a quarter into the next tick
+        queue.offer(InputQueue.RELEASE, 0, 0, t0 + 45000000L);
+        queue.drainTo(world, t0 + 60000000L);
+        assertTrue(world.isTouching());
+        assertEquals(0.25f, world.getTouchWeight(), 1e-6f);
+        queue.drainTo(world, t0 + 80000000L);
+        assertFalse(world.isTouching());
+    }
+
+    @Test
+    public void inputQueue_keepsTapsShorterThanATick() {
+        InputQueue queue = new InputQueue(64, 20000000L);
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 1);
+        long t0 = 1000000000L;
+        queue.drainTo(world, t0);
+        queue.offer(InputQueue.TOUCH, 500, 600, t0 + 12000000L);
+        queue.offer(InputQueue.RELEASE, 0, 0, t0 + 16000000L);
+        // Samples older than a tick count from the start of the tick only
+        queue.drainTo(world, t0 + 20000000L);
+        assertTrue(world.isTouching());
+        assertEquals(500, world.getTouchX(), 0);
+        assertEquals(0.2f, world.getTouchWeight(), 1e-6f);
+        queue.drainTo(world, t0 + 40000000L);
+        assertFalse(world.isTouching());
+    }
+
+    @Test
+    public void inputQueue_splitsSamplesOverCatchUpSteps() {
+        InputQueue queue = new InputQueue(64, 20000000L);
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 1);
+        long t0 = 1000000000L;
+        queue.drainTo(world, t0);
+
+        // A stall queued three ticks of samples, drained by three steps in one round
+        queue.offer(InputQueue.TOUCH, 100, 100, t0);
+        queue.offer(InputQueue.TOUCH, 200, 100, t0 + 10000000L);
+        queue.offer(InputQueue.TOUCH, 400, 100, t0 + 20000000L);
+        queue.offer(InputQueue.TOUCH, 600, 100, t0 + 30000000L);
+        queue.offer(InputQueue.RELEASE, 0, 0, t0 + 50000000L);
+        assertEquals(3, queue.drainTo(world, t0 + 20000000L));
+        assertEquals(150, world.getTouchX(), 1e-3f);
+        assertEquals(1, world.getTouchWeight(), 0);
+
+        assertEquals(1, queue.drainTo(world, t0 + 40000000L));
+        assertEquals(500, world.getTouchX(), 1e-3f);
+        assertEquals(1, world.getTouchWeight(), 0);
+
+        assertEquals(1, queue.drainTo(world, t0 + 60000000L));
+        assertEquals(600, world.getTouchX(), 0);
+        assertEquals(0.5f, world.getTouchWeight(), 1e-6f);
+        assertEquals(0, queue.drainTo(world, t0 + 80000000L));
+        assertFalse(world.isTouching());
+    }
+
+    @Test
+    public void inputQueue_steersEachCatWithItsOwnFinger() {
+        InputQueue queue = new InputQueue(64, 20000000L);
+        GameWorld world = new GameWorld(1080, 1920, 124, 117, 1, new GameRules().setCats(3));
+        long t0 = 1000000000L;
+        queue.drainTo(world, t0);
+
+        // Two fingers interleaved, the second lifted half way through the tick
+        queue.offer(InputQueue.TOUCH, 0, 100, 100, t0);
+        queue.offer(InputQueue.TOUCH, 2, 900, 1500, t0);
+        queue.offer(InputQueue.TOUCH, 0, 300, 100, t0 + 10000000L);
+        queue.offer(InputQueue.RELEASE, 2, 0, 0, t0 + 10000000L);
+        // A finger for a cat the world does not have is ignored
+        queue.offer(InputQueue.TOUCH, 5, 1, 1, t0);
+        assertEquals(5, queue.drainTo(world, t0 + 20000000L));
+        assertEquals(200, world.getTouchX(0), 1e-3f);
+        assertEquals(1, world.getTouchWeight(0), 0);
+        assertFalse(world.isTouching(1));
+        assertEquals(900, world.getTouchX(2), 0);
+        assertEquals(0.5f, world.getTouchWeight(2), 1e-6f);
+
+        queue.drainTo(world, t0 + 40000000L);
+        assertEquals(300, world.getTouchX(0), 0);
+        assertFalse(world.isTouching(2));
+    }
+
+    @Test
+    public void inputQueue_dropsWhenFull() {
+        InputQueue queue = new InputQueue(4, 20000000L);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(InputQueue.TOUCH, i, i));
+        }
+        assertFalse(queue.offer(InputQueue.RELEASE, 0, 0));
+        assertEquals(1, queue.getDropped());
+    }
+}
@@ -0,0 +1,60 @@
+package com.sakari.firstgame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the world has the same size on screens of the same shape, and that areas
+ * keep covering what they covered when mapped to frame pixels and back.
+ */
+public class ViewportTest {
+
+    @Test
+    public void worldSize_isIndependentOfResolution() {
+        Viewport small = new Viewport(720, 1280);
+        Viewport large = new Viewport(1440, 2560);
+        assertEquals(1080, small.getWorldWidth());
+        assertEquals(1920, small.getWorldHeight());
+        assertEquals(small.getWorldWidth(), large.getWorldWidth());
+        assertEquals(small.getWorldHeight(), large.getWorldHeight());
+
+        // The same touch lands on the same spot of the world
+        assertEquals(540, small.toWorldX(360), 1e-3f);
+        assertEquals(540, large.toWorldX(720), 1e-3f);
+        assertEquals(Viewport.WORLD_SHORT_SIDE, new Viewport(2400, 1080).getWorldHeight());
+    }
+
+    @Test
+    public void frameSize_followsRenderAndResolutionScale() {
+        // Screens with more pixels than the world has units draw no more by default
+        Viewport large = new Viewport(1440, 2560);
+        assertEquals(1080, large.frameWidth(1));
+        assertEquals(1920, large.frameHeight(1));
+        assertEquals(540, large.frameWidth(0.5f));
+
+        Viewport small = new Viewport(720, 1280);
+        assertEquals(720, small.frameWidth(1));
+        small.setRenderScale(0.5f);
+        assertEquals(270, small.frameWidth(0.75f));
+        assertEquals(480, small.frameHeight(0.75f));
+    }
+
+    @Test
+    public void areas_roundOutwards() {
+        Viewport viewport = new Viewport(1440, 2560);
+        assertFalse(viewport.setFrameSize(1080, 1920));
+        assertTrue(viewport.setFrameSize(810, 1440));
+        assertEquals(0.75f, viewport.getFrameScaleX(), 1e-6f);
+
+        // 101..203 world units cover frame pixels 75.75..152.25
+        assertEquals(75, viewport.toFrameLeft(101));
+        assertEquals(153, viewport.toFrameRight(203));
+        assertEquals(100, viewport.toWorldLeft(75));
+        assertEquals(204, viewport.toWorldRight(153));
+        assertEquals(75, viewport.toFrameTop(101));
+        assertEquals(153, viewport.toFrameBottom(203));
+        assertEquals(100, viewport.toWorldTop(75));
+        assertEquals(204, viewport.toWorldBottom(153));
+    }
+}